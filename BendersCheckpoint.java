@@ -0,0 +1,173 @@
+package UnitCommitment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A checkpoint of a run of the Bender's Decomposition: the incumbent
+ * (if any), the best bound and the cuts generated so far. A run killed or
+ * stopped by its time limit can be resumed from its last checkpoint with
+ * UnitCommitmentBendersMasterProblem.resume(), which adds the cuts to a new
+ * master problem and gives it the incumbent as a MIP start.
+ * The checkpoint stores the fingerprints of the problem and of its network
+ * (the cuts of a problem with a network depend on the flow limits), so
+ * that it is not resumed on another problem or with another network.
+ * @author Luttner
+ */
+public final class BendersCheckpoint {
+
+    private static final int MAGIC = 0x55434350;
+    private static final int VERSION = 2;
+
+    private final String fingerprint;
+    // Empty if the problem has no network.
+    private final String networkFingerprint;
+    private final UnitCommitmentSolution incumbent;
+    private final double bestBound;
+    private final List<BendersCut> cuts;
+
+    /**
+     * Creates a checkpoint.
+     * @param problem the problem being solved
+     * @param incumbent the incumbent, or null if there is none yet
+     * @param bestBound the best bound
+     * @param cuts the cuts generated so far
+     */
+    public BendersCheckpoint(UnitCommitmentProblem problem, UnitCommitmentSolution incumbent, double bestBound, List<BendersCut> cuts) {
+        this(problem, null, incumbent, bestBound, cuts);
+    }
+
+    /**
+     * Creates a checkpoint of a problem with a network.
+     * @param problem the problem being solved
+     * @param network its network, or null if there is none
+     * @param incumbent the incumbent, or null if there is none yet
+     * @param bestBound the best bound
+     * @param cuts the cuts generated so far
+     */
+    public BendersCheckpoint(UnitCommitmentProblem problem, UnitCommitmentNetwork network, UnitCommitmentSolution incumbent, double bestBound, List<BendersCut> cuts) {
+        this(UnitCommitmentSolutionCache.fingerprint(problem), UnitCommitmentNetwork.fingerprint(network), incumbent, bestBound, cuts);
+    }
+
+    private BendersCheckpoint(String fingerprint, String networkFingerprint, UnitCommitmentSolution incumbent, double bestBound, List<BendersCut> cuts) {
+        this.fingerprint = fingerprint;
+        this.networkFingerprint = networkFingerprint;
+        this.incumbent = incumbent;
+        this.bestBound = bestBound;
+        this.cuts = Collections.unmodifiableList(cuts);
+    }
+
+    /**
+     * Returns whether the checkpoint was taken while solving a problem
+     * without a network.
+     * @param problem
+     * @return
+     */
+    public boolean isCheckpointOf(UnitCommitmentProblem problem) {
+        return isCheckpointOf(problem, null);
+    }
+
+    /**
+     * Returns whether the checkpoint was taken while solving a problem
+     * with a network.
+     * @param problem
+     * @param network the network, or null if there is none
+     * @return
+     */
+    public boolean isCheckpointOf(UnitCommitmentProblem problem, UnitCommitmentNetwork network) {
+        return fingerprint.equals(UnitCommitmentSolutionCache.fingerprint(problem))
+                && networkFingerprint.equals(UnitCommitmentNetwork.fingerprint(network));
+    }
+
+    /**
+     * Returns the incumbent.
+     * @return the incumbent, or null if there was none
+     */
+    public UnitCommitmentSolution getIncumbent() {
+        return incumbent;
+    }
+
+    /**
+     * Returns the best bound.
+     * @return
+     */
+    public double getBestBound() {
+        return bestBound;
+    }
+
+    /**
+     * Returns the cuts generated.
+     * @return
+     */
+    public List<BendersCut> getCuts() {
+        return cuts;
+    }
+
+    /**
+     * Writes the checkpoint. It is written to a temporary file which then
+     * replaces the file, so that a run killed while writing a checkpoint
+     * leaves the previous one intact.
+     * @param path the destination file
+     * @throws IOException
+     */
+    public void write(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, "checkpoint", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(fingerprint);
+                out.writeUTF(networkFingerprint);
+                out.writeDouble(bestBound);
+                out.writeBoolean(incumbent != null);
+                if (incumbent != null) {
+                    out.writeInt(incumbent.getNGenerators());
+                    out.writeInt(incumbent.getNPeriods());
+                    UnitCommitmentSolutionCache.writeSolution(out, incumbent);
+                }
+                UnitCommitmentSolutionCache.writeCuts(out, cuts);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads a checkpoint written by write().
+     * @param path
+     * @return the checkpoint
+     * @throws IOException
+     */
+    public static BendersCheckpoint read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a checkpoint: "+path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version "+version);
+            }
+            String fingerprint = in.readUTF();
+            String networkFingerprint = in.readUTF();
+            double bestBound = in.readDouble();
+            UnitCommitmentSolution incumbent = null;
+            if (in.readBoolean()) {
+                int nGenerators = in.readInt();
+                int nPeriods = in.readInt();
+                incumbent = UnitCommitmentSolutionCache.readSolution(in, nGenerators, nPeriods);
+            }
+            List<BendersCut> cuts = UnitCommitmentSolutionCache.readCuts(in);
+            return new BendersCheckpoint(fingerprint, networkFingerprint, incumbent, bestBound, cuts);
+        }
+    }
+}
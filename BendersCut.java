@@ -0,0 +1,175 @@
+package UnitCommitment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A feasibility or optimality cut of the Bender's Decomposition, stored in
+ * primitive arrays so that it can be kept after the subproblem it comes
+ * from has been released, written to disk and added again to another
+ * master problem.
+ * The cut reads constant + sum_ij coefficients_ij*u_ij &lt;= 0 (feasibility)
+ * or &lt;= phi (optimality). The constant is kept split in the part given by
+ * the power balance constraints (1e), whose duals are multiplied by the
+ * demands, and the part given by the ramping constraints (1h, 1i) and,
+ * if there is a network, by the flow limits of the lines (whose part
+ * proportional to the demand is added to the duals of 1e).
+ * Since the demands only appear in the objective of the dual subproblem,
+ * the duals remain feasible if the demands change: the cut remains valid
+ * for any instance with the same fleet and load shedding costs, once its
+ * constant is recomputed with getConstant(demands).
+ * @author Luttner
+ */
+public final class BendersCut {
+
+    private final BendersCutType type;
+    private final double demandDuals[];
+    private final double rampConstant;
+    private final double coefficients[][];
+
+    /**
+     * Creates a cut. The arrays are not copied.
+     * @param type
+     * @param demandDuals the duals of the power balance constraints (1e)
+     * @param rampConstant the part of the constant given by the ramping
+     * constraints (1h, 1i)
+     * @param coefficients the coefficients of u
+     */
+    BendersCut(BendersCutType type, double demandDuals[], double rampConstant, double coefficients[][]) {
+        this.type = type;
+        this.demandDuals = demandDuals;
+        this.rampConstant = rampConstant;
+        this.coefficients = coefficients;
+    }
+
+    /**
+     * Returns the type of the cut.
+     * @return
+     */
+    public BendersCutType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of generators.
+     * @return
+     */
+    public int getNGenerators() {
+        return coefficients.length;
+    }
+
+    /**
+     * Returns the number of periods.
+     * @return
+     */
+    public int getNPeriods() {
+        return demandDuals.length;
+    }
+
+    /**
+     * Returns the constant of the cut for the given demands.
+     * @param demands the power demand at each period
+     * @return the constant of the cut
+     */
+    public double getConstant(double demands[]) {
+        double constant = rampConstant;
+        for (int j = 0; j < demandDuals.length; j++) {
+            constant = constant + demands[j]*demandDuals[j];
+        }
+        return constant;
+    }
+
+    /**
+     * Returns the coefficients of the cut for the u variables of a
+     * generator. The array is not copied and must not be modified.
+     * @param generator
+     * @return the coefficient of u at each period
+     */
+    double[] getCoefficients(int generator) {
+        return coefficients[generator];
+    }
+
+    /**
+     * Returns the number of non-zero coefficients of u.
+     * @return
+     */
+    public int countNonZeros() {
+        int nonZeros = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            for (int j = 0; j < demandDuals.length; j++) {
+                if (coefficients[i][j] != 0) {
+                    nonZeros++;
+                }
+            }
+        }
+        return nonZeros;
+    }
+
+    /**
+     * Returns the value of the left-hand side of the cut at a solution,
+     * without phi.
+     * @param demands the power demand at each period
+     * @param U the status of each generator at each period
+     * @return
+     */
+    public double evaluate(double demands[], int U[][]) {
+        double value = getConstant(demands);
+        for (int i = 0; i < coefficients.length; i++) {
+            for (int j = 0; j < demandDuals.length; j++) {
+                value = value + coefficients[i][j]*U[i][j];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Writes the cut.
+     * @param out the destination
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeInt(coefficients.length);
+        out.writeInt(demandDuals.length);
+        out.writeDouble(rampConstant);
+        for (int j = 0; j < demandDuals.length; j++) {
+            out.writeDouble(demandDuals[j]);
+        }
+        for (int i = 0; i < coefficients.length; i++) {
+            for (int j = 0; j < demandDuals.length; j++) {
+                out.writeDouble(coefficients[i][j]);
+            }
+        }
+    }
+
+    /**
+     * Reads a cut written by write().
+     * @param in the source
+     * @return the cut
+     * @throws IOException
+     */
+    public static BendersCut read(DataInput in) throws IOException {
+        int type = in.readByte();
+        if (type < 0 || type >= BendersCutType.values().length) {
+            throw new IOException("Invalid cut type "+type);
+        }
+        int nGenerators = in.readInt();
+        int nPeriods = in.readInt();
+        if (nGenerators < 0 || nPeriods < 0) {
+            throw new IOException("Invalid cut dimensions "+nGenerators+"x"+nPeriods);
+        }
+        double rampConstant = in.readDouble();
+        double demandDuals[] = new double[nPeriods];
+        for (int j = 0; j < nPeriods; j++) {
+            demandDuals[j] = in.readDouble();
+        }
+        double coefficients[][] = new double[nGenerators][nPeriods];
+        for (int i = 0; i < nGenerators; i++) {
+            for (int j = 0; j < nPeriods; j++) {
+                coefficients[i][j] = in.readDouble();
+            }
+        }
+        return new BendersCut(BendersCutType.values()[type], demandDuals, rampConstant, coefficients);
+    }
+}
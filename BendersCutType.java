@@ -0,0 +1,17 @@
+package UnitCommitment;
+
+/**
+ * The two kinds of subproblems of the Bender's Decomposition of the
+ * Unit Commitment Problem, and thus the two kinds of cuts they generate.
+ * @author Luttner
+ */
+public enum BendersCutType {
+    /**
+     * Feasibility subproblem / feasibility cut.
+     */
+    FEASIBILITY,
+    /**
+     * Optimality subproblem / optimality cut.
+     */
+    OPTIMALITY
+}
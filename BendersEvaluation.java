@@ -0,0 +1,74 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+
+/**
+ * The evaluation of a candidate status of the generators (U) by the
+ * subproblems of the Bender's Decomposition: its cut, or its dispatch
+ * if it needs no cut. Evaluations are made in the threads of the master
+ * problem or by remote workers (see BendersWorker).
+ * @author Luttner
+ */
+final class BendersEvaluation {
+
+    // The type of the cut, or null if U needs no cut.
+    final BendersCutType type;
+    final BendersCut cut;
+    // The objective of the subproblem which gave the cut, or the
+    // dispatch cost.
+    final double objective;
+    // The dispatch, if U needs no cut and it was requested.
+    final double P[][];
+    final double L[];
+
+    BendersEvaluation(BendersCutType type, BendersCut cut, double objective, double P[][], double L[]) {
+        this.type = type;
+        this.cut = cut;
+        this.objective = objective;
+        this.P = P;
+        this.L = L;
+    }
+
+    /**
+     * Evaluates a candidate.
+     * @param problem
+     * @param screen the feasibility screen of the problem
+     * @param lineLimits the separator of the flow limits (null if there is
+     * no network, in which case the screen can prove U feasible)
+     * @param metrics where the latencies are recorded (null if not measured)
+     * @param U the status of each generator at each period
+     * @param Phi the value of phi the master problem expects for U
+     * @param dispatch whether the dispatch is returned if U needs no cut
+     * @return the feasibility cut if U admits no feasible dispatch, the
+     * optimality cut if its dispatch cost exceeds Phi, or else no cut
+     * @throws IloException 
+     */
+    static BendersEvaluation evaluate(UnitCommitmentProblem problem, UnitCommitmentFeasibilityScreen screen, LineLimitSeparator lineLimits,
+            BendersMetrics metrics, int U[][], double Phi, boolean dispatch) throws IloException {
+        if (lineLimits != null || screen.screen(U) != UnitCommitmentFeasibilityScreen.Outcome.FEASIBLE) {
+            UnitCommitmentBendersFeasibilityProblem fsp = new UnitCommitmentBendersFeasibilityProblem(problem, U, metrics, lineLimits);
+            try {
+                fsp.solve();
+                double fspObjective = fsp.getObjective();
+                if (fspObjective >= 0+1e-9) {
+                    return new BendersEvaluation(BendersCutType.FEASIBILITY, fsp.getCut(), fspObjective, null, null);
+                }
+            } finally {
+                fsp.end();
+            }
+        }
+        UnitCommitmentBendersOptimalityProblem osp = new UnitCommitmentBendersOptimalityProblem(problem, U, metrics, lineLimits);
+        try {
+            osp.solve();
+            double ospObjective = osp.getObjective();
+            if (ospObjective > Phi + 1e-9) {
+                return new BendersEvaluation(BendersCutType.OPTIMALITY, osp.getCut(), ospObjective, null, null);
+            }
+            return dispatch
+                    ? new BendersEvaluation(null, null, ospObjective, osp.getP(), osp.getL())
+                    : new BendersEvaluation(null, null, ospObjective, null, null);
+        } finally {
+            osp.end();
+        }
+    }
+}
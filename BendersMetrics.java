@@ -0,0 +1,316 @@
+package UnitCommitment;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects low-overhead metrics of a run of the Bender's algorithm:
+ * latency histograms of each phase, counters (cuts by type, cache hits,
+ * simplex iterations of the subproblems, ...) and the trajectory of the
+ * incumbent and of the best bound over time.
+ * The metrics are recorded by UnitCommitmentBendersMasterProblem and by
+ * the two subproblems, and can be read at any time through snapshot().
+ * @author Luttner
+ */
+public class BendersMetrics {
+
+    /**
+     * The phases of the algorithm whose latency is measured.
+     */
+    public enum Phase {
+        /**
+         * Branch and bound in the Master Problem, i.e., the time between
+         * two consecutive callbacks on the same thread.
+         */
+        MASTER,
+        /**
+         * Creating the model of a subproblem.
+         */
+        SUBPROBLEM_BUILD,
+        /**
+         * Solving the LP of a subproblem.
+         */
+        LP_SOLVE,
+        /**
+         * Obtaining the duals of a subproblem and building the cut.
+         */
+        DUAL_EXTRACTION,
+        /**
+         * Adding a cut to the Master Problem.
+         */
+        CUT_INSERTION,
+        /**
+         * Screening U for feasibility without solving an LP.
+         */
+        FEASIBILITY_SCREEN,
+        /**
+         * Rounding the fractional u of a node and evaluating its dispatch
+         * in the heuristic callback.
+         */
+        HEURISTIC,
+        /**
+         * Evaluating the other candidates of a callback in parallel and
+         * adding their cuts.
+         */
+        HARVEST,
+        /**
+         * Waiting in the callback for the subproblems of its candidate,
+         * solved by the workers (asynchronous mode).
+         */
+        ASYNC_WAIT,
+        /**
+         * The whole callback.
+         */
+        CALLBACK
+    }
+
+    /**
+     * The events which are counted.
+     */
+    public enum Counter {
+        CALLBACKS,
+        FEASIBILITY_CUTS,
+        OPTIMALITY_CUTS,
+        /** Problems found in the solution cache. */
+        CACHE_HITS,
+        /** Problems solved from the nearest entry of the solution cache. */
+        CACHE_WARM_STARTS,
+        /** Problems with no entry of the same fleet in the solution cache. */
+        CACHE_MISSES,
+        SUBPROBLEM_SOLVES,
+        SUBPROBLEM_ITERATIONS,
+        SCREENED_FEASIBLE,
+        SCREENED_INFEASIBLE,
+        SCREEN_INCONCLUSIVE,
+        HEURISTIC_SOLUTIONS,
+        HARVESTED_CUTS,
+        POOLED_CUTS,
+        UNCERTIFIED_ACCEPTS
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private final List<TrajectoryPoint> trajectory = new ArrayList<>();
+    private double lastIncumbent = Double.NaN;
+    private double lastBound = Double.NaN;
+
+    /**
+     * Creates an empty set of metrics. The trajectory times are
+     * measured from this moment.
+     */
+    public BendersMetrics() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records the latency of a phase.
+     * @param phase the phase
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        histograms.get(phase).record(nanos);
+    }
+
+    /**
+     * Increments a counter by one.
+     * @param counter the counter
+     */
+    public void increment(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    /**
+     * Increments a counter.
+     * @param counter the counter
+     * @param delta the increment
+     */
+    public void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    /**
+     * Records the current incumbent and bound of the Master Problem.
+     * A point is added to the trajectory only if one of them changed.
+     * @param incumbent the incumbent objective value (NaN if none)
+     * @param bound the best bound
+     */
+    public synchronized void recordProgress(double incumbent, double bound) {
+        if (Double.compare(incumbent, lastIncumbent) != 0 || Double.compare(bound, lastBound) != 0) {
+            lastIncumbent = incumbent;
+            lastBound = bound;
+            trajectory.add(new TrajectoryPoint(System.nanoTime() - startNanos, incumbent, bound));
+        }
+    }
+
+    /**
+     * Returns an immutable copy of the current metrics.
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        Map<Phase, LatencyHistogram.Snapshot> phases = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, histograms.get(phase).snapshot());
+        }
+        Map<Counter, Long> counts = new EnumMap<>(Counter.class);
+        for (Counter counter : Counter.values()) {
+            counts.put(counter, counters.get(counter.ordinal()));
+        }
+        List<TrajectoryPoint> points;
+        synchronized (this) {
+            points = new ArrayList<>(trajectory);
+        }
+        return new Snapshot(System.nanoTime() - startNanos, phases, counts, points);
+    }
+
+    /**
+     * A point of the trajectory of the incumbent and the bound.
+     */
+    public static class TrajectoryPoint {
+        private final long elapsedNanos;
+        private final double incumbent;
+        private final double bound;
+
+        private TrajectoryPoint(long elapsedNanos, double incumbent, double bound) {
+            this.elapsedNanos = elapsedNanos;
+            this.incumbent = incumbent;
+            this.bound = bound;
+        }
+
+        /**
+         * Returns the time since the metrics were created, in nanoseconds.
+         * @return 
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the incumbent objective value (NaN if there was none).
+         * @return 
+         */
+        public double getIncumbent() {
+            return incumbent;
+        }
+
+        /**
+         * Returns the best bound.
+         * @return 
+         */
+        public double getBound() {
+            return bound;
+        }
+    }
+
+    /**
+     * An immutable copy of the metrics at some point in time.
+     */
+    public static class Snapshot {
+        private final long elapsedNanos;
+        private final Map<Phase, LatencyHistogram.Snapshot> phases;
+        private final Map<Counter, Long> counters;
+        private final List<TrajectoryPoint> trajectory;
+
+        private Snapshot(long elapsedNanos, Map<Phase, LatencyHistogram.Snapshot> phases, Map<Counter, Long> counters, List<TrajectoryPoint> trajectory) {
+            this.elapsedNanos = elapsedNanos;
+            this.phases = Collections.unmodifiableMap(phases);
+            this.counters = Collections.unmodifiableMap(counters);
+            this.trajectory = Collections.unmodifiableList(trajectory);
+        }
+
+        /**
+         * Returns the time since the metrics were created, in nanoseconds.
+         * @return 
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the latencies of a phase.
+         * @param phase the phase
+         * @return 
+         */
+        public LatencyHistogram.Snapshot getPhase(Phase phase) {
+            return phases.get(phase);
+        }
+
+        /**
+         * Returns the value of a counter.
+         * @param counter the counter
+         * @return 
+         */
+        public long getCounter(Counter counter) {
+            return counters.get(counter);
+        }
+
+        /**
+         * Returns the trajectory of the incumbent and the bound.
+         * @return 
+         */
+        public List<TrajectoryPoint> getTrajectory() {
+            return trajectory;
+        }
+
+        /**
+         * Returns the snapshot as a JSON document.
+         * @return 
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder();
+            json.append("{\"elapsedNanos\":").append(elapsedNanos);
+            json.append(",\"phases\":{");
+            for (Phase phase : Phase.values()) {
+                if (phase.ordinal() > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(phase.name()).append("\":").append(phases.get(phase).toJson());
+            }
+            json.append("},\"counters\":{");
+            for (Counter counter : Counter.values()) {
+                if (counter.ordinal() > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(counter.name()).append("\":").append(counters.get(counter));
+            }
+            json.append("},\"trajectory\":[");
+            for (int k = 0; k < trajectory.size(); k++) {
+                TrajectoryPoint point = trajectory.get(k);
+                if (k > 0) {
+                    json.append(',');
+                }
+                json.append("{\"elapsedNanos\":").append(point.getElapsedNanos())
+                        .append(",\"incumbent\":").append(jsonNumber(point.getIncumbent()))
+                        .append(",\"bound\":").append(jsonNumber(point.getBound())).append('}');
+            }
+            json.append("]}");
+            return json.toString();
+        }
+
+        /**
+         * Writes the snapshot as a JSON document to a file.
+         * @param path the file
+         * @throws IOException 
+         */
+        public void writeJson(Path path) throws IOException {
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                writer.write(toJson());
+            }
+        }
+
+        private static String jsonNumber(double value) {
+            return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * A process solving the subproblems of the Bender's Decomposition for a
+ * master problem in another process (possibly on another machine), so that
+ * the subproblem work is not limited by the threads of one JVM.
+ * The worker loads the same problem as the master, listens on a port and
+ * serves each connection of a BendersWorkerPool in its own thread: it
+ * receives bit-packed statuses of the generators and returns their cuts
+ * (see BendersWorkerProtocol).
+ * The connections are not authenticated (the fingerprint of the problem
+ * sent by the master can be computed by anyone), so the worker only
+ * listens on the loopback interface unless another address is given,
+ * which should then be on a trusted network.
+ * Usage: BendersWorker [-bind address] port problem.ucb [buses.txt generatorBuses.txt lines.txt]
+ * where problem.ucb is written by UnitCommitmentBinaryFormat.write() and the
+ * optional files describe the network (see UnitCommitmentNetwork.read()).
+ * @author Luttner
+ */
+public class BendersWorker implements Closeable {
+
+    private final UnitCommitmentProblem problem;
+    private final String fingerprint;
+    private final String networkFingerprint;
+    private final UnitCommitmentFeasibilityScreen screen;
+    private final LineLimitSeparator lineLimits;
+    private final ServerSocket serverSocket;
+
+    /**
+     * Creates a worker listening on a port of the loopback interface.
+     * @param problem the problem of the master problem
+     * @param network its network, or null if there is none
+     * @param port the port, or 0 for any free port
+     * @throws IOException 
+     */
+    public BendersWorker(UnitCommitmentProblem problem, UnitCommitmentNetwork network, int port) throws IOException {
+        this(problem, network, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Creates a worker listening on a port of an address, e.g. to serve
+     * a master on another machine.
+     * @param problem the problem of the master problem
+     * @param network its network, or null if there is none
+     * @param bindAddress the address of the interface to listen on
+     * @param port the port, or 0 for any free port
+     * @throws IOException 
+     */
+    public BendersWorker(UnitCommitmentProblem problem, UnitCommitmentNetwork network, InetAddress bindAddress, int port) throws IOException {
+        this.problem = problem;
+        this.fingerprint = UnitCommitmentSolutionCache.fingerprint(problem);
+        this.networkFingerprint = UnitCommitmentNetwork.fingerprint(network);
+        this.screen = new UnitCommitmentFeasibilityScreen(problem);
+        this.lineLimits = network == null ? null : new LineLimitSeparator(problem, network);
+        this.serverSocket = new ServerSocket(port, 0, bindAddress);
+    }
+
+    /**
+     * Returns the port the worker listens on.
+     * @return
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves the connections until the worker is closed.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // The worker has been closed.
+                return;
+            }
+            Thread thread = new Thread(() -> serve(socket), "benders-worker-"+socket.getPort());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Serves one connection.
+     */
+    private void serve(Socket socket) {
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        try (Socket s = socket;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            s.setTcpNoDelay(true);
+            if (in.readInt() != BendersWorkerProtocol.MAGIC || in.readInt() != BendersWorkerProtocol.VERSION) {
+                return;
+            }
+            boolean sameProblem = fingerprint.equals(in.readUTF());
+            sameProblem = networkFingerprint.equals(in.readUTF()) && sameProblem;
+            out.writeBoolean(sameProblem);
+            out.flush();
+            if (!sameProblem) {
+                return;
+            }
+            while (in.readByte() == BendersWorkerProtocol.EVALUATE) {
+                double Phi = in.readDouble();
+                boolean dispatch = in.readBoolean();
+                int U[][] = BendersWorkerProtocol.readU(in, nGenerators, nPeriods);
+                BendersEvaluation evaluation;
+                try {
+                    evaluation = BendersEvaluation.evaluate(problem, screen, lineLimits, null, U, Phi, dispatch);
+                } catch (IloException | RuntimeException e) {
+                    // The master evaluates the candidate itself,
+                    // and keeps the connection.
+                    out.writeByte(BendersWorkerProtocol.ERROR);
+                    out.writeUTF(String.valueOf(e));
+                    out.flush();
+                    continue;
+                }
+                BendersWorkerProtocol.writeEvaluation(out, evaluation);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // The master closed the connection.
+        } catch (IOException e) {
+            System.err.println("Connection lost: "+e);
+        }
+    }
+
+    /**
+     * Stops accepting connections.
+     * @throws IOException 
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        InetAddress bindAddress = InetAddress.getLoopbackAddress();
+        if (args.length > 1 && args[0].equals("-bind")) {
+            bindAddress = InetAddress.getByName(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length != 2 && args.length != 5) {
+            System.err.println("Usage: BendersWorker [-bind address] port problem.ucb [buses.txt generatorBuses.txt lines.txt]");
+            System.exit(2);
+        }
+        UnitCommitmentProblem problem = UnitCommitmentBinaryFormat.read(Paths.get(args[1]));
+        UnitCommitmentNetwork network = args.length == 5 ? UnitCommitmentNetwork.read(problem, args[2], args[3], args[4]) : null;
+        try (BendersWorker worker = new BendersWorker(problem, network, bindAddress, Integer.parseInt(args[0]))) {
+            System.out.println("Listening on "+bindAddress.getHostAddress()+" port "+worker.getPort());
+            worker.serve();
+        }
+    }
+}
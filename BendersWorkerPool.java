@@ -0,0 +1,184 @@
+package UnitCommitment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The connections of a master problem to its remote subproblem workers
+ * (see BendersWorker). Each candidate is sent to whichever connection is
+ * available; a connection which fails is dropped, and the candidate is
+ * sent to another one. Give the pool to the master problem with
+ * UnitCommitmentBendersMasterProblem.setWorkerPool(), and use as many
+ * threads for the asynchronous mode or the harvesting as connections.
+ * @author Luttner
+ */
+public final class BendersWorkerPool implements Closeable {
+
+    /**
+     * A connection to a worker.
+     */
+    private static final class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+    }
+
+    private final int nGenerators;
+    private final int nPeriods;
+    private final String networkFingerprint;
+    private final BlockingQueue<Connection> available = new LinkedBlockingQueue<>();
+    private final List<Connection> connections = new ArrayList<>();
+    private final AtomicInteger alive = new AtomicInteger();
+
+    /**
+     * Connects to the workers of a problem without a network.
+     * @param problem the problem of the master problem, which the workers
+     * must have loaded too
+     * @param workers the addresses of the workers
+     * @param connectionsPerWorker the number of candidates each worker
+     * evaluates at the same time
+     * @throws IOException if a worker cannot be reached or has loaded
+     * another problem or a network
+     */
+    public BendersWorkerPool(UnitCommitmentProblem problem, List<InetSocketAddress> workers, int connectionsPerWorker) throws IOException {
+        this(problem, null, workers, connectionsPerWorker);
+    }
+
+    /**
+     * Connects to the workers.
+     * @param problem the problem of the master problem, which the workers
+     * must have loaded too
+     * @param network the network of the master problem, which the workers
+     * must have loaded too, or null if there is none
+     * @param workers the addresses of the workers
+     * @param connectionsPerWorker the number of candidates each worker
+     * evaluates at the same time
+     * @throws IOException if a worker cannot be reached or has loaded
+     * another problem or another network
+     */
+    public BendersWorkerPool(UnitCommitmentProblem problem, UnitCommitmentNetwork network, List<InetSocketAddress> workers, int connectionsPerWorker) throws IOException {
+        this.nGenerators = problem.getNGenerators();
+        this.nPeriods = problem.getNPeriods();
+        this.networkFingerprint = UnitCommitmentNetwork.fingerprint(network);
+        String fingerprint = UnitCommitmentSolutionCache.fingerprint(problem);
+        try {
+            for (InetSocketAddress address : workers) {
+                for (int k = 0; k < connectionsPerWorker; k++) {
+                    Socket socket = new Socket();
+                    socket.connect(address);
+                    socket.setTcpNoDelay(true);
+                    Connection connection = new Connection(socket);
+                    connections.add(connection);
+                    connection.out.writeInt(BendersWorkerProtocol.MAGIC);
+                    connection.out.writeInt(BendersWorkerProtocol.VERSION);
+                    connection.out.writeUTF(fingerprint);
+                    connection.out.writeUTF(networkFingerprint);
+                    connection.out.flush();
+                    if (!connection.in.readBoolean()) {
+                        throw new IOException("The worker at "+address+" has loaded another problem or network");
+                    }
+                    available.add(connection);
+                    alive.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns whether the workers have loaded a network.
+     * @param network the network, or null for none
+     * @return
+     */
+    boolean hasNetwork(UnitCommitmentNetwork network) {
+        return networkFingerprint.equals(UnitCommitmentNetwork.fingerprint(network));
+    }
+
+    /**
+     * Returns the number of connections which have not failed.
+     * @return
+     */
+    public int getNConnections() {
+        return alive.get();
+    }
+
+    /**
+     * Evaluates a candidate on the first available worker.
+     * @param U the status of each generator at each period
+     * @param Phi the value of phi the master problem expects for U
+     * @param dispatch whether the dispatch is returned if U needs no cut
+     * @return the evaluation, or null if the worker could not evaluate
+     * the candidate, every connection has failed or the thread was
+     * interrupted
+     */
+    BendersEvaluation evaluate(int U[][], double Phi, boolean dispatch) {
+        while (alive.get() > 0) {
+            Connection connection;
+            try {
+                connection = available.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (connection == null) {
+                continue;
+            }
+            try {
+                BendersWorkerProtocol.writeRequest(connection.out, U, Phi, dispatch);
+                connection.out.flush();
+                BendersEvaluation evaluation = BendersWorkerProtocol.readEvaluation(connection.in, nGenerators, nPeriods);
+                available.add(connection);
+                return evaluation;
+            } catch (IOException e) {
+                alive.decrementAndGet();
+                closeQuietly(connection);
+            }
+        }
+        return null;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.socket.close();
+        } catch (IOException e) {
+            // Nothing else to do.
+        }
+    }
+
+    /**
+     * Closes the connections. The workers keep running.
+     */
+    @Override
+    public void close() {
+        for (Connection connection : connections) {
+            try {
+                connection.out.writeByte(BendersWorkerProtocol.CLOSE);
+                connection.out.flush();
+            } catch (IOException e) {
+                // The connection has already failed.
+            }
+            closeQuietly(connection);
+        }
+        alive.set(0);
+    }
+}
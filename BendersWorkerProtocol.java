@@ -0,0 +1,176 @@
+package UnitCommitment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The protocol between the master problem and the remote subproblem
+ * workers (see BendersWorker and BendersWorkerPool), over a stream.
+ * The master opens a connection with MAGIC, VERSION, the fingerprint
+ * of its problem and the fingerprint of its network (empty if it has
+ * none), and the worker answers whether it has loaded the same problem
+ * and network: the cuts of a problem with a network are not valid without
+ * it, and a worker without the network would accept dispatches which
+ * violate the flow limits. Then each request carries an operation, phi, whether the
+ * dispatch is wanted and U packed one bit per generator and period in
+ * longs; the response carries the type of the cut (if any), the objective
+ * of the subproblem and the cut or the dispatch.
+ * @author Luttner
+ */
+final class BendersWorkerProtocol {
+
+    static final int MAGIC = 0x55435357;
+    static final int VERSION = 2;
+
+    static final byte EVALUATE = 1;
+    static final byte CLOSE = 2;
+
+    static final byte NO_CUT = 0;
+    static final byte FEASIBILITY_CUT = 1;
+    static final byte OPTIMALITY_CUT = 2;
+    static final byte ERROR = 3;
+
+    private BendersWorkerProtocol() {
+    }
+
+    /**
+     * Packs U one bit per generator and period, generator by generator.
+     * @param U the status of each generator at each period
+     * @return the bits, 64 per long
+     */
+    static long[] pack(int U[][]) {
+        int nPeriods = U.length == 0 ? 0 : U[0].length;
+        long words[] = new long[(U.length*nPeriods + 63)/64];
+        int bit = 0;
+        for (int i = 0; i < U.length; i++) {
+            for (int j = 0; j < nPeriods; j++) {
+                if (U[i][j] != 0) {
+                    words[bit >>> 6] |= 1L << (bit & 63);
+                }
+                bit++;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Unpacks U from the bits written by pack().
+     * @param words
+     * @param nGenerators
+     * @param nPeriods
+     * @return the status of each generator at each period
+     */
+    static int[][] unpack(long words[], int nGenerators, int nPeriods) {
+        int U[][] = new int[nGenerators][nPeriods];
+        int bit = 0;
+        for (int i = 0; i < nGenerators; i++) {
+            for (int j = 0; j < nPeriods; j++) {
+                U[i][j] = (int) (words[bit >>> 6] >>> (bit & 63)) & 1;
+                bit++;
+            }
+        }
+        return U;
+    }
+
+    /**
+     * Writes a request to evaluate a candidate.
+     * @param out
+     * @param U
+     * @param Phi
+     * @param dispatch
+     * @throws IOException 
+     */
+    static void writeRequest(DataOutput out, int U[][], double Phi, boolean dispatch) throws IOException {
+        out.writeByte(EVALUATE);
+        out.writeDouble(Phi);
+        out.writeBoolean(dispatch);
+        for (long word : pack(U)) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads the U of a request, after its operation, phi and dispatch flag.
+     * @param in
+     * @param nGenerators
+     * @param nPeriods
+     * @return U
+     * @throws IOException 
+     */
+    static int[][] readU(DataInput in, int nGenerators, int nPeriods) throws IOException {
+        long words[] = new long[(nGenerators*nPeriods + 63)/64];
+        for (int w = 0; w < words.length; w++) {
+            words[w] = in.readLong();
+        }
+        return unpack(words, nGenerators, nPeriods);
+    }
+
+    /**
+     * Writes the response to a request.
+     * @param out
+     * @param evaluation
+     * @throws IOException 
+     */
+    static void writeEvaluation(DataOutput out, BendersEvaluation evaluation) throws IOException {
+        if (evaluation.cut != null) {
+            out.writeByte(evaluation.type == BendersCutType.FEASIBILITY ? FEASIBILITY_CUT : OPTIMALITY_CUT);
+            out.writeDouble(evaluation.objective);
+            evaluation.cut.write(out);
+            return;
+        }
+        out.writeByte(NO_CUT);
+        out.writeDouble(evaluation.objective);
+        out.writeBoolean(evaluation.P != null);
+        if (evaluation.P != null) {
+            for (double P[] : evaluation.P) {
+                for (double value : P) {
+                    out.writeDouble(value);
+                }
+            }
+            for (double value : evaluation.L) {
+                out.writeDouble(value);
+            }
+        }
+    }
+
+    /**
+     * Reads the response to a request.
+     * @param in
+     * @param nGenerators
+     * @param nPeriods
+     * @return the evaluation, or null if the worker failed to evaluate
+     * the candidate (the connection can still be used)
+     * @throws IOException
+     */
+    static BendersEvaluation readEvaluation(DataInput in, int nGenerators, int nPeriods) throws IOException {
+        byte status = in.readByte();
+        if (status == ERROR) {
+            in.readUTF();
+            return null;
+        }
+        double objective = in.readDouble();
+        if (status == FEASIBILITY_CUT || status == OPTIMALITY_CUT) {
+            BendersCut cut = BendersCut.read(in);
+            return new BendersEvaluation(cut.getType(), cut, objective, null, null);
+        }
+        if (status != NO_CUT) {
+            throw new IOException("Unknown response "+status);
+        }
+        double P[][] = null;
+        double L[] = null;
+        if (in.readBoolean()) {
+            P = new double[nGenerators][nPeriods];
+            L = new double[nPeriods];
+            for (int i = 0; i < nGenerators; i++) {
+                for (int j = 0; j < nPeriods; j++) {
+                    P[i][j] = in.readDouble();
+                }
+            }
+            for (int j = 0; j < nPeriods; j++) {
+                L[j] = in.readDouble();
+            }
+        }
+        return new BendersEvaluation(null, null, objective, P, L);
+    }
+}
@@ -0,0 +1,303 @@
+package UnitCommitment;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A streaming tokenizer for the text files of the instances.
+ * It reads the file through a channel in blocks of 64KB, splits it
+ * into whitespace-separated tokens and parses numbers directly from
+ * the bytes, without regular expressions and without creating a
+ * String per token (unlike java.util.Scanner).
+ * Numbers use '.' as decimal separator. Decimal numbers with up to 15
+ * significant digits and small exponents are converted exactly by the
+ * fast path; the others are handed to Double.parseDouble so that the
+ * result is always correctly rounded.
+ * @author Luttner
+ */
+class InstanceTokenizer implements Closeable {
+
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final double POWERS_OF_TEN[] = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte data[];
+    // The bytes data[position, limit) have been read but not consumed.
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    // The bounds of the last token, in data.
+    private int tokenStart;
+    private int tokenEnd;
+
+    /**
+     * Creates a tokenizer reading a file.
+     * @param fileName the file
+     * @throws FileNotFoundException 
+     */
+    InstanceTokenizer(String fileName) throws FileNotFoundException {
+        this(new FileInputStream(fileName).getChannel());
+    }
+
+    /**
+     * Creates a tokenizer reading a stream.
+     * @param in the stream
+     */
+    InstanceTokenizer(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    private InstanceTokenizer(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        this.data = buffer.array();
+    }
+
+    /**
+     * Moves the unconsumed bytes to the start of the buffer and reads
+     * more bytes after them.
+     * @return whether new bytes were read
+     */
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        int remaining = limit - position;
+        System.arraycopy(data, position, data, 0, remaining);
+        tokenStart -= position;
+        tokenEnd -= position;
+        position = 0;
+        limit = remaining;
+        buffer.clear();
+        buffer.position(limit);
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        limit = buffer.position();
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+
+    /**
+     * Skips the rest of the current line.
+     * @throws IOException 
+     */
+    void skipLine() throws IOException {
+        while (true) {
+            while (position < limit) {
+                if (data[position++] == '\n') {
+                    return;
+                }
+            }
+            if (!fill()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns whether there is another token.
+     * @return 
+     * @throws IOException 
+     */
+    boolean hasNext() throws IOException {
+        while (true) {
+            while (position < limit && isWhitespace(data[position])) {
+                position++;
+            }
+            if (position < limit) {
+                return true;
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Finds the next token, and sets tokenStart and tokenEnd to its bounds.
+     */
+    private void nextToken() throws IOException {
+        if (!hasNext()) {
+            throw new EOFException("Unexpected end of file");
+        }
+        tokenStart = position;
+        tokenEnd = position;
+        while (true) {
+            while (tokenEnd < limit && !isWhitespace(data[tokenEnd])) {
+                tokenEnd++;
+            }
+            if (tokenEnd < limit) {
+                break;
+            }
+            // The token continues after the end of the buffer.
+            if (tokenEnd - tokenStart == data.length) {
+                throw new IOException("Token too long (more than "+data.length+" bytes)");
+            }
+            position = tokenStart;
+            if (!fill()) {
+                break;
+            }
+        }
+        position = tokenEnd;
+    }
+
+    /**
+     * Returns the next token as a String.
+     * @return 
+     * @throws IOException 
+     */
+    String nextString() throws IOException {
+        nextToken();
+        return new String(data, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the next token as an int.
+     * @return 
+     * @throws IOException 
+     */
+    int nextInt() throws IOException {
+        nextToken();
+        int k = tokenStart;
+        boolean negative = false;
+        if (data[k] == '-' || data[k] == '+') {
+            negative = data[k] == '-';
+            k++;
+        }
+        if (k == tokenEnd) {
+            throw numberFormatException();
+        }
+        long value = 0;
+        for (; k < tokenEnd; k++) {
+            int digit = data[k] - '0';
+            if (digit < 0 || digit > 9) {
+                throw numberFormatException();
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw numberFormatException();
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw numberFormatException();
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses the next token as a double.
+     * @return 
+     * @throws IOException 
+     */
+    double nextDouble() throws IOException {
+        nextToken();
+        int k = tokenStart;
+        boolean negative = false;
+        if (data[k] == '-' || data[k] == '+') {
+            negative = data[k] == '-';
+            k++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        for (; k < tokenEnd && data[k] >= '0' && data[k] <= '9'; k++) {
+            anyDigit = true;
+            if (mantissa != 0 || data[k] != '0') {
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (data[k] - '0');
+                } else {
+                    exponent++;
+                }
+                significantDigits++;
+            }
+        }
+        if (k < tokenEnd && data[k] == '.') {
+            for (k++; k < tokenEnd && data[k] >= '0' && data[k] <= '9'; k++) {
+                anyDigit = true;
+                if (mantissa != 0 || data[k] != '0') {
+                    if (significantDigits < 18) {
+                        mantissa = mantissa * 10 + (data[k] - '0');
+                        exponent--;
+                    }
+                    significantDigits++;
+                } else {
+                    exponent--;
+                }
+            }
+        }
+        if (anyDigit && k < tokenEnd && (data[k] == 'e' || data[k] == 'E')) {
+            k++;
+            boolean negativeExponent = false;
+            if (k < tokenEnd && (data[k] == '-' || data[k] == '+')) {
+                negativeExponent = data[k] == '-';
+                k++;
+            }
+            int explicit = 0;
+            boolean anyExponentDigit = false;
+            for (; k < tokenEnd && data[k] >= '0' && data[k] <= '9'; k++) {
+                anyExponentDigit = true;
+                if (explicit < 100000) {
+                    explicit = explicit * 10 + (data[k] - '0');
+                }
+            }
+            if (!anyExponentDigit) {
+                anyDigit = false;
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (!anyDigit || k != tokenEnd) {
+            // Not a plain decimal number (e.g., NaN or Infinity).
+            return slowDouble();
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (significantDigits <= 15 && exponent >= -22 && exponent <= 22) {
+            // Both the mantissa and the power of ten are exact doubles,
+            // so a single (correctly rounded) operation gives the result.
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        return slowDouble();
+    }
+
+    private double slowDouble() {
+        try {
+            return Double.parseDouble(new String(data, tokenStart, tokenEnd - tokenStart, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw numberFormatException();
+        }
+    }
+
+    private NumberFormatException numberFormatException() {
+        return new NumberFormatException("Invalid number: "+new String(data, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,214 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import ilog.concert.IloLPMatrix;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloRange;
+import ilog.cplex.IloCplex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assembles the constraints of a model in primitive arrays in
+ * compressed sparse row (CSR) form, and loads all of them into the
+ * IloCplex object in one call through an IloLPMatrix.
+ * This avoids creating one IloLinearNumExpr and one IloRange per
+ * constraint, which dominates the time spent building large models.
+ * The variables are registered in blocks (arrays), and the terms of the
+ * rows refer to them by column index: the column of the k-th variable
+ * of a block is the offset returned by addColumns() plus k.
+ * Names of the rows and variables are only generated when the system
+ * property unitcommitment.names is true (e.g., to export and inspect
+ * a model), since building them is expensive and Cplex does not need them.
+ * @author Luttner
+ */
+class LPMatrixBuilder {
+
+    /**
+     * Whether the rows and the variables are named.
+     */
+    static final boolean NAMES_ENABLED = Boolean.getBoolean("unitcommitment.names");
+
+    private final List<IloNumVar[]> columnBlocks = new ArrayList<>();
+    private int nColumns;
+
+    // The rows, in CSR form: the terms of row r are
+    // columns[rowStart[r], rowStart[r+1]) and values[rowStart[r], rowStart[r+1]).
+    private double lowerBounds[] = new double[64];
+    private double upperBounds[] = new double[64];
+    private int rowStart[] = new int[65];
+    private int columns[] = new int[256];
+    private double values[] = new double[256];
+    private String rowNames[] = NAMES_ENABLED ? new String[64] : null;
+    private int nRows;
+    private int nNonZeros;
+
+    // For each column, the last row with a term on it and the position
+    // of that term, so that the terms on a column already in the row
+    // being built are found without scanning the row.
+    private int lastRow[] = new int[0];
+    private int lastPosition[] = new int[0];
+
+    /**
+     * Registers a block of variables as columns of the matrix.
+     * @param variables the variables
+     * @return the column of the first variable of the block
+     */
+    int addColumns(IloNumVar variables[]) {
+        columnBlocks.add(variables);
+        int offset = nColumns;
+        nColumns += variables.length;
+        if (nColumns > lastRow.length) {
+            int length = Math.max(nColumns, 2 * lastRow.length);
+            lastRow = Arrays.copyOf(lastRow, length);
+            lastPosition = Arrays.copyOf(lastPosition, length);
+            Arrays.fill(lastRow, offset, length, -1);
+        }
+        return offset;
+    }
+
+    /**
+     * Adds a term to the row being built. Terms on a column already
+     * in the row are merged.
+     * @param column the column of the variable
+     * @param value the coefficient
+     */
+    void addTerm(int column, double value) {
+        if (lastRow[column] == nRows) {
+            values[lastPosition[column]] += value;
+            return;
+        }
+        if (nNonZeros == columns.length) {
+            columns = Arrays.copyOf(columns, 2 * nNonZeros);
+            values = Arrays.copyOf(values, 2 * nNonZeros);
+        }
+        columns[nNonZeros] = column;
+        values[nNonZeros] = value;
+        lastRow[column] = nRows;
+        lastPosition[column] = nNonZeros;
+        nNonZeros++;
+    }
+
+    /**
+     * Ends the row being built: lowerBound &lt;= terms &lt;= upperBound.
+     * The name of the row is name_i_j (name_i if j is negative, name if
+     * both are negative), and is only built if names are enabled.
+     * @param lowerBound
+     * @param upperBound
+     * @param name
+     * @param i
+     * @param j
+     * @return the index of the row
+     */
+    int addRow(double lowerBound, double upperBound, String name, int i, int j) {
+        // Drops the terms whose coefficients cancelled out when merged.
+        int end = rowStart[nRows];
+        for (int k = rowStart[nRows]; k < nNonZeros; k++) {
+            if (values[k] != 0) {
+                columns[end] = columns[k];
+                values[end] = values[k];
+                end++;
+            }
+        }
+        nNonZeros = end;
+        if (nRows + 1 == lowerBounds.length) {
+            lowerBounds = Arrays.copyOf(lowerBounds, 2 * lowerBounds.length);
+            upperBounds = Arrays.copyOf(upperBounds, 2 * upperBounds.length);
+            rowStart = Arrays.copyOf(rowStart, 2 * rowStart.length);
+            if (rowNames != null) {
+                rowNames = Arrays.copyOf(rowNames, 2 * rowNames.length);
+            }
+        }
+        lowerBounds[nRows] = lowerBound;
+        upperBounds[nRows] = upperBound;
+        if (rowNames != null) {
+            rowNames[nRows] = name(name, i, j);
+        }
+        rowStart[nRows + 1] = nNonZeros;
+        return nRows++;
+    }
+
+    /**
+     * Ends the row being built as terms &gt;= rhs.
+     */
+    int addGe(double rhs, String name, int i, int j) {
+        return addRow(rhs, Double.POSITIVE_INFINITY, name, i, j);
+    }
+
+    /**
+     * Ends the row being built as terms &lt;= rhs.
+     */
+    int addLe(double rhs, String name, int i, int j) {
+        return addRow(Double.NEGATIVE_INFINITY, rhs, name, i, j);
+    }
+
+    /**
+     * Ends the row being built as terms == rhs.
+     */
+    int addEq(double rhs, String name, int i, int j) {
+        return addRow(rhs, rhs, name, i, j);
+    }
+
+    /**
+     * Returns the number of rows built so far.
+     * @return 
+     */
+    int getNRows() {
+        return nRows;
+    }
+
+    /**
+     * Adds all the rows to a model in one call.
+     * @param model the model
+     * @return the matrix holding the rows, whose row indices are those
+     * returned by addRow()
+     * @throws IloException 
+     */
+    IloLPMatrix load(IloCplex model) throws IloException {
+        IloNumVar variables[] = new IloNumVar[nColumns];
+        int offset = 0;
+        for (IloNumVar block[] : columnBlocks) {
+            System.arraycopy(block, 0, variables, offset, block.length);
+            offset += block.length;
+        }
+        int rowColumns[][] = new int[nRows][];
+        double rowValues[][] = new double[nRows][];
+        for (int r = 0; r < nRows; r++) {
+            rowColumns[r] = Arrays.copyOfRange(columns, rowStart[r], rowStart[r + 1]);
+            rowValues[r] = Arrays.copyOfRange(values, rowStart[r], rowStart[r + 1]);
+        }
+        IloLPMatrix matrix = model.addLPMatrix();
+        matrix.addCols(variables);
+        matrix.addRows(Arrays.copyOf(lowerBounds, nRows), Arrays.copyOf(upperBounds, nRows), rowColumns, rowValues);
+        if (rowNames != null) {
+            IloRange ranges[] = matrix.getRanges();
+            for (int r = 0; r < nRows; r++) {
+                ranges[r].setName(rowNames[r]);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Names the variables of a block name_i_j (or name_j if i is
+     * negative), if names are enabled.
+     * @param variables the variables, j being their index in the array
+     * @param name
+     * @param i
+     */
+    static void name(IloNumVar variables[], String name, int i) {
+        if (NAMES_ENABLED) {
+            for (int j = 0; j < variables.length; j++) {
+                variables[j].setName(i >= 0 ? name+"_"+i+"_"+j : name+"_"+j);
+            }
+        }
+    }
+
+    private static String name(String name, int i, int j) {
+        if (i < 0) {
+            return j < 0 ? name : name+"_"+j;
+        }
+        return j < 0 ? name+"_"+i : name+"_"+i+"_"+j;
+    }
+}
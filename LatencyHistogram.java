@@ -0,0 +1,132 @@
+package UnitCommitment;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds.
+ * Latencies are counted in 64 buckets, bucket k holding
+ * the latencies in [2^(k-1), 2^k) (and bucket 0 the zero latencies). This makes recording a latency
+ * a handful of atomic increments, at the price of reporting
+ * percentiles with a precision of a factor of two.
+ * @author Luttner
+ */
+public class LatencyHistogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+        }
+    }
+
+    /**
+     * Returns an immutable copy of the current state of the histogram.
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long copy[] = new long[buckets.length()];
+        for (int k = 0; k < copy.length; k++) {
+            copy[k] = buckets.get(k);
+        }
+        return new Snapshot(copy, count.get(), total.get(), max.get());
+    }
+
+    /**
+     * An immutable copy of a LatencyHistogram.
+     */
+    public static class Snapshot {
+        private final long buckets[];
+        private final long count;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long buckets[], long count, long total, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of latencies recorded.
+         * @return 
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of the latencies recorded, in nanoseconds.
+         * @return 
+         */
+        public long getTotalNanos() {
+            return total;
+        }
+
+        /**
+         * Returns the largest latency recorded, in nanoseconds.
+         * @return 
+         */
+        public long getMaxNanos() {
+            return max;
+        }
+
+        /**
+         * Returns the mean latency, in nanoseconds.
+         * @return 
+         */
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * Returns an upper bound on the given percentile of the
+         * latencies, in nanoseconds.
+         * @param percentile the percentile, between 0 and 100
+         * @return the upper end of the bucket holding the percentile
+         */
+        public long getPercentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            long seen = 0;
+            for (int k = 0; k < buckets.length; k++) {
+                seen += buckets[k];
+                if (seen >= rank && seen > 0) {
+                    return k == 0 ? 0 : Math.min(max, (1L << k) - 1);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns the snapshot as a JSON object.
+         * @return 
+         */
+        public String toJson() {
+            return "{\"count\":"+count
+                    +",\"totalNanos\":"+total
+                    +",\"meanNanos\":"+getMeanNanos()
+                    +",\"p50Nanos\":"+getPercentileNanos(50)
+                    +",\"p90Nanos\":"+getPercentileNanos(90)
+                    +",\"p99Nanos\":"+getPercentileNanos(99)
+                    +",\"maxNanos\":"+max+"}";
+        }
+    }
+}
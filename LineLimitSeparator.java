@@ -0,0 +1,195 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloRange;
+import ilog.cplex.IloCplex;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Separates the flow limits of the lines of a network, which are left out
+ * of the initial models and only added when a dispatch violates them
+ * (only a few of them are ever binding).
+ * The limit of line k at period j in direction s (+1 or -1) reads
+ * s*(sum_i g_ki*p_ij + w_k*l_j) &lt;= F_k + s*w_k*D_j
+ * (see UnitCommitmentNetwork).
+ * The limits added to a model are remembered, so that the subproblems of
+ * the Bender's Decomposition, which are built anew for each status of the
+ * generators, start with the limits already known to bind. The separator
+ * can therefore be shared by the threads of the callbacks.
+ * @author Luttner
+ */
+final class LineLimitSeparator {
+
+    /**
+     * A flow limit of a line at a period, in one direction.
+     */
+    static final class LineLimit {
+        final int line;
+        final int period;
+        final int sign;
+        // The violation found when the limit was separated.
+        final double violation;
+
+        LineLimit(int line, int period, int sign, double violation) {
+            this.line = line;
+            this.period = period;
+            this.sign = sign;
+            this.violation = violation;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof LineLimit)) {
+                return false;
+            }
+            LineLimit limit = (LineLimit) other;
+            return line == limit.line && period == limit.period && sign == limit.sign;
+        }
+
+        @Override
+        public int hashCode() {
+            return (line*31 + period)*2 + (sign > 0 ? 1 : 0);
+        }
+    }
+
+    private final UnitCommitmentProblem problem;
+    private final UnitCommitmentNetwork network;
+    // The largest number of limits added per separation.
+    private final int maximumLimits;
+    private final Set<LineLimit> known = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a separator adding at most 50 limits per separation.
+     * @param problem
+     * @param network
+     */
+    LineLimitSeparator(UnitCommitmentProblem problem, UnitCommitmentNetwork network) {
+        this(problem, network, 50);
+    }
+
+    /**
+     * Creates a separator.
+     * @param problem
+     * @param network
+     * @param maximumLimits the largest number of limits added per separation
+     * (the most violated ones)
+     */
+    LineLimitSeparator(UnitCommitmentProblem problem, UnitCommitmentNetwork network, int maximumLimits) {
+        if (network.getNLines() > 0 && network.getGeneratorShiftFactors(0).length != problem.getNGenerators()) {
+            throw new IllegalArgumentException("The network locates "+network.getGeneratorShiftFactors(0).length
+                    +" generators, the problem has "+problem.getNGenerators());
+        }
+        this.problem = problem;
+        this.network = network;
+        this.maximumLimits = maximumLimits;
+    }
+
+    /**
+     * Returns the network.
+     * @return
+     */
+    UnitCommitmentNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Returns the limits added to the models so far.
+     * @return a snapshot of the limits
+     */
+    List<LineLimit> getKnownLimits() {
+        return new ArrayList<>(known);
+    }
+
+    /**
+     * Returns the number of limits added to the models so far.
+     * @return
+     */
+    int getNKnownLimits() {
+        return known.size();
+    }
+
+    /**
+     * Finds the limits violated by a dispatch, the most violated first.
+     * @param P the output of each generator at each period
+     * @param L the load shed at each period
+     * @return the violated limits (at most maximumLimits)
+     */
+    List<LineLimit> separate(double P[][], double L[]) {
+        double demands[] = problem.getPowerDemands();
+        List<LineLimit> violated = new ArrayList<>();
+        for (int k = 0; k < network.getNLines(); k++) {
+            double limit = network.getFlowLimit(k);
+            double tolerance = 1e-6*Math.max(1, limit);
+            for (int j = 0; j < problem.getNPeriods(); j++) {
+                double flow = network.getFlow(k, j, P, L, demands);
+                if (flow > limit + tolerance) {
+                    violated.add(new LineLimit(k, j, 1, flow - limit));
+                } else if (-flow > limit + tolerance) {
+                    violated.add(new LineLimit(k, j, -1, -flow - limit));
+                }
+            }
+        }
+        if (violated.size() > maximumLimits) {
+            Collections.sort(violated, Comparator.comparingDouble((LineLimit limit) -> limit.violation).reversed());
+            violated = new ArrayList<>(violated.subList(0, maximumLimits));
+        }
+        return violated;
+    }
+
+    /**
+     * Remembers a limit added to a model.
+     * @param limit
+     * @return whether the limit was not known yet
+     */
+    boolean remember(LineLimit limit) {
+        return known.add(limit);
+    }
+
+    /**
+     * Returns the right-hand side of a limit, F_k + s*w_k*D_j.
+     * @param limit
+     * @return
+     */
+    double getRightHandSide(LineLimit limit) {
+        return network.getFlowLimit(limit.line)
+                + limit.sign*network.getLoadShiftFactor(limit.line)*problem.getPowerDemands()[limit.period];
+    }
+
+    /**
+     * Returns the part of the right-hand side of a limit which is
+     * multiplied by the demand, s*w_k.
+     * @param limit
+     * @return
+     */
+    double getDemandCoefficient(LineLimit limit) {
+        return limit.sign*network.getLoadShiftFactor(limit.line);
+    }
+
+    /**
+     * Creates the constraint of a limit with the variables of a model.
+     * @param model the model the variables belong to
+     * @param p the outputs of the generators
+     * @param l the load sheds
+     * @param limit
+     * @return the constraint, not added to the model
+     * @throws IloException
+     */
+    IloRange getRange(IloCplex model, IloNumVar p[][], IloNumVar l[], LineLimit limit) throws IloException {
+        double shiftFactors[] = network.getGeneratorShiftFactors(limit.line);
+        IloLinearNumExpr lhs = model.linearNumExpr();
+        for (int i = 0; i < shiftFactors.length; i++) {
+            if (shiftFactors[i] != 0) {
+                lhs.addTerm(limit.sign*shiftFactors[i], p[i][limit.period]);
+            }
+        }
+        lhs.addTerm(limit.sign*network.getLoadShiftFactor(limit.line), l[limit.period]);
+        return model.le(lhs, getRightHandSide(limit));
+    }
+}
@@ -6,15 +6,18 @@
 package UnitCommitment;
 
 import ilog.concert.IloException;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
- *
+ * Solves the problem with the Bender's algorithm and directly.
+ * Usage: Main [metrics.json], where the metrics of the Bender's
+ * algorithm are written if a file is given.
  * @author Luttner
  */
 public class Main {
  
-    public static void main(String[] args) throws IloException, FileNotFoundException{
+    public static void main(String[] args) throws IloException, IOException{
 
         // Populates the data of the problem
         int nGenerators = 31;
@@ -29,9 +32,19 @@ public class Main {
         System.out.println();
         
         UnitCommitmentBendersMasterProblem UCPMaster = new UnitCommitmentBendersMasterProblem(UCP);
-        UCPMaster.solve();
+        // Rounds the fractional u every 10 nodes to find incumbents early.
+        UCPMaster.setHeuristicFrequency(10);
+        // The progress of the algorithm is printed by a separate thread,
+        // so that the callback does not wait for the console.
+        try (RingBufferSolveLogger logger = new RingBufferSolveLogger(System.out)) {
+            UCPMaster.setListener(logger);
+            UCPMaster.solve();
+        }
 
         System.out.println(UCPMaster.getObjective());
+        if (args.length > 0) {
+            UCPMaster.getMetrics().snapshot().writeJson(Paths.get(args[0]));
+        }
         
         System.out.println();
         System.out.println("Solving the problem directly:");
@@ -45,6 +58,12 @@ public class Main {
         System.out.println("Solution from direct algorithm:");
         UCPModel.printSolution();
 
+        // Checks both solutions against the constraints of the problem
+        // and recomputes their objective values.
+        UnitCommitmentSolutionVerifier verifier = new UnitCommitmentSolutionVerifier();
+        System.out.println("Verification of Bender's solution: "+verifier.verify(UCP, UCPMaster.getSolution()));
+        System.out.println("Verification of direct solution: "+verifier.verify(UCP, UCPModel.getSolution()));
+
         //UCPMaster.printCSVSolution();
         //UCPModel.printCSVSolution();
 
@@ -0,0 +1,219 @@
+package UnitCommitment;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A SolveListener which prints the progress of the Bender's algorithm
+ * without doing any I/O on the threads of Cplex.
+ * The events are copied as primitives into a pre-allocated ring buffer,
+ * and a separate (daemon) thread formats and prints them.
+ * If the printing thread cannot keep up and the buffer is full,
+ * new events are dropped (and counted) instead of blocking the solver.
+ * @author Luttner
+ */
+public class RingBufferSolveLogger implements SolveListener, AutoCloseable {
+
+    // The kinds of events stored in the buffer.
+    private static final int CALLBACK_ENTERED = 0;
+    private static final int SUBPROBLEM_SOLVED = 1;
+    private static final int CUT_ADDED = 2;
+    private static final int NODE_ACCEPTED = 3;
+    private static final int INCUMBENT_CHANGED = 4;
+    private static final int BOUND_CHANGED = 5;
+
+    private final PrintStream out;
+    private final int mask;
+
+    // The slots of the buffer, stored as parallel arrays of primitives
+    // so that publishing an event does not allocate.
+    private final int kinds[];
+    private final int types[];
+    private final double values[];
+    private final long longs[];
+    // published[s] holds the sequence number (plus one) of the event
+    // last written to slot s. The consumer uses it to know whether
+    // the slot is ready to be read.
+    private final AtomicLongArray published;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a logger printing to the given stream, with a buffer
+     * of 4096 events.
+     * @param out the stream the events are printed to
+     */
+    public RingBufferSolveLogger(PrintStream out) {
+        this(out, 4096);
+    }
+
+    /**
+     * Creates a logger printing to the given stream.
+     * @param out the stream the events are printed to
+     * @param capacity the number of events the buffer can hold,
+     * rounded up to a power of two
+     */
+    public RingBufferSolveLogger(PrintStream out, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.out = out;
+        this.mask = size - 1;
+        this.kinds = new int[size];
+        this.types = new int[size];
+        this.values = new double[size];
+        this.longs = new long[size];
+        this.published = new AtomicLongArray(size);
+        this.consumer = new Thread(this::drainLoop, "solve-logger");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    @Override
+    public void callbackEntered(long callbackCount, double phi) {
+        publish(CALLBACK_ENTERED, 0, phi, callbackCount);
+    }
+
+    @Override
+    public void subproblemSolved(BendersCutType type, double objective, long nanos) {
+        publish(SUBPROBLEM_SOLVED, type.ordinal(), objective, nanos);
+    }
+
+    @Override
+    public void cutAdded(BendersCutType type, double violation, int nonZeros) {
+        publish(CUT_ADDED, type.ordinal(), violation, nonZeros);
+    }
+
+    @Override
+    public void nodeAccepted(double objective) {
+        publish(NODE_ACCEPTED, 0, objective, 0);
+    }
+
+    @Override
+    public void incumbentChanged(double objective) {
+        publish(INCUMBENT_CHANGED, 0, objective, 0);
+    }
+
+    @Override
+    public void boundChanged(double bound) {
+        publish(BOUND_CHANGED, 0, bound, 0);
+    }
+
+    /**
+     * Returns the number of events which were dropped because
+     * the buffer was full.
+     * @return the number of dropped events
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Claims a slot of the buffer and writes the event into it.
+     * Never blocks: if the buffer is full the event is dropped.
+     */
+    private void publish(int kind, int type, double value, long l) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail.get() > mask) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+        int slot = (int) (sequence & mask);
+        kinds[slot] = kind;
+        types[slot] = type;
+        values[slot] = value;
+        longs[slot] = l;
+        published.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * The loop run by the printing thread.
+     */
+    private void drainLoop() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Prints all the events published so far.
+     * @return whether at least one event was printed
+     */
+    private boolean drain() {
+        boolean printed = false;
+        long sequence = tail.get();
+        while (true) {
+            int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence + 1) {
+                break;
+            }
+            print(kinds[slot], types[slot], values[slot], longs[slot]);
+            sequence++;
+            tail.lazySet(sequence);
+            printed = true;
+        }
+        return printed;
+    }
+
+    private void print(int kind, int type, double value, long l) {
+        switch (kind) {
+            case CALLBACK_ENTERED:
+                out.println("Callback "+l+" Phi "+value);
+                break;
+            case SUBPROBLEM_SOLVED:
+                if (type == BendersCutType.FEASIBILITY.ordinal()) {
+                    out.println("FSP "+value+" ("+(l / 1000)+" us)");
+                } else {
+                    out.println("OSP "+value+" ("+(l / 1000)+" us)");
+                }
+                break;
+            case CUT_ADDED:
+                if (type == BendersCutType.FEASIBILITY.ordinal()) {
+                    out.println("Generating feasibility cut (violation "+value+", "+l+" non-zeros)");
+                } else {
+                    out.println("Generating optimality cut (violation "+value+", "+l+" non-zeros)");
+                }
+                break;
+            case NODE_ACCEPTED:
+                out.println("The current node is optimal");
+                break;
+            case INCUMBENT_CHANGED:
+                out.println("Incumbent "+value);
+                break;
+            case BOUND_CHANGED:
+                out.println("Bound "+value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Stops the printing thread after it has printed all the events
+     * published so far.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0) {
+            out.println(dropped.get()+" solve events were dropped");
+        }
+    }
+}
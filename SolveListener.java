@@ -0,0 +1,69 @@
+package UnitCommitment;
+
+/**
+ * Receives structured progress events from the Bender's algorithm.
+ * The events are reported from inside the lazy constraint callback,
+ * i.e., from the branch and bound threads of Cplex. Implementations
+ * must therefore be cheap and thread-safe, and should not do any
+ * (formatted) I/O in these methods. See RingBufferSolveLogger for
+ * an implementation which moves the printing to a separate thread.
+ * All the methods do nothing by default, so that implementations
+ * only need to override the events they are interested in.
+ * @author Luttner
+ */
+public interface SolveListener {
+
+    /**
+     * A listener which ignores all the events.
+     */
+    SolveListener NO_OP = new SolveListener() {
+    };
+
+    /**
+     * Called every time the callback is entered at an integer node.
+     * @param callbackCount the number of times the callback has been entered so far
+     * @param phi the value of phi at the node
+     */
+    default void callbackEntered(long callbackCount, double phi) {
+    }
+
+    /**
+     * Called after a subproblem has been built and solved.
+     * @param type the type of the subproblem
+     * @param objective the objective value of the subproblem
+     * @param nanos the time spent building and solving it, in nanoseconds
+     */
+    default void subproblemSolved(BendersCutType type, double objective, long nanos) {
+    }
+
+    /**
+     * Called after a cut has been added to the Master Problem.
+     * @param type the type of the cut
+     * @param violation by how much the cut is violated at the current node
+     * @param nonZeros the number of non-zero coefficients of the cut in u
+     */
+    default void cutAdded(BendersCutType type, double violation, int nonZeros) {
+    }
+
+    /**
+     * Called when the current node is found to be optimal, i.e., 
+     * no cut is needed.
+     * @param objective the objective value of the optimality subproblem
+     */
+    default void nodeAccepted(double objective) {
+    }
+
+    /**
+     * Called when the incumbent objective value of the Master Problem changes.
+     * @param objective the new incumbent objective value
+     */
+    default void incumbentChanged(double objective) {
+    }
+
+    /**
+     * Called when the best bound of the Master Problem changes.
+     * @param bound the new best bound
+     */
+    default void boundChanged(double bound) {
+    }
+}
@@ -0,0 +1,306 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import java.util.Arrays;
+
+/**
+ * A fast approximate engine for the Unit Commitment Problem, for when an
+ * answer is needed within a second or so, even if it is not optimal.
+ * It solves the LP relaxation of the problem, rounds the status of the
+ * generators (u) respecting the minimum on-times and off-times and the
+ * demands, and solves the dispatch LP for the rounded status.
+ * The objective of the LP relaxation is a lower bound on the optimal
+ * objective, so the result reports the gap of the solution found.
+ * @author Luttner
+ */
+public class UnitCommitmentApproximateSolver {
+
+    private final UnitCommitmentProblem problem;
+    private final UnitCommitmentProblemModel model;
+    private UnitCommitmentSolution solution;
+
+    /**
+     * Creates the engine, building the LP relaxation of the problem.
+     * @param problem
+     * @throws IloException
+     */
+    public UnitCommitmentApproximateSolver(UnitCommitmentProblem problem) throws IloException {
+        this.problem = problem;
+        this.model = new UnitCommitmentProblemModel(problem);
+        model.relax();
+    }
+
+    /**
+     * Sets the number of threads used by Cplex, e.g. when several
+     * problems are solved at the same time. The default (0) lets Cplex
+     * use all the cores.
+     * @param threads
+     * @throws IloException
+     */
+    public void setThreads(int threads) throws IloException {
+        model.setThreads(threads);
+    }
+
+    /**
+     * Solves the problem approximately.
+     * @return the objective of the solution found, the bound given by the
+     * LP relaxation and the gap
+     * @throws IloException
+     */
+    public UnitCommitmentSolveResult solve() throws IloException {
+        long start = System.nanoTime();
+
+        // 1. The LP relaxation gives the bound and the fractional u.
+        UnitCommitmentSolveResult relaxation = model.optimize();
+        if (relaxation.getStatus() != UnitCommitmentSolveResult.Status.OPTIMAL) {
+            return new UnitCommitmentSolveResult(relaxation.getStatus(), Double.NaN, Double.NaN, 0, (System.nanoTime() - start)/1e9);
+        }
+        double bound = relaxation.getObjective();
+
+        // 2. We round u and fix it in the model, so that the
+        // model is the dispatch LP for the rounded u.
+        int U[][] = round(problem, model.getRelaxedU());
+        model.fixCommitment(U);
+        UnitCommitmentSolveResult dispatch = model.optimize();
+        double seconds = (System.nanoTime() - start)/1e9;
+        if (!dispatch.hasIncumbent()) {
+            return new UnitCommitmentSolveResult(UnitCommitmentSolveResult.Status.UNKNOWN, Double.NaN, bound, 0, seconds);
+        }
+        solution = new UnitCommitmentSolution(U, model.getP(), model.getL(), dispatch.getObjective());
+        UnitCommitmentSolveResult.Status status = dispatch.getObjective() - bound <= 1e-9*(1 + Math.abs(bound))
+                ? UnitCommitmentSolveResult.Status.OPTIMAL
+                : UnitCommitmentSolveResult.Status.FEASIBLE;
+        return new UnitCommitmentSolveResult(status, dispatch.getObjective(), bound, 0, seconds);
+    }
+
+    /**
+     * Returns the solution found.
+     * @return the solution
+     */
+    public UnitCommitmentSolution getSolution() {
+        if (solution == null) {
+            throw new IllegalStateException("No solution has been found");
+        }
+        return solution;
+    }
+
+    /**
+     * Rounds a fractional status of the generators to a status for which
+     * the dispatch LP is feasible.
+     * Each generator is started when the average of its fractional status
+     * over the next minimum on-time periods is at least 0.5, and then kept
+     * on for at least its minimum on-time. It is shut down when the average
+     * over the next minimum off-time periods is below 0.5, and then kept off
+     * for at least its minimum off-time. A generator whose minimum output
+     * exceeds its ramp-up limit can never be started, and one whose minimum
+     * output exceeds its ramp-down limit can never be shut down.
+     * Then, while the minimum outputs of the generators on at a period
+     * exceed the demand, the generator with the largest minimum output is
+     * shut down for its whole run through that period. The dispatch at the
+     * minimum outputs is then feasible (the rest of the demand is shed).
+     * Finally, while the output the generators on at a period can reach
+     * (within their ramp limits from and to their periods off) is below
+     * the demand, the cheapest generator which can be started there is
+     * given a run through that period: of at least its minimum on-time,
+     * joined to its neighboring runs if the periods off in between would
+     * be shorter than its minimum off-time, and whose minimum output fits
+     * below the demand at every period it adds, so that the dispatch
+     * remains feasible.
+     * @param problem
+     * @param relaxed the fractional status of each generator at each period
+     * @return the status of each generator at each period
+     */
+    static int[][] round(UnitCommitmentProblem problem, double relaxed[][]) {
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        double minimumOutput[] = problem.getMinimumOutput();
+        int U[][] = new int[nGenerators][nPeriods];
+        for (int i = 0; i < nGenerators; i++) {
+            if (minimumOutput[i] > problem.getRampUpLimit()[i]) {
+                continue;
+            }
+            boolean canShutDown = minimumOutput[i] <= problem.getRampDownLimit()[i];
+            int minimumOnTime = Math.max(1, problem.getMinimumOnTime()[i]);
+            int minimumOffTime = Math.max(1, problem.getMinimumOffTime()[i]);
+            int j = 0;
+            while (j < nPeriods) {
+                if (average(relaxed[i], j, minimumOnTime) < 0.5) {
+                    j++;
+                    continue;
+                }
+                // The generator starts at j and stays on for at least
+                // its minimum on-time, and then while it is mostly on.
+                int end = Math.min(j + minimumOnTime, nPeriods);
+                while (end < nPeriods && (!canShutDown || average(relaxed[i], end, minimumOffTime) >= 0.5)) {
+                    end++;
+                }
+                for (int t = j; t < end; t++) {
+                    U[i][t] = 1;
+                }
+                // Then it stays off for at least its minimum off-time.
+                j = end + minimumOffTime;
+            }
+        }
+
+        double demands[] = problem.getPowerDemands();
+        for (int j = 0; j < nPeriods; j++) {
+            double committed = 0;
+            for (int i = 0; i < nGenerators; i++) {
+                committed = committed + minimumOutput[i]*U[i][j];
+            }
+            while (committed > demands[j] + 1e-9) {
+                int largest = -1;
+                for (int i = 0; i < nGenerators; i++) {
+                    if (U[i][j] == 1 && (largest < 0 || minimumOutput[i] > minimumOutput[largest])) {
+                        largest = i;
+                    }
+                }
+                if (largest < 0) {
+                    break;
+                }
+                // Shutting the whole run down keeps the minimum on-times
+                // and only lengthens the periods off around it.
+                for (int t = j; t >= 0 && U[largest][t] == 1; t--) {
+                    U[largest][t] = 0;
+                }
+                for (int t = j + 1; t < nPeriods && U[largest][t] == 1; t++) {
+                    U[largest][t] = 0;
+                }
+                committed = committed - minimumOutput[largest];
+            }
+        }
+
+        // Capacity adequacy: the reachable output of each generator,
+        // and their sums.
+        double reachable[][] = new double[nGenerators][];
+        double totalReachable[] = new double[nPeriods];
+        double committedMinimum[] = new double[nPeriods];
+        for (int i = 0; i < nGenerators; i++) {
+            reachable[i] = reachableOutput(problem, i, U[i]);
+            for (int j = 0; j < nPeriods; j++) {
+                totalReachable[j] = totalReachable[j] + reachable[i][j];
+                committedMinimum[j] = committedMinimum[j] + minimumOutput[i]*U[i][j];
+            }
+        }
+        Integer meritOrder[] = new Integer[nGenerators];
+        for (int i = 0; i < nGenerators; i++) {
+            meritOrder[i] = i;
+        }
+        Arrays.sort(meritOrder, (a, b) -> Double.compare(problem.getMarginalCosts()[a], problem.getMarginalCosts()[b]));
+        for (int j = 0; j < nPeriods; j++) {
+            while (totalReachable[j] < demands[j] - 1e-9) {
+                int started = -1;
+                int run[] = null;
+                for (int i : meritOrder) {
+                    if (U[i][j] == 0 && minimumOutput[i] <= problem.getRampUpLimit()[i]) {
+                        run = runThrough(problem, i, U[i], j);
+                        if (fits(U[i], run, minimumOutput[i], committedMinimum, demands)) {
+                            started = i;
+                            break;
+                        }
+                    }
+                }
+                if (started < 0) {
+                    break;
+                }
+                for (int t = run[0]; t < run[1]; t++) {
+                    if (U[started][t] == 0) {
+                        U[started][t] = 1;
+                        committedMinimum[t] = committedMinimum[t] + minimumOutput[started];
+                    }
+                }
+                double output[] = reachableOutput(problem, started, U[started]);
+                for (int t = 0; t < nPeriods; t++) {
+                    totalReachable[t] = totalReachable[t] - reachable[started][t] + output[t];
+                }
+                reachable[started] = output;
+            }
+        }
+        return U;
+    }
+
+    /**
+     * Returns the highest output a generator can reach at each period,
+     * given its status, within its maximum output and its ramp limits
+     * (from an output of 0 before the first period and at the periods off).
+     */
+    private static double[] reachableOutput(UnitCommitmentProblem problem, int i, int status[]) {
+        int nPeriods = status.length;
+        double high[] = new double[nPeriods];
+        double previous = 0;
+        for (int j = 0; j < nPeriods; j++) {
+            high[j] = Math.min(status[j]*problem.getMaximumOutput()[i], previous + problem.getRampUpLimit()[i]);
+            previous = high[j];
+        }
+        for (int j = nPeriods - 2; j >= 0; j--) {
+            high[j] = Math.min(high[j], high[j+1] + problem.getRampDownLimit()[i]);
+        }
+        return high;
+    }
+
+    /**
+     * Returns the run [start, end) in which a generator off at a period
+     * would be started: at least its minimum on-time long (to the end of
+     * the horizon if it can never be shut down), and joined to its
+     * neighboring runs if the periods off in between would be shorter
+     * than its minimum off-time.
+     */
+    private static int[] runThrough(UnitCommitmentProblem problem, int i, int status[], int j) {
+        int nPeriods = status.length;
+        int minimumOnTime = Math.max(1, problem.getMinimumOnTime()[i]);
+        int minimumOffTime = Math.max(1, problem.getMinimumOffTime()[i]);
+        int start = Math.max(0, Math.min(j, nPeriods - minimumOnTime));
+        int end = Math.min(nPeriods, start + minimumOnTime);
+        if (problem.getMinimumOutput()[i] > problem.getRampDownLimit()[i]) {
+            end = nPeriods;
+        }
+        int previousEnd = start;
+        while (previousEnd > 0 && status[previousEnd - 1] == 0) {
+            previousEnd--;
+        }
+        if (previousEnd > 0 && start - previousEnd < minimumOffTime) {
+            start = previousEnd;
+        }
+        int nextStart = end;
+        while (nextStart < nPeriods && status[nextStart] == 0) {
+            nextStart++;
+        }
+        if (nextStart < nPeriods && nextStart - end < minimumOffTime) {
+            end = nextStart;
+        }
+        return new int[]{start, end};
+    }
+
+    /**
+     * Returns whether the minimum output of a generator fits below the
+     * demand at every period a run adds to its status.
+     */
+    private static boolean fits(int status[], int run[], double minimumOutput, double committedMinimum[], double demands[]) {
+        for (int t = run[0]; t < run[1]; t++) {
+            if (status[t] == 0 && committedMinimum[t] + minimumOutput > demands[t] + 1e-9) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the average of the values in [from, from+length),
+     * truncated at the end of the array.
+     */
+    private static double average(double values[], int from, int length) {
+        int to = Math.min(from + length, values.length);
+        double sum = 0;
+        for (int t = from; t < to; t++) {
+            sum = sum + values[t];
+        }
+        return sum/(to - from);
+    }
+
+    /**
+     * Releases all the objects retained by the IloCplex object.
+     */
+    public void end() {
+        model.end();
+    }
+}
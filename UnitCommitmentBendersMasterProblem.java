@@ -10,6 +10,31 @@ import ilog.concert.IloIntVar;
 import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumVar;
 import ilog.cplex.IloCplex;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 /**
  * This class creates the template for objects representing
@@ -43,9 +68,82 @@ public class UnitCommitmentBendersMasterProblem {
     private final IloNumVar phi;
 
     // We also define arrays for p and l in order to access the final
-    // solution (in the print methods).
+    // solution (in the print methods), and the status of the generators
+    // they were obtained for.
     private double p[][];
     private double l[];
+    private int dispatchedU[][];
+
+    // Receives the progress events of the callback. By default
+    // nothing is reported, so the callback does no I/O.
+    private SolveListener listener = SolveListener.NO_OP;
+    private final AtomicLong callbackCount = new AtomicLong();
+
+    // Latencies and counters of the algorithm. The time spent in
+    // branch and bound is measured, on each thread of Cplex, between
+    // the end of a callback and the start of the next one on the same
+    // thread (the threads run their callbacks independently). It is
+    // replaced at each solve, so that every thread starts at the solve.
+    private final BendersMetrics metrics = new BendersMetrics();
+    private volatile ThreadLocal<long[]> lastCallbackExit = new ThreadLocal<>();
+
+    // Proves most U feasible without solving the feasibility subproblem.
+    private final UnitCommitmentFeasibilityScreen feasibilityScreen;
+
+    // The cuts generated or added, if they are kept (e.g., to store them
+    // in a UnitCommitmentSolutionCache and warm start another solve).
+    private volatile boolean keepCuts;
+    private final List<BendersCut> cuts = Collections.synchronizedList(new ArrayList<>());
+
+    // The checkpoints of the run, if enabled: the best solution accepted
+    // by the callback and the best bound are written, with the cuts,
+    // at most every checkpointInterval nanoseconds.
+    private Path checkpointPath;
+    private long checkpointInterval;
+    private final AtomicLong lastCheckpoint = new AtomicLong();
+    private final Object checkpointLock = new Object();
+    private volatile UnitCommitmentSolution incumbent;
+    private volatile double bestBound = Double.NEGATIVE_INFINITY;
+    private volatile IOException checkpointFailure;
+
+    // The heuristic callback rounds the fractional u at every
+    // heuristicFrequency-th node (never if 0, the default).
+    private int heuristicFrequency;
+
+    // When a cut is added, up to harvestSize other candidates (integer
+    // solutions accepted recently and neighbors of the incumbent) are
+    // evaluated by harvestThreads threads, and their cuts are added in
+    // the same batch (none if harvestSize is 0). Each candidate is only
+    // evaluated once: the candidates evaluated (or whose cut has been
+    // added by the callback) are remembered, bit-packed.
+    private int harvestSize;
+    private int harvestThreads;
+    private ExecutorService harvestPool;
+    private final Deque<int[][]> acceptedU = new ArrayDeque<>();
+    private final Set<PackedU> harvested = ConcurrentHashMap.newKeySet();
+
+    // In the asynchronous mode, the callback hands its candidates to
+    // asyncThreads workers, and the cuts they find are pooled until a
+    // callback adds them (0 for the synchronous mode).
+    private int asyncThreads;
+    private ExecutorService asyncPool;
+    private final Queue<BendersCut> pooledCuts = new ConcurrentLinkedQueue<>();
+    private final Map<Candidate, Future<BendersEvaluation>> pendingCandidates = new ConcurrentHashMap<>();
+
+    // The remote subproblem workers, or null if the subproblems
+    // are solved in this process.
+    private BendersWorkerPool workerPool;
+
+    // The periods whose dispatch is copied into the master problem
+    // (partial decomposition), in increasing order, and the copied
+    // variables, or null.
+    private int partialPeriods[];
+    private IloNumVar partialP[][];
+    private IloNumVar partialL[];
+
+    // The separator of the flow limits of the lines, or null if the
+    // problem has no network.
+    private LineLimitSeparator lineLimits;
 
     /**
      * Creates the Master Problem.
@@ -55,7 +153,10 @@ public class UnitCommitmentBendersMasterProblem {
     
     public UnitCommitmentBendersMasterProblem(UnitCommitmentProblem problem) throws IloException {
 
+        UnitCommitmentEvents.ModelBuild event = new UnitCommitmentEvents.ModelBuild();
+        event.begin();
         this.problem = problem;
+        this.feasibilityScreen = new UnitCommitmentFeasibilityScreen(problem);
         
         // 1. Every model needs an IloCplex object
         this.model = new IloCplex();
@@ -66,14 +167,22 @@ public class UnitCommitmentBendersMasterProblem {
         // one for the on/off status of the generators (u),
         // thus we create two arrays of decision variables,
         // bidimensional on periods and generators, and one single for "phi".
-        this.c = new IloNumVar[problem.getNGenerators()][problem.getNPeriods()];
-        this.u = new IloIntVar[problem.getNGenerators()][problem.getNPeriods()];
-        
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                c[i][j] = model.numVar(0, Double.POSITIVE_INFINITY, "c_"+i+"_"+j);
-                u[i][j] = model.boolVar("u_"+i+"_"+j);
-            }
+        // The variables are created in bulk, one array per generator, and
+        // registered as the columns of the constraint matrix.
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        this.c = new IloNumVar[nGenerators][];
+        this.u = new IloIntVar[nGenerators][];
+        LPMatrixBuilder matrix = new LPMatrixBuilder();
+        int cColumn[] = new int[nGenerators];
+        int uColumn[] = new int[nGenerators];
+        for(int i = 0; i < nGenerators; i++){
+            c[i] = model.numVarArray(nPeriods, 0, Double.POSITIVE_INFINITY);
+            u[i] = model.boolVarArray(nPeriods);
+            LPMatrixBuilder.name(c[i], "c", i);
+            LPMatrixBuilder.name(u[i], "u", i);
+            cColumn[i] = matrix.addColumns(c[i]);
+            uColumn[i] = matrix.addColumns(u[i]);
         }
 
         this.phi = model.numVar(0, Double.POSITIVE_INFINITY,"phi");
@@ -83,12 +192,14 @@ public class UnitCommitmentBendersMasterProblem {
         // First we create an empty linear expression.
         IloLinearNumExpr objective = model.linearNumExpr();
         
-        // Then we add the terms of the expression.
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                objective.addTerm(c[i][j], 1);
-                objective.addTerm(u[i][j], problem.getCommitmentCosts()[i]);
-            }
+        // Then we add the terms of the expression,
+        // one array of variables at a time.
+        double coefficients[] = new double[nPeriods];
+        for(int i = 0; i < nGenerators; i++){
+            Arrays.fill(coefficients, 1);
+            objective.addTerms(coefficients, c[i]);
+            Arrays.fill(coefficients, problem.getCommitmentCosts()[i]);
+            objective.addTerms(coefficients, u[i]);
         }
 
         objective.addTerm(phi,1);
@@ -100,60 +211,54 @@ public class UnitCommitmentBendersMasterProblem {
                
         // Now we add the Master Problem constraints, i.e, constraints
         // 1b, 1c and 1d, which refer to the variables of the first stage
-        // problem, u and c.
+        // problem, u and c. The rows are built in the matrix and added
+        // to the model at once at the end.
     
         
         // Constraints 1b: Start-up costs
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(c[i][j], 1);
-                lhs.addTerm(u[i][j], -problem.getStartupCosts()[i]);
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(cColumn[i]+j, 1);
+                matrix.addTerm(uColumn[i]+j, -problem.getStartupCosts()[i]);
                 if (j>0){
-                    lhs.addTerm(u[i][j-1], problem.getStartupCosts()[i]);
+                    matrix.addTerm(uColumn[i]+j-1, problem.getStartupCosts()[i]);
                 }
-                // Finally we add the constraint to the model 
-                model.addGe(lhs, 0,"StartupCost_"+i+"_"+j);
+                matrix.addGe(0, "StartupCost", i, j);
             }
         }
 
         // Constraints 1c: Minimum ontime constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
                 for(int t=j; t< minimumOnTimeAtT(i,j); t++){
-                    lhs.addTerm(u[i][t], 1);
-                    lhs.addTerm(u[i][j], -1);
+                    matrix.addTerm(uColumn[i]+t, 1);
+                    matrix.addTerm(uColumn[i]+j, -1);
                     if (j>0){
-                        lhs.addTerm(u[i][j-1], 1);
+                        matrix.addTerm(uColumn[i]+j-1, 1);
                     }
                 }
-                // Finally we add the constraint to the model 
-                model.addGe(lhs, 0,"MinimumOntime_"+i+"_"+j);
+                matrix.addGe(0, "MinimumOntime", i, j);
             }
         }
 
         // Constraints 1d: Minimum offtime constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
                 for(int t=j; t< minimumOffTimeAtT(i,j); t++){
-                    lhs.addTerm(u[i][t], -1);
-                    lhs.addTerm(u[i][j], 1);
+                    matrix.addTerm(uColumn[i]+t, -1);
+                    matrix.addTerm(uColumn[i]+j, 1);
                     if (j>0){
-                        lhs.addTerm(u[i][j-1], -1);
+                        matrix.addTerm(uColumn[i]+j-1, -1);
                     }
                 }
-                // Finally we add the constraint to the model 
-                model.addGe(lhs, j-minimumOffTimeAtT(i,j)-1,"MinimumOffTime_"+i+"_"+j);
+                matrix.addGe(j-minimumOffTimeAtT(i,j)-1, "MinimumOffTime", i, j);
             }
         }
+        matrix.load(model);
+        UnitCommitmentEvents.commitModelBuild(event, "UnitCommitmentBendersMasterProblem", problem.getNGenerators(), problem.getNPeriods());
     }
     
     /**
@@ -197,24 +302,904 @@ public class UnitCommitmentBendersMasterProblem {
     public int[][] getU() throws IloException {
         int[][] U = new int[problem.getNGenerators()][problem.getNPeriods()];
         for(int i = 0; i < problem.getNGenerators(); i++){
+            double values[] = model.getValues(u[i]);
             for(int j = 0; j < problem.getNPeriods(); j++){
-                U[i][j]= (int) model.getValue(u[i][j]);
+                U[i][j]= (int) Math.round(values[j]);
             }
         }    
         return U;
     }
     /**
-     * Solves the Master Problem.
+     * Sets the listener which receives the progress events of the
+     * algorithm (callbacks, subproblems, cuts, incumbent and bound).
+     * @param listener the listener, or null to report nothing
+     */
+    public void setListener(SolveListener listener) {
+        this.listener = listener == null ? SolveListener.NO_OP : listener;
+    }
+
+    /**
+     * Sets a limit on the time spent by solve().
+     * @param seconds the time limit, in seconds
+     * @throws IloException 
+     */
+    public void setTimeLimit(double seconds) throws IloException {
+        model.setParam(IloCplex.Param.TimeLimit, seconds);
+    }
+
+    /**
+     * Sets the number of threads used by Cplex for the Master Problem,
+     * and thus the number of callbacks solving subproblems at the same
+     * time, e.g. when several problems are solved at the same time.
+     * The default (0) lets Cplex use all the cores.
+     * @param threads
+     * @throws IloException 
+     */
+    public void setThreads(int threads) throws IloException {
+        model.setParam(IloCplex.Param.Threads, threads);
+    }
+
+    /**
+     * Sets the relative gap at which solve() stops: the incumbent is
+     * accepted once |objective - bound| / (1e-10 + |objective|) is
+     * below this value. The default is 1e-4.
+     * @param gap
+     * @throws IloException 
+     */
+    public void setRelativeGap(double gap) throws IloException {
+        model.setParam(IloCplex.Param.MIP.Tolerances.MIPGap, gap);
+    }
+
+    /**
+     * Sets the absolute gap at which solve() stops: the incumbent is
+     * accepted once objective - bound is below this value.
+     * The default is 1e-6.
+     * @param gap
+     * @throws IloException 
+     */
+    public void setAbsoluteGap(double gap) throws IloException {
+        model.setParam(IloCplex.Param.MIP.Tolerances.AbsMIPGap, gap);
+    }
+
+    /**
+     * Sets a limit on the number of nodes explored by solve().
+     * @param nodes
      * @throws IloException 
      */
-    public void solve() throws IloException{
+    public void setNodeLimit(long nodes) throws IloException {
+        model.setParam(IloCplex.Param.MIP.Limits.Nodes, nodes);
+    }
+
+    /**
+     * Sets how often the heuristic callback tries to turn the fractional
+     * u of a node into an incumbent. The heuristic is disabled by default;
+     * every 10 nodes is a reasonable frequency.
+     * @param nodes the heuristic is called at every nodes-th node,
+     * or never if 0
+     */
+    public void setHeuristicFrequency(int nodes) {
+        if (nodes < 0) {
+            throw new IllegalArgumentException("Negative frequency "+nodes);
+        }
+        this.heuristicFrequency = nodes;
+    }
+
+    /**
+     * Enables harvesting cuts: every time the callback adds a cut for the
+     * candidate of a node, it also evaluates other candidates (the integer
+     * solutions accepted most recently, and the neighbors of the incumbent
+     * obtained by moving a startup or a shutdown by one period),
+     * solving their subproblems in parallel, and adds the violated cuts in
+     * the same batch. This pays off when the subproblems are cheap relative
+     * to reoptimizing the master problem, since fewer callbacks are needed.
+     * The legacy callbacks have no access to the solution pool of Cplex
+     * during the solve, so the solutions accepted by the callback take
+     * its place. Each candidate is evaluated at most once, and its cut
+     * (if it needs one) is added once: an optimality cut bounds phi at its
+     * candidate, whatever the value of phi at the current node.
+     * @param candidates the number of other candidates evaluated per cut,
+     * or 0 to disable harvesting
+     * @param threads the number of threads solving their subproblems
+     */
+    public void setCutHarvesting(int candidates, int threads) {
+        if (candidates < 0 || threads < 1) {
+            throw new IllegalArgumentException("Invalid harvesting "+candidates+" candidates, "+threads+" threads");
+        }
+        this.harvestSize = candidates;
+        this.harvestThreads = threads;
+    }
+
+    /**
+     * Enables the asynchronous mode, in which the subproblems are solved
+     * by workers while Cplex explores the tree. The callback hands its
+     * candidate to the workers and first adds the cuts they have already
+     * found: if one of them cuts off the candidate, it returns at once.
+     * A candidate whose objective is not better than the incumbent's is
+     * accepted without being certified, since it can neither become the
+     * incumbent nor lead to a better solution (the master problem is a
+     * relaxation). Only otherwise does the callback wait for the workers
+     * to evaluate the candidate.
+     * @param threads the number of workers, or 0 for the synchronous mode
+     */
+    public void setAsynchronous(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Negative number of threads "+threads);
+        }
+        this.asyncThreads = threads;
+    }
+
+    /**
+     * Sends the subproblems to remote workers (see BendersWorker) instead
+     * of solving them in this process. The callbacks of Cplex, the workers
+     * of the asynchronous mode and the harvesting send their candidates to
+     * whichever worker is available. A candidate is evaluated locally if
+     * no worker can evaluate it.
+     * The pool must have been created with the network of the problem
+     * (see setNetwork()), if any.
+     * @param pool the connections to the workers, or null to solve the
+     * subproblems locally
+     */
+    public void setWorkerPool(BendersWorkerPool pool) {
+        this.workerPool = pool;
+    }
+
+    /**
+     * Solves the Master Problem. The solve stops at the first termination
+     * criterion met (gap, time or node limit).
+     * @return the objective of the incumbent, the best bound and the gap
+     * @throws IloException 
+     */
+    public UnitCommitmentSolveResult solve() throws IloException{
+        if (workerPool != null && !workerPool.hasNetwork(getNetwork())) {
+            throw new IllegalStateException("The workers have not loaded the network of the problem");
+        }
         
         // In this way we inform Cplex that
         // we want to use the callback we define below
         model.use(new Callback());
+        if (heuristicFrequency > 0) {
+            model.use(new Heuristic());
+        }
+        if (harvestSize > 0) {
+            harvestPool = Executors.newFixedThreadPool(harvestThreads, daemonThreads("benders-harvest"));
+        }
+        if (asyncThreads > 0) {
+            asyncPool = Executors.newFixedThreadPool(asyncThreads, daemonThreads("benders-async"));
+        }
         
         // Solves the problem
-        model.solve();
+        long start = System.nanoTime();
+        lastCallbackExit = ThreadLocal.withInitial(() -> new long[]{start});
+        lastCheckpoint.set(start);
+        try {
+            model.solve();
+        } finally {
+            if (harvestPool != null) {
+                harvestPool.shutdownNow();
+                harvestPool = null;
+            }
+            if (asyncPool != null) {
+                asyncPool.shutdownNow();
+                asyncPool = null;
+                pendingCandidates.clear();
+                pooledCuts.clear();
+            }
+        }
+        metrics.record(BendersMetrics.Phase.MASTER, System.nanoTime() - lastCallbackExit.get()[0]);
+        UnitCommitmentSolveResult result = UnitCommitmentSolveResult.of(model, (System.nanoTime() - start)/1e9);
+
+        // The dispatch (p and l) is the one of the last node accepted by
+        // the callback, which is not necessarily the incumbent (e.g., when
+        // the nodes are processed by several threads), or there may be
+        // none. In that case we obtain it from the optimality subproblem.
+        if (result.hasIncumbent()) {
+            int U[][] = getU();
+            if (!Arrays.deepEquals(U, dispatchedU)) {
+                dispatch(U);
+            }
+        }
+
+        // A last checkpoint is written when the run ends, e.g. because
+        // of the time limit, so that it can be resumed from there.
+        if (checkpointPath != null) {
+            checkpoint();
+            if (checkpointFailure != null) {
+                throw new UncheckedIOException("Could not write the checkpoint "+checkpointPath, checkpointFailure);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Obtains the dispatch (p and l) of a status of the generators
+     * by solving the optimality subproblem.
+     * @param U the status of the generators
+     * @throws IloException 
+     */
+    private void dispatch(int U[][]) throws IloException {
+        UnitCommitmentBendersOptimalityProblem osp = new UnitCommitmentBendersOptimalityProblem(problem, U, metrics, lineLimits);
+        osp.solve();
+        setDispatch(U, osp.getP(), osp.getL());
+        osp.end();
+    }
+
+    /**
+     * Keeps the dispatch of a status of the generators,
+     * to report the solution.
+     */
+    private synchronized void setDispatch(int U[][], double P[][], double L[]) {
+        dispatchedU = U;
+        p = P;
+        l = L;
+    }
+
+    /**
+     * Enables the checkpoints of the run: the best solution found, the best
+     * bound and the cuts generated (which are therefore kept) are written
+     * to a file periodically, and when solve() returns. The run can then be
+     * resumed from the file with resume(BendersCheckpoint.read(path)).
+     * @param path the file
+     * @param intervalSeconds the minimum time between two checkpoints
+     */
+    public void setCheckpoint(Path path, double intervalSeconds) {
+        this.checkpointPath = path;
+        this.checkpointInterval = (long) (intervalSeconds*1e9);
+        setKeepCuts(true);
+    }
+
+    /**
+     * Resumes a run from one of its checkpoints: adds the cuts generated
+     * to the model and gives the incumbent to Cplex as a MIP start.
+     * This must be called before solve().
+     * @param checkpoint
+     * @throws IloException 
+     */
+    public void resume(BendersCheckpoint checkpoint) throws IloException {
+        if (!checkpoint.isCheckpointOf(problem, getNetwork())) {
+            throw new IllegalArgumentException("The checkpoint was taken while solving another problem, or with another network");
+        }
+        addCuts(checkpoint.getCuts());
+        bestBound = checkpoint.getBestBound();
+        if (checkpoint.getIncumbent() != null) {
+            incumbent = checkpoint.getIncumbent();
+            addMIPStart(checkpoint.getIncumbent());
+        }
+    }
+
+    /**
+     * Writes a checkpoint if it is enabled and none has been written in
+     * the last checkpointInterval nanoseconds. A failure is kept and
+     * reported by solve(), so that it does not stop the run.
+     */
+    private void checkpointIfDue() {
+        if (checkpointPath != null && System.nanoTime() - lastCheckpoint.get() >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    private void checkpoint() {
+        synchronized (checkpointLock) {
+            lastCheckpoint.set(System.nanoTime());
+            try {
+                new BendersCheckpoint(problem, getNetwork(), incumbent, bestBound, getCuts()).write(checkpointPath);
+                checkpointFailure = null;
+            } catch (IOException e) {
+                checkpointFailure = e;
+            }
+        }
+    }
+
+    /**
+     * Keeps a solution accepted by the callback as the incumbent,
+     * if it is better than the current one.
+     */
+    private synchronized void accept(int U[][], double P[][], double L[], double objective) {
+        if (incumbent == null || objective < incumbent.getObjective()) {
+            incumbent = new UnitCommitmentSolution(U, P, L, objective);
+        }
+    }
+
+    /**
+     * Sets whether the cuts generated while solving the problem are kept,
+     * so that they can be read with getCuts(). Each cut takes
+     * nGenerators*nPeriods doubles, so they are not kept by default.
+     * @param keepCuts 
+     */
+    public void setKeepCuts(boolean keepCuts) {
+        this.keepCuts = keepCuts;
+    }
+
+    /**
+     * Returns the cuts generated while solving the problem, and those
+     * added with addCuts(), if they are kept.
+     * @return the cuts
+     */
+    public List<BendersCut> getCuts() {
+        synchronized (cuts) {
+            return new ArrayList<>(cuts);
+        }
+    }
+
+    /**
+     * Adds cuts generated for another instance with the same fleet
+     * (e.g., from a UnitCommitmentSolutionCache) to the model, before
+     * solving it. Their constants are recomputed for the demands of this
+     * problem. Since the cuts are valid for any demands, they only cut
+     * off first-stage solutions which would be cut off anyway.
+     * @param initialCuts the cuts
+     * @return the number of cuts added
+     * @throws IloException 
+     */
+    public int addCuts(Collection<BendersCut> initialCuts) throws IloException {
+        int added = 0;
+        for (BendersCut cut : initialCuts) {
+            if (cut.getNGenerators() != problem.getNGenerators() || cut.getNPeriods() != problem.getNPeriods()) {
+                throw new IllegalArgumentException("The cut does not match the dimensions of the problem");
+            }
+            IloLinearNumExpr cutTerm = getCutLinearTerm(cut);
+            if (cut.getType() == BendersCutType.OPTIMALITY) {
+                cutTerm.addTerm(-1, phi);
+            }
+            model.addLe(cutTerm, -cut.getConstant(problem.getPowerDemands()));
+            keep(cut);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Adds to the model valid inequalities derived from the structure of
+     * the second-stage problem, which the master problem would otherwise
+     * only learn through feasibility and optimality cuts:
+     * - the minimum outputs of the generators on at a period cannot
+     *   exceed the demand, since p &gt;= minimumOutput*u and the outputs
+     *   cannot exceed the demand;
+     * - a generator whose minimum output exceeds its ramp-up limit can
+     *   never be on (its output starts from 0), and one whose minimum
+     *   output exceeds its ramp-down limit can never be shut down;
+     * - two lower bounds on phi in u. Writing the dispatch cost as
+     *   cmin*D + sum (mc - cmin)*p, where cmin is the lowest marginal or
+     *   load shedding cost, and using p &gt;= minimumOutput*u gives the first.
+     *   Writing it as s*D + sum (mc - s)*p, where s is the load shedding
+     *   cost, and bounding each term with the minimum or maximum output
+     *   depending on its sign gives the second, which values each
+     *   generator on as the load shedding it saves (merit order).
+     * This must be called before solve().
+     * @return the number of constraints added
+     * @throws IloException 
+     */
+    public int addValidInequalities() throws IloException {
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        double minimumOutput[] = problem.getMinimumOutput();
+        double maximumOutput[] = problem.getMaximumOutput();
+        double marginalCosts[] = problem.getMarginalCosts();
+        double demands[] = problem.getPowerDemands();
+        int added = 0;
+
+        // Committed minimum output at most the demand
+        IloNumVar periodU[] = new IloNumVar[nGenerators];
+        for (int j = 0; j < nPeriods; j++) {
+            for (int i = 0; i < nGenerators; i++) {
+                periodU[i] = u[i][j];
+            }
+            IloLinearNumExpr lhs = model.linearNumExpr();
+            lhs.addTerms(minimumOutput, periodU);
+            if (LPMatrixBuilder.NAMES_ENABLED) {
+                model.addLe(lhs, demands[j], "CommittedMinimumOutput_"+j);
+            } else {
+                model.addLe(lhs, demands[j]);
+            }
+            added++;
+        }
+
+        // Ramp reachability
+        for (int i = 0; i < nGenerators; i++) {
+            if (minimumOutput[i] > problem.getRampUpLimit()[i]) {
+                for (int j = 0; j < nPeriods; j++) {
+                    u[i][j].setUB(0);
+                }
+            } else if (minimumOutput[i] > problem.getRampDownLimit()[i]) {
+                for (int j = 1; j < nPeriods; j++) {
+                    IloLinearNumExpr lhs = model.linearNumExpr();
+                    lhs.addTerm(1, u[i][j-1]);
+                    lhs.addTerm(-1, u[i][j]);
+                    model.addLe(lhs, 0);
+                    added++;
+                }
+            }
+        }
+
+        // Lower bounds on phi
+        double cheapest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < nGenerators; i++) {
+            cheapest = Math.min(cheapest, marginalCosts[i]);
+        }
+        IloLinearNumExpr lowestCost = model.linearNumExpr();
+        IloLinearNumExpr meritOrder = model.linearNumExpr();
+        double lowestCostConstant = 0;
+        double meritOrderConstant = 0;
+        double lowestCostCoefficients[] = new double[nPeriods];
+        double meritOrderCoefficients[] = new double[nPeriods];
+        double cmin[] = new double[nPeriods];
+        for (int j = 0; j < nPeriods; j++) {
+            double shedding = problem.getLoadSheddingCosts()[j];
+            cmin[j] = Math.min(cheapest, shedding);
+            lowestCostConstant = lowestCostConstant + cmin[j]*demands[j];
+            meritOrderConstant = meritOrderConstant + shedding*demands[j];
+        }
+        for (int i = 0; i < nGenerators; i++) {
+            for (int j = 0; j < nPeriods; j++) {
+                double shedding = problem.getLoadSheddingCosts()[j];
+                lowestCostCoefficients[j] = (marginalCosts[i] - cmin[j])*minimumOutput[i];
+                meritOrderCoefficients[j] = marginalCosts[i] >= shedding
+                        ? (marginalCosts[i] - shedding)*minimumOutput[i]
+                        : (marginalCosts[i] - shedding)*maximumOutput[i];
+            }
+            lowestCost.addTerms(lowestCostCoefficients, u[i]);
+            meritOrder.addTerms(meritOrderCoefficients, u[i]);
+        }
+        // phi >= constant + linear term
+        lowestCost.addTerm(-1, phi);
+        meritOrder.addTerm(-1, phi);
+        model.addLe(lowestCost, -lowestCostConstant);
+        model.addLe(meritOrder, -meritOrderConstant);
+        return added + 2;
+    }
+
+    /**
+     * Adds the transmission network to the problem. The flow limits of its
+     * lines are not added to the subproblems when they are built: each
+     * subproblem adds the limits violated by its dispatch and is solved
+     * again until none is violated (constraint generation). The limits
+     * found are shared by the subproblems built afterwards, and the cuts
+     * take their duals into account.
+     * This must be called before solve().
+     * @param network the network, whose generators are those of the problem
+     */
+    public void setNetwork(UnitCommitmentNetwork network) {
+        this.lineLimits = network == null ? null : new LineLimitSeparator(problem, network);
+    }
+
+    /**
+     * Returns the network of the problem.
+     * @return the network, or null if there is none
+     */
+    public UnitCommitmentNetwork getNetwork() {
+        return lineLimits == null ? null : lineLimits.getNetwork();
+    }
+
+    /**
+     * Returns the number of flow limits added to the subproblems so far.
+     * @return
+     */
+    public int getNLineLimits() {
+        return lineLimits == null ? 0 : lineLimits.getNKnownLimits();
+    }
+
+    /**
+     * Copies the dispatch of some periods (e.g., the peak-demand periods)
+     * into the master problem, so that the master problem sees the
+     * second-stage constraints of those periods directly instead of
+     * learning them through cuts (partial decomposition).
+     * For each selected period we add the outputs p and the load shedding
+     * l with the power balance (1e) and the output limits (1f, 1g) linked
+     * to u, and the ramp limits (1h, 1i) towards the previous period if it
+     * is also selected (or the output of 0 before the first period).
+     * Since the dispatch cost is the sum of nonnegative costs per period,
+     * phi is bounded below by the dispatch cost of the selected periods.
+     * The subproblems still contain the dispatch of all the periods and
+     * generate the cuts as before.
+     * This must be called before solve(), and only once.
+     * @param periods the periods whose dispatch is copied
+     * @return the number of constraints added
+     * @throws IloException 
+     */
+    public int addPartialDecomposition(int periods[]) throws IloException {
+        if (partialPeriods != null) {
+            throw new IllegalStateException("The partial decomposition has already been added");
+        }
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        double minimumOutput[] = problem.getMinimumOutput();
+        double maximumOutput[] = problem.getMaximumOutput();
+        double rampUpLimit[] = problem.getRampUpLimit();
+        double rampDownLimit[] = problem.getRampDownLimit();
+        double marginalCosts[] = problem.getMarginalCosts();
+        double demands[] = problem.getPowerDemands();
+
+        int selected[] = Arrays.stream(periods).sorted().distinct().toArray();
+        for (int j : selected) {
+            if (j < 0 || j >= nPeriods) {
+                throw new IllegalArgumentException("No period "+j);
+            }
+        }
+        int n = selected.length;
+        IloNumVar pS[][] = new IloNumVar[nGenerators][];
+        for (int i = 0; i < nGenerators; i++) {
+            pS[i] = model.numVarArray(n, 0, Double.POSITIVE_INFINITY);
+        }
+        IloNumVar lS[] = model.numVarArray(n, 0, Double.POSITIVE_INFINITY);
+        int added = 0;
+
+        // Dispatch cost of the selected periods
+        IloLinearNumExpr cost = model.linearNumExpr();
+        for (int k = 0; k < n; k++) {
+            int j = selected[k];
+            // The previous period is in the master problem if it is
+            // selected too; before the first period the output is 0.
+            boolean previous = k > 0 && selected[k-1] == j - 1;
+
+            // Constraints 1e: Power balance constraints
+            IloLinearNumExpr balance = model.linearNumExpr();
+            for (int i = 0; i < nGenerators; i++) {
+                balance.addTerm(1, pS[i][k]);
+            }
+            balance.addTerm(1, lS[k]);
+            model.addEq(balance, demands[j]);
+            cost.addTerm(problem.getLoadSheddingCosts()[j], lS[k]);
+            added++;
+
+            for (int i = 0; i < nGenerators; i++) {
+                cost.addTerm(marginalCosts[i], pS[i][k]);
+
+                // Constraints 1f: Minimum output
+                IloLinearNumExpr lhs = model.linearNumExpr();
+                lhs.addTerm(1, pS[i][k]);
+                lhs.addTerm(-minimumOutput[i], u[i][j]);
+                model.addGe(lhs, 0);
+
+                // Constraints 1g: Maximum output
+                lhs = model.linearNumExpr();
+                lhs.addTerm(1, pS[i][k]);
+                lhs.addTerm(-maximumOutput[i], u[i][j]);
+                model.addLe(lhs, 0);
+                added = added + 2;
+
+                // Constraints 1h and 1i: Ramp limits
+                if (j == 0) {
+                    model.addLe(pS[i][k], rampUpLimit[i]);
+                    added++;
+                } else if (previous) {
+                    lhs = model.linearNumExpr();
+                    lhs.addTerm(1, pS[i][k]);
+                    lhs.addTerm(-1, pS[i][k-1]);
+                    model.addLe(lhs, rampUpLimit[i]);
+                    lhs = model.linearNumExpr();
+                    lhs.addTerm(1, pS[i][k-1]);
+                    lhs.addTerm(-1, pS[i][k]);
+                    model.addLe(lhs, rampDownLimit[i]);
+                    added = added + 2;
+                }
+            }
+        }
+        // phi >= dispatch cost of the selected periods
+        cost.addTerm(-1, phi);
+        model.addLe(cost, 0);
+
+        this.partialPeriods = selected;
+        this.partialP = pS;
+        this.partialL = lS;
+        return added + 1;
+    }
+
+    /**
+     * Selects the periods with the highest demands, for
+     * addPartialDecomposition().
+     * @param problem
+     * @param count the number of periods selected
+     * @return the periods, in increasing order
+     */
+    public static int[] peakPeriods(UnitCommitmentProblem problem, int count) {
+        double demands[] = problem.getPowerDemands();
+        return IntStream.range(0, problem.getNPeriods()).boxed()
+                .sorted((a, b) -> Double.compare(demands[b], demands[a]))
+                .limit(count).mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Selects periods at random, for addPartialDecomposition().
+     * @param problem
+     * @param count the number of periods selected
+     * @param seed the seed of the random number generator
+     * @return the periods, in increasing order
+     */
+    public static int[] sampledPeriods(UnitCommitmentProblem problem, int count, long seed) {
+        List<Integer> all = new ArrayList<>();
+        for (int j = 0; j < problem.getNPeriods(); j++) {
+            all.add(j);
+        }
+        Collections.shuffle(all, new Random(seed));
+        return all.stream().limit(count).mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Gives a first-stage solution (e.g., the solution of an instance with
+     * the same fleet) to Cplex as a MIP start. The value of phi is obtained
+     * by solving the subproblems for this problem, thus the start is only
+     * added if the status of the generators is feasible for this problem.
+     * @param start the solution whose status of the generators is used
+     * @return whether the start was added
+     * @throws IloException 
+     */
+    public boolean addMIPStart(UnitCommitmentSolution start) throws IloException {
+        double values[] = getStartValues(start.getU());
+        if (values == null) {
+            return false;
+        }
+        model.addMIPStart(getStartVariables(), values, IloCplex.MIPStartEffort.CheckFeas);
+        return true;
+    }
+
+    /**
+     * Screens a status of the generators for feasibility. If there is a
+     * network, the screen ignores the flow limits, which U may still
+     * violate: then only the feasibility subproblem can prove U feasible.
+     * @param U the status of each generator at each period
+     * @return the outcome of the screen
+     */
+    private UnitCommitmentFeasibilityScreen.Outcome screen(int U[][]) {
+        UnitCommitmentFeasibilityScreen.Outcome outcome = feasibilityScreen.screen(U);
+        if (lineLimits != null && outcome == UnitCommitmentFeasibilityScreen.Outcome.FEASIBLE) {
+            outcome = UnitCommitmentFeasibilityScreen.Outcome.INCONCLUSIVE;
+        }
+        return outcome;
+    }
+
+    /**
+     * Evaluates a candidate status of the generators, for cut harvesting
+     * and for the asynchronous mode. The remote workers are used if there
+     * are any, and the candidate is evaluated locally if none is available.
+     * @param U the status of each generator at each period
+     * @param Phi the value of phi the master problem expects for U
+     * @param dispatch whether the dispatch is returned if U needs no cut
+     * @return the evaluation
+     * @throws IloException 
+     */
+    private BendersEvaluation evaluateCandidate(int U[][], double Phi, boolean dispatch) throws IloException {
+        if (workerPool != null) {
+            BendersEvaluation evaluation = workerPool.evaluate(U, Phi, dispatch);
+            if (evaluation != null) {
+                return evaluation;
+            }
+        }
+        return BendersEvaluation.evaluate(problem, feasibilityScreen, lineLimits, metrics, U, Phi, dispatch);
+    }
+
+    /**
+     * A status of the generators as a key of a map.
+     */
+    private static final class Candidate {
+        final int U[][];
+
+        Candidate(int U[][]) {
+            this.U = U;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Candidate && Arrays.deepEquals(U, ((Candidate) other).U);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.deepHashCode(U);
+        }
+    }
+
+    /**
+     * A status of the generators packed one bit per generator and period
+     * (see BendersWorkerProtocol.pack()), to remember many of them.
+     */
+    private static final class PackedU {
+        final long bits[];
+
+        PackedU(int U[][]) {
+            this.bits = BendersWorkerProtocol.pack(U);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof PackedU && Arrays.equals(bits, ((PackedU) other).bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bits);
+        }
+    }
+
+    /**
+     * Evaluates a candidate in a worker of the asynchronous mode,
+     * pooling its cut.
+     */
+    private BendersEvaluation evaluateAsynchronously(Candidate candidate, double Phi) throws IloException {
+        try {
+            BendersEvaluation evaluation = evaluateCandidate(candidate.U, Phi, true);
+            if (evaluation.cut != null) {
+                pooledCuts.add(evaluation.cut);
+            }
+            return evaluation;
+        } finally {
+            pendingCandidates.remove(candidate);
+        }
+    }
+
+    /**
+     * Waits for the result of a worker.
+     * @return the result, or null if the thread was interrupted
+     * @throws IloException if the worker failed with it
+     */
+    private static <T> T await(Future<T> future) throws IloException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IloException) {
+                throw (IloException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns the neighbors of a status of the generators obtained by
+     * moving one startup or one shutdown one period earlier or later.
+     * @param U the status of each generator at each period
+     * @return the neighbors
+     */
+    private List<int[][]> getNeighbors(int U[][]) {
+        List<int[][]> neighbors = new ArrayList<>();
+        for (int i = 0; i < U.length; i++) {
+            for (int j = 0; j < U[i].length; j++) {
+                int previous = j > 0 ? U[i][j-1] : 0;
+                if (U[i][j] != previous) {
+                    // A switch at j: it can happen at j+1 instead
+                    // (keeping u at j) or at j-1 (flipping u at j-1).
+                    neighbors.add(flip(U, i, j));
+                    if (j > 0) {
+                        neighbors.add(flip(U, i, j-1));
+                    }
+                }
+            }
+        }
+        return neighbors;
+    }
+
+    private static int[][] flip(int U[][], int generator, int period) {
+        int V[][] = new int[U.length][];
+        for (int i = 0; i < U.length; i++) {
+            V[i] = i == generator ? U[i].clone() : U[i];
+        }
+        V[generator][period] = 1 - V[generator][period];
+        return V;
+    }
+
+    /**
+     * Returns the variables of the model whose values are given by
+     * getStartValues(): u and c of each generator at each period, the
+     * dispatch of the periods copied into the master problem, and phi.
+     * @return the variables
+     */
+    private IloNumVar[] getStartVariables() {
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        int nPartial = partialPeriods == null ? 0 : partialPeriods.length;
+        IloNumVar variables[] = new IloNumVar[2*nGenerators*nPeriods+1+(nGenerators+1)*nPartial];
+        int k = 0;
+        for (int i = 0; i < nGenerators; i++) {
+            for (int j = 0; j < nPeriods; j++) {
+                variables[k++] = u[i][j];
+                variables[k++] = c[i][j];
+            }
+        }
+        for (int m = 0; m < nPartial; m++) {
+            for (int i = 0; i < nGenerators; i++) {
+                variables[k++] = partialP[i][m];
+            }
+            variables[k++] = partialL[m];
+        }
+        variables[k] = phi;
+        return variables;
+    }
+
+    /**
+     * Evaluates a status of the generators: if it admits a feasible
+     * dispatch, computes the values of the variables of the model for it,
+     * phi being the dispatch cost given by the optimality subproblem.
+     * @param U the status of each generator at each period
+     * @return the values of the variables of getStartVariables(),
+     * or null if U admits no feasible dispatch
+     * @throws IloException 
+     */
+    private double[] getStartValues(int U[][]) throws IloException {
+        UnitCommitmentFeasibilityScreen.Outcome outcome = screen(U);
+        if (outcome == UnitCommitmentFeasibilityScreen.Outcome.INFEASIBLE) {
+            return null;
+        }
+        if (outcome == UnitCommitmentFeasibilityScreen.Outcome.INCONCLUSIVE) {
+            UnitCommitmentBendersFeasibilityProblem fsp = new UnitCommitmentBendersFeasibilityProblem(problem, U, metrics, lineLimits);
+            fsp.solve();
+            double fspObjective = fsp.getObjective();
+            fsp.end();
+            if (fspObjective >= 0+1e-9) {
+                return null;
+            }
+        }
+        UnitCommitmentBendersOptimalityProblem osp = new UnitCommitmentBendersOptimalityProblem(problem, U, metrics, lineLimits);
+        osp.solve();
+        double Phi = osp.getObjective();
+        double P[][] = partialPeriods == null ? null : osp.getP();
+        double L[] = partialPeriods == null ? null : osp.getL();
+        osp.end();
+
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        int nPartial = partialPeriods == null ? 0 : partialPeriods.length;
+        double values[] = new double[2*nGenerators*nPeriods+1+(nGenerators+1)*nPartial];
+        int k = 0;
+        for (int i = 0; i < nGenerators; i++) {
+            for (int j = 0; j < nPeriods; j++) {
+                int previous = j > 0 ? U[i][j-1] : 0;
+                values[k++] = U[i][j];
+                values[k++] = problem.getStartupCosts()[i]*Math.max(0, U[i][j] - previous);
+            }
+        }
+        // The dispatch of the subproblem also completes the start
+        // for the periods copied into the master problem.
+        for (int m = 0; m < nPartial; m++) {
+            int j = partialPeriods[m];
+            for (int i = 0; i < nGenerators; i++) {
+                values[k++] = P[i][j];
+            }
+            values[k++] = L[j];
+        }
+        values[k] = Phi;
+        return values;
+    }
+
+    /**
+     * Returns the linear term in u of a cut, with the variables of
+     * this problem.
+     * @param cut
+     * @return the linear term of the cut
+     * @throws IloException 
+     */
+    private IloLinearNumExpr getCutLinearTerm(BendersCut cut) throws IloException {
+        IloLinearNumExpr cutTerm = model.linearNumExpr();
+        for (int i = 0; i < problem.getNGenerators(); i++) {
+            cutTerm.addTerms(cut.getCoefficients(i), u[i]);
+        }
+        return cutTerm;
+    }
+
+    /**
+     * Keeps a cut, if the cuts are kept.
+     * @param cut 
+     */
+    private void keep(BendersCut cut) {
+        if (keepCuts) {
+            cuts.add(cut);
+        }
+    }
+
+    /**
+     * Returns the metrics collected while solving the problem.
+     * Use getMetrics().snapshot() to read them.
+     * @return the metrics
+     */
+    public BendersMetrics getMetrics() {
+        return metrics;
     }
 
 
@@ -235,6 +1220,10 @@ public class UnitCommitmentBendersMasterProblem {
      */
     private class Callback extends IloCplex.LazyConstraintCallback{
 
+        // The last incumbent and bound reported to the listener.
+        private volatile double lastIncumbent = Double.NaN;
+        private volatile double lastBound = Double.NaN;
+
         public Callback() {
         }
         /**
@@ -248,70 +1237,432 @@ public class UnitCommitmentBendersMasterProblem {
         
         @Override
         protected void main() throws IloException {
+            UnitCommitmentEvents.BendersCallback event = new UnitCommitmentEvents.BendersCallback();
+            event.begin();
+            long entry = System.nanoTime();
+            long lastExit[] = lastCallbackExit.get();
+            metrics.record(BendersMetrics.Phase.MASTER, entry - lastExit[0]);
+            metrics.increment(BendersMetrics.Counter.CALLBACKS);
             // 1. We start by obtaining the solution at the current node
             int[][] U = getU();
             double Phi = getPhi();
+            BendersCutType cut = null;
+            try {
+                listener.callbackEntered(callbackCount.incrementAndGet(), Phi);
+                reportProgress();
+                if (asyncPool != null) {
+                    cut = separateAsynchronously(U, Phi);
+                } else if (workerPool != null) {
+                    cut = separateRemotely(U, Phi);
+                } else {
+                    cut = separate(U, Phi);
+                }
+                if (harvestPool != null) {
+                    if (cut != null) {
+                        harvest(U);
+                    } else {
+                        synchronized (acceptedU) {
+                            acceptedU.addFirst(U);
+                            while (acceptedU.size() > harvestSize) {
+                                acceptedU.removeLast();
+                            }
+                        }
+                    }
+                }
+                checkpointIfDue();
+            } finally {
+                long exit = System.nanoTime();
+                metrics.record(BendersMetrics.Phase.CALLBACK, exit - entry);
+                lastExit[0] = exit;
+                event.end();
+                if (event.shouldCommit()) {
+                    event.callbackCount = callbackCount.get();
+                    event.generators = problem.getNGenerators();
+                    event.periods = problem.getNPeriods();
+                    event.phi = Phi;
+                    event.cutType = cut == null ? "NONE" : cut.name();
+                    event.commit();
+                }
+            }
+        }
+
+        /**
+         * Verifies whether the solution at the current node needs a
+         * feasibility or an optimality cut, and adds it.
+         * @param U the value of u at the current node
+         * @param Phi the value of phi at the current node
+         * @return the type of the cut added, or null if the node is optimal
+         * @throws IloException 
+         */
+        private BendersCutType separate(int[][] U, double Phi) throws IloException {
             
-            // 2. We check feasibility of the subproblem 
-            // 2.1 We create and solve a feasibility subproblem 
-            UnitCommitmentBendersFeasibilityProblem fsp = new UnitCommitmentBendersFeasibilityProblem(problem,U);
-            fsp.solve();
-            double fspObjective = fsp.getObjective();
-            
-            // 2.2 We check if the suproblem is feasible. 
-            // Remember, if the objective is zero the subproblem is feasible
-            System.out.println("FSP "+fspObjective);
-            if(fspObjective >= 0+1e-9){
-                // 2.3 If the objective is positive 
-                // the subproblem is not feasible. Thus we 
-                // need a feasibility cut.
-                System.out.println("Generating feasibility cut");
-                // 2.4 We obtain the constant and the linear term of the cut
-                // from the feasibility subproblem
-                double constant = fsp.getCutConstant();
-                IloLinearNumExpr linearTerm = fsp.getCutLinearTerm(u);
+            // 2. We check feasibility of the subproblem.
+            // Most U can be proven feasible by the screen, without
+            // solving an LP. Otherwise, or to obtain the feasibility cut,
+            // we solve the feasibility subproblem.
+            long start = System.nanoTime();
+            if (screen(U) != UnitCommitmentFeasibilityScreen.Outcome.FEASIBLE) {
+                // 2.1 We create and solve a feasibility subproblem 
+                UnitCommitmentBendersFeasibilityProblem fsp = new UnitCommitmentBendersFeasibilityProblem(problem,U,metrics,lineLimits);
+                fsp.solve();
+                double fspObjective = fsp.getObjective();
+                listener.subproblemSolved(BendersCutType.FEASIBILITY, fspObjective, System.nanoTime() - start);
                 
-                // 2.5 Thus we generate and add a cut to the current model.
-                // Remember that the cut is constant + linearTerm <= 0.
-                // Notice that we use the method add() from the LazyConstraintCallback
-                // class. This method adds the cut "lazily" to the model being
-                // solved. Instead, the method model.le() does not add a cut!
-                // It only creates and returns an IloRange object (which models 
-                // a constraint. Notice the difference between model.le()
-                // and model.addLe() which we used when creating the model. 
-                add(model.le(linearTerm, -constant));
+                // 2.2 We check if the suproblem is feasible. 
+                // Remember, if the objective is zero the subproblem is feasible
+                if(fspObjective >= 0+1e-9){
+                    // 2.3 If the objective is positive 
+                    // the subproblem is not feasible. Thus we 
+                    // need a feasibility cut.
+                    // 2.4 We obtain the constant and the linear term of the cut
+                    // from the feasibility subproblem
+                    BendersCut fspCut = fsp.getCut();
+                    double constant = fspCut.getConstant(problem.getPowerDemands());
+                    IloLinearNumExpr linearTerm = getCutLinearTerm(fspCut);
+                    keep(fspCut);
+                    
+                    // 2.5 Thus we generate and add a cut to the current model.
+                    // Remember that the cut is constant + linearTerm <= 0.
+                    // Notice that we use the method add() from the LazyConstraintCallback
+                    // class. This method adds the cut "lazily" to the model being
+                    // solved. Instead, the method model.le() does not add a cut!
+                    // It only creates and returns an IloRange object (which models 
+                    // a constraint. Notice the difference between model.le()
+                    // and model.addLe() which we used when creating the model. 
+                    long insertion = System.nanoTime();
+                    UnitCommitmentEvents.CutAddition cutEvent = new UnitCommitmentEvents.CutAddition();
+                    cutEvent.begin();
+                    add(model.le(linearTerm, -constant));
+                    metrics.record(BendersMetrics.Phase.CUT_INSERTION, System.nanoTime() - insertion);
+                    metrics.increment(BendersMetrics.Counter.FEASIBILITY_CUTS);
+                    // By duality, the violation of the cut at the current U
+                    // is the objective of the feasibility subproblem.
+                    reportCutAddition(cutEvent, fspCut, fspObjective);
+                    fsp.end();
+                    return BendersCutType.FEASIBILITY;
+                }
+                fsp.end();
+            }
+            // 3. Since the subproblem is feasible, we check optimality
+            // and verify whether we should add an optimality cut.
+            
+            // 3.1. First, we create and solve an optimality suproblem
+            start = System.nanoTime();
+            UnitCommitmentBendersOptimalityProblem osp = new UnitCommitmentBendersOptimalityProblem(problem,U,metrics,lineLimits);
+            osp.solve();
+            double ospObjective = osp.getObjective();
+            listener.subproblemSolved(BendersCutType.OPTIMALITY, ospObjective, System.nanoTime() - start);
+            
+            // 3.2. Then we check if the optimality test is satisfied.
+            if(Phi >= ospObjective - 1e-9){
+                // 3.3. In this case the problem at the current node
+                // is optimal.
+                listener.nodeAccepted(ospObjective);
+                double P[][] = osp.getP();
+                double L[] = osp.getL();
+                setDispatch(U, P, L);
+                osp.end();
+                if (checkpointPath != null) {
+                    accept(U, P, L, getObjValue());
+                }
+                return null;
             }else{
-                // 3. Since the subproblem is feasible, we check optimality
-                // and verify whether we should add an optimality cut.
-                
-                // 3.1. First, we create and solve an optimality suproblem
-                UnitCommitmentBendersOptimalityProblem osp = new UnitCommitmentBendersOptimalityProblem(problem,U);
-                osp.solve();
-                double ospObjective = osp.getObjective();
-                
-                // 3.2. Then we check if the optimality test is satisfied.
-                System.out.println("Phi "+Phi+ " OSP "+ospObjective );
-                if(Phi >= ospObjective - 1e-9){
-                    // 3.3. In this case the problem at the current node
-                    // is optimal.
-                    System.out.println("The current node is optimal");
-                    p = new double[problem.getNGenerators()][problem.getNPeriods()];
-                    p = osp.getP();
-                    l = new double[problem.getNPeriods()];
-                    l = osp.getL();
-                }else{
-                    // 3.4. In this case we need an optimality cut. 
-                    System.out.println("Generating optimality cut");
-                    // We get the constant and the linear term from
-                    // the optimality suproblem 
-                    double cutConstant = osp.getCutConstant();
-                    IloLinearNumExpr cutTerm = osp.getCutLinearTerm(u);
-                    cutTerm.addTerm(-1, phi);
-                    // and generate and add a cut. 
-                    add(model.le(cutTerm, -cutConstant));
+                // 3.4. In this case we need an optimality cut. 
+                // We get the constant and the linear term from
+                // the optimality suproblem 
+                BendersCut ospCut = osp.getCut();
+                double cutConstant = ospCut.getConstant(problem.getPowerDemands());
+                IloLinearNumExpr cutTerm = getCutLinearTerm(ospCut);
+                keep(ospCut);
+                cutTerm.addTerm(-1, phi);
+                // and generate and add a cut. 
+                long insertion = System.nanoTime();
+                UnitCommitmentEvents.CutAddition cutEvent = new UnitCommitmentEvents.CutAddition();
+                cutEvent.begin();
+                add(model.le(cutTerm, -cutConstant));
+                metrics.record(BendersMetrics.Phase.CUT_INSERTION, System.nanoTime() - insertion);
+                metrics.increment(BendersMetrics.Counter.OPTIMALITY_CUTS);
+                reportCutAddition(cutEvent, ospCut, ospObjective - Phi);
+                osp.end();
+                return BendersCutType.OPTIMALITY;
+            }
+        }
+
+        /**
+         * Verifies whether the solution at the current node needs a cut
+         * in the asynchronous mode (see setAsynchronous()).
+         * @param U the value of u at the current node
+         * @param Phi the value of phi at the current node
+         * @return the type of the cut added, or null if the node is accepted
+         * @throws IloException 
+         */
+        private BendersCutType separateAsynchronously(int[][] U, double Phi) throws IloException {
+            Future<BendersEvaluation> future = pendingCandidates.computeIfAbsent(new Candidate(U),
+                    candidate -> asyncPool.submit(() -> evaluateAsynchronously(candidate, Phi)));
+            BendersCutType type = addPooledCuts(U, Phi);
+            if (type != null) {
+                return type;
+            }
+            if (hasIncumbent() && getObjValue() >= getIncumbentObjValue()) {
+                metrics.increment(BendersMetrics.Counter.UNCERTIFIED_ACCEPTS);
+                return null;
+            }
+
+            // The candidate may become the incumbent: it must be certified.
+            long start = System.nanoTime();
+            BendersEvaluation evaluation = await(future);
+            metrics.record(BendersMetrics.Phase.ASYNC_WAIT, System.nanoTime() - start);
+            if (evaluation == null) {
+                return separate(U, Phi);
+            }
+            type = addPooledCuts(U, Phi);
+            if (type != null) {
+                return type;
+            }
+            if (evaluation.cut != null && violation(evaluation.cut, U, Phi) > 1e-9) {
+                // Another callback took the cut from the pool, but this
+                // one must add it too to cut off its candidate.
+                addCut(evaluation.cut, violation(evaluation.cut, U, Phi));
+                return evaluation.type;
+            }
+            if (evaluation.cut == null && evaluation.objective <= Phi + 1e-9) {
+                acceptEvaluation(U, evaluation);
+                return null;
+            }
+            // The candidate was evaluated for another value of phi.
+            return separate(U, Phi);
+        }
+
+        /**
+         * Verifies whether the solution at the current node needs a cut,
+         * evaluating it on a remote worker (see setWorkerPool()).
+         * @param U the value of u at the current node
+         * @param Phi the value of phi at the current node
+         * @return the type of the cut added, or null if the node is accepted
+         * @throws IloException 
+         */
+        private BendersCutType separateRemotely(int[][] U, double Phi) throws IloException {
+            long start = System.nanoTime();
+            BendersEvaluation evaluation = workerPool.evaluate(U, Phi, true);
+            if (evaluation == null) {
+                return separate(U, Phi);
+            }
+            listener.subproblemSolved(evaluation.type == null ? BendersCutType.OPTIMALITY : evaluation.type,
+                    evaluation.objective, System.nanoTime() - start);
+            if (evaluation.cut != null) {
+                addCut(evaluation.cut, violation(evaluation.cut, U, Phi));
+                return evaluation.type;
+            }
+            acceptEvaluation(U, evaluation);
+            return null;
+        }
+
+        /**
+         * Accepts the current node, whose evaluation needs no cut.
+         * @param U the value of u at the current node
+         * @param evaluation its evaluation, with its dispatch
+         * @throws IloException 
+         */
+        private void acceptEvaluation(int[][] U, BendersEvaluation evaluation) throws IloException {
+            listener.nodeAccepted(evaluation.objective);
+            setDispatch(U, evaluation.P, evaluation.L);
+            if (checkpointPath != null) {
+                accept(U, evaluation.P, evaluation.L, getObjValue());
+            }
+        }
+
+        /**
+         * Adds all the cuts pooled by the workers.
+         * @param U the value of u at the current node
+         * @param Phi the value of phi at the current node
+         * @return the type of a cut which cuts off the current node
+         * (feasibility first), or null if none does
+         * @throws IloException 
+         */
+        private BendersCutType addPooledCuts(int[][] U, double Phi) throws IloException {
+            BendersCutType type = null;
+            BendersCut cut;
+            while ((cut = pooledCuts.poll()) != null) {
+                double violation = violation(cut, U, Phi);
+                addCut(cut, violation);
+                metrics.increment(BendersMetrics.Counter.POOLED_CUTS);
+                if (violation > 1e-9 && type != BendersCutType.FEASIBILITY) {
+                    type = cut.getType();
                 }
             }
+            return type;
+        }
+
+        /**
+         * Returns the violation of a cut at the current node.
+         */
+        private double violation(BendersCut cut, int[][] U, double Phi) {
+            double value = cut.evaluate(problem.getPowerDemands(), U);
+            return cut.getType() == BendersCutType.OPTIMALITY ? value - Phi : value;
+        }
+
+        /**
+         * Adds a cut found by a worker.
+         * @param cut
+         * @param violation the violation of the cut at the current node
+         * @throws IloException 
+         */
+        private void addCut(BendersCut cut, double violation) throws IloException {
+            long insertion = System.nanoTime();
+            IloLinearNumExpr cutTerm = getCutLinearTerm(cut);
+            if (cut.getType() == BendersCutType.OPTIMALITY) {
+                cutTerm.addTerm(-1, phi);
+            }
+            add(model.le(cutTerm, -cut.getConstant(problem.getPowerDemands())));
+            keep(cut);
+            metrics.record(BendersMetrics.Phase.CUT_INSERTION, System.nanoTime() - insertion);
+            metrics.increment(cut.getType() == BendersCutType.FEASIBILITY
+                    ? BendersMetrics.Counter.FEASIBILITY_CUTS
+                    : BendersMetrics.Counter.OPTIMALITY_CUTS);
+            if (violation > 1e-9 && listener != SolveListener.NO_OP) {
+                listener.cutAdded(cut.getType(), violation, cut.countNonZeros());
+            }
         }
+
+        /**
+         * Evaluates other candidates in parallel (see setCutHarvesting())
+         * and adds their cuts in one batch.
+         * @param U the value of u at the current node
+         * @throws IloException 
+         */
+        private void harvest(int[][] U) throws IloException {
+            long start = System.nanoTime();
+            // The candidates: the integer solutions accepted recently
+            // (whose cuts have never been added), then the neighbors of
+            // the incumbent, excluding U (whose cut has just been added)
+            // and the candidates evaluated before. A candidate taken is
+            // removed from the accepted solutions and remembered.
+            harvested.add(new PackedU(U));
+            List<int[][]> candidates = new ArrayList<>();
+            synchronized (acceptedU) {
+                for (Iterator<int[][]> it = acceptedU.iterator(); it.hasNext() && candidates.size() < harvestSize;) {
+                    int[][] V = it.next();
+                    it.remove();
+                    if (harvested.add(new PackedU(V))) {
+                        candidates.add(V);
+                    }
+                }
+            }
+            if (hasIncumbent() && candidates.size() < harvestSize) {
+                int incumbentU[][] = new int[u.length][];
+                for (int i = 0; i < u.length; i++) {
+                    double values[] = getIncumbentValues(u[i]);
+                    incumbentU[i] = new int[values.length];
+                    for (int j = 0; j < values.length; j++) {
+                        incumbentU[i][j] = (int) Math.round(values[j]);
+                    }
+                }
+                List<int[][]> neighbors = getNeighbors(incumbentU);
+                Collections.shuffle(neighbors, new Random(callbackCount.get()));
+                for (int[][] V : neighbors) {
+                    if (candidates.size() == harvestSize) {
+                        break;
+                    }
+                    if (harvested.add(new PackedU(V))) {
+                        candidates.add(V);
+                    }
+                }
+            }
+
+            // The candidates are evaluated with no expectation on phi, so
+            // that every feasible candidate gives its optimality cut: the
+            // value of phi at the current node says nothing about them.
+            List<Future<BendersCut>> futures = new ArrayList<>();
+            for (int[][] V : candidates) {
+                futures.add(harvestPool.submit(() -> evaluateCandidate(V, Double.NEGATIVE_INFINITY, false).cut));
+            }
+            for (Future<BendersCut> future : futures) {
+                BendersCut cut = await(future);
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (cut != null) {
+                    IloLinearNumExpr cutTerm = getCutLinearTerm(cut);
+                    if (cut.getType() == BendersCutType.OPTIMALITY) {
+                        cutTerm.addTerm(-1, phi);
+                    }
+                    add(model.le(cutTerm, -cut.getConstant(problem.getPowerDemands())));
+                    keep(cut);
+                    metrics.increment(BendersMetrics.Counter.HARVESTED_CUTS);
+                }
+            }
+            metrics.record(BendersMetrics.Phase.HARVEST, System.nanoTime() - start);
+        }
+
+        /**
+         * Screens U for feasibility, counting the outcomes.
+         * @param U the value of u at the current node
+         * @return the outcome of the screen
+         */
+        private UnitCommitmentFeasibilityScreen.Outcome screen(int[][] U) {
+            long start = System.nanoTime();
+            UnitCommitmentFeasibilityScreen.Outcome outcome = UnitCommitmentBendersMasterProblem.this.screen(U);
+            metrics.record(BendersMetrics.Phase.FEASIBILITY_SCREEN, System.nanoTime() - start);
+            switch (outcome) {
+                case FEASIBLE:
+                    metrics.increment(BendersMetrics.Counter.SCREENED_FEASIBLE);
+                    break;
+                case INFEASIBLE:
+                    metrics.increment(BendersMetrics.Counter.SCREENED_INFEASIBLE);
+                    break;
+                default:
+                    metrics.increment(BendersMetrics.Counter.SCREEN_INCONCLUSIVE);
+            }
+            return outcome;
+        }
+
+        /**
+         * Reports a cut added to the listener and commits its CutAddition
+         * event if it is enabled. The non-zeros of the cut are only
+         * counted if someone receives them.
+         */
+        private void reportCutAddition(UnitCommitmentEvents.CutAddition event, BendersCut cut, double violation) {
+            event.end();
+            boolean committing = event.shouldCommit();
+            if (listener == SolveListener.NO_OP && !committing) {
+                return;
+            }
+            int nonZeros = cut.countNonZeros();
+            listener.cutAdded(cut.getType(), violation, nonZeros);
+            if (committing) {
+                event.cutType = cut.getType().name();
+                event.generators = problem.getNGenerators();
+                event.periods = problem.getNPeriods();
+                event.violation = violation;
+                event.nonZeros = nonZeros;
+                event.commit();
+            }
+        }
+
+        /**
+         * Reports to the listener the changes of the incumbent
+         * and of the best bound since the last callback, and records
+         * them in the trajectory of the metrics.
+         * @throws IloException 
+         */
+        private void reportProgress() throws IloException {
+            double incumbent = Double.NaN;
+            if (hasIncumbent()) {
+                incumbent = getIncumbentObjValue();
+                if (incumbent != lastIncumbent) {
+                    lastIncumbent = incumbent;
+                    listener.incumbentChanged(incumbent);
+                }
+            }
+            double bound = getBestObjValue();
+            if (bound != lastBound) {
+                lastBound = bound;
+                listener.boundChanged(bound);
+            }
+            bestBound = Math.max(bestBound, bound);
+            metrics.recordProgress(incumbent, bound);
+        }
+
         /**
         * Returns the value of phi at the current B&B integer node.
         * Notice the method getValue() is used, not model.getValue().
@@ -330,8 +1681,9 @@ public class UnitCommitmentBendersMasterProblem {
         public int[][] getU() throws IloException {
             int[][] U = new int[problem.getNGenerators()][problem.getNPeriods()];
             for(int i = 0; i < problem.getNGenerators(); i++){
+                double values[] = getValues(u[i]);
                 for(int j = 0; j < problem.getNPeriods(); j++){
-                    U[i][j]= (int) getValue(u[i][j]);
+                    U[i][j]= (int) Math.round(values[j]);
                 }
             }    
             return U;
@@ -340,6 +1692,57 @@ public class UnitCommitmentBendersMasterProblem {
     }
     
     
+    /**
+     * Turns the fractional u of the LP at a node into an incumbent: u is
+     * rounded respecting the minimum on-times and off-times and the
+     * demands (see UnitCommitmentApproximateSolver.round()), and if the
+     * rounded u admits a feasible dispatch it is given to Cplex with phi
+     * equal to its dispatch cost, which the lazy constraint callback then
+     * accepts without adding a cut.
+     * The generic heuristics of Cplex do not know the dispatch, so this
+     * gives incumbents earlier, and thus more pruning.
+     */
+    private class Heuristic extends IloCplex.HeuristicCallback {
+
+        // The last rounded u, not evaluated twice in a row (the
+        // rounding often gives the same u at nearby nodes).
+        private volatile int lastU[][];
+
+        @Override
+        protected void main() throws IloException {
+            if (getNnodes64() % heuristicFrequency != 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            double relaxed[][] = new double[u.length][];
+            for (int i = 0; i < u.length; i++) {
+                relaxed[i] = getValues(u[i]);
+            }
+            int U[][] = UnitCommitmentApproximateSolver.round(problem, relaxed);
+            if (Arrays.deepEquals(U, lastU)) {
+                return;
+            }
+            lastU = U;
+            double values[] = getStartValues(U);
+            if (values != null) {
+                // The objective is that of u and c (the first values, in
+                // pairs) and phi (the last value).
+                double objective = values[values.length-1];
+                for (int i = 0; i < u.length; i++) {
+                    for (int j = 0; j < problem.getNPeriods(); j++) {
+                        int k = 2*(i*problem.getNPeriods() + j);
+                        objective = objective + problem.getCommitmentCosts()[i]*values[k] + values[k+1];
+                    }
+                }
+                if (!hasIncumbent() || objective < getIncumbentObjValue()) {
+                    setSolution(getStartVariables(), values, objective);
+                    metrics.increment(BendersMetrics.Counter.HEURISTIC_SOLUTIONS);
+                }
+            }
+            metrics.record(BendersMetrics.Phase.HEURISTIC, System.nanoTime() - start);
+        }
+    }
+
     /**
      * Returns the objective value
      * @return
@@ -349,34 +1752,33 @@ public class UnitCommitmentBendersMasterProblem {
         return model.getObjValue();
     }
 
+    /**
+     * Returns the solution found.
+     * @return the solution
+     * @throws IloException 
+     */
+    public UnitCommitmentSolution getSolution() throws IloException {
+        if (p == null){
+            throw new IllegalStateException("The dispatch of the solution is not known");
+        }
+        int U[][] = new int[problem.getNGenerators()][problem.getNPeriods()];
+        for (int i = 0; i < problem.getNGenerators(); i++){
+            double values[] = model.getValues(u[i]);
+            for (int j = 0; j < problem.getNPeriods(); j++){
+                U[i][j] = (int) Math.round(values[j]);
+            }
+        }
+        return new UnitCommitmentSolution(U, p, l, model.getObjValue());
+    }
+
      /**
      * Prints the solution found, i.e. the outputs for each generator and
      * the load sheds at each time period.
      * @throws IloException
+     * @throws IOException
      */
-    public void printSolution() throws IloException{
-        System.out.println("Solution: ");
-        System.out.println("Load Shedding:");
-        for (int j=0; j<problem.getNPeriods(); j++){
-            System.out.print("T"+j+": "+l[j]+"   ");
-            if (j % 5 == 4){
-                System.out.println();
-            }
-        }
-        System.out.println();
-        System.out.println();
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            System.out.println("Power outputs for generator "+problem.getGeneratorNames()[i]);
-            for (int j=0; j<problem.getNPeriods(); j++){
-                System.out.print("T"+j+": "+p[i][j]+"   ");
-                if (j % 5 == 4){
-                    System.out.println();
-                }
-            }
-            System.out.println();
-            System.out.println();
-        }
-        System.out.println("Optimal value: "+model.getObjValue());
+    public void printSolution() throws IloException, IOException{
+        UnitCommitmentSolutionWriter.writeText(UnitCommitmentSolutionWriter.standardOutput(), problem, p, l, model.getObjValue());
     }
 
     /**
@@ -384,20 +1786,39 @@ public class UnitCommitmentBendersMasterProblem {
      * the load sheds at each time period, in CSV, which is more useful for
      * copying to a spreadsheet and analyzing the data.
      * @throws IloException
+     * @throws IOException
      */
-    public void printCSVSolution() throws IloException{
-        System.out.print("Load Shed; ");
-        for (int j=0; j<problem.getNPeriods(); j++){
-            System.out.print(l[j]+"; ");
-        }
-        System.out.println();
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            System.out.print(problem.getGeneratorNames()[i]+"; ");
-            for (int j=0; j<problem.getNPeriods(); j++){
-                System.out.print(p[i][j]+"; ");
-            }
-            System.out.println();
-        }
-        System.out.println("Optimal value: "+model.getObjValue());
+    public void printCSVSolution() throws IloException, IOException{
+        writeCSVSolution(UnitCommitmentSolutionWriter.standardOutput());
+    }
+
+    /**
+     * Writes the solution found in CSV (same layout as printCSVSolution()).
+     * @param out the destination
+     * @throws IloException
+     * @throws IOException
+     */
+    public void writeCSVSolution(Writer out) throws IloException, IOException{
+        UnitCommitmentSolutionWriter.writeCSV(out, problem, p, l, model.getObjValue());
+    }
+
+    /**
+     * Writes the solution found in the binary format of
+     * UnitCommitmentSolutionWriter.
+     * @param path the destination file
+     * @throws IloException
+     * @throws IOException
+     */
+    public void writeBinarySolution(Path path) throws IloException, IOException{
+        UnitCommitmentSolutionWriter.writeBinary(path, problem, p, l, model.getObjValue());
+    }
+
+    /**
+     * Releases all the objects retained by the IloCplex object.
+     * Note that once the method end() has been called, the IloCplex object
+     * cannot be used (e.g., queried) anymore.
+     */
+    public void end(){
+        model.end();
     }
 }
\ No newline at end of file
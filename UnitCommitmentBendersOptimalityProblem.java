@@ -6,10 +6,16 @@
 package UnitCommitment;
 
 import ilog.concert.IloException;
+import ilog.concert.IloLPMatrix;
 import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumVar;
 import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 
 /**
@@ -28,13 +34,30 @@ public class UnitCommitmentBendersOptimalityProblem {
 
     private final UnitCommitmentProblem problem;
 
+    // Where the latencies of building, solving and extracting the
+    // duals of the subproblem are recorded (null if not measured).
+    private final BendersMetrics metrics;
+
     // The sets of constraints 1e - 1i which will be used in the optimality
-    // subproblem:
-    private final IloRange[] constraints1e;
-    private final IloRange[][] constraints1f;
-    private final IloRange[][] constraints1g;
-    private final IloRange[][] constraints1h;
-    private final IloRange[][] constraints1i;
+    // subproblem are the rows of the matrix lp. For each set we keep
+    // the index of its first row.
+    private final IloLPMatrix lp;
+    private final int constraints1e;
+    private final int constraints1f;
+    private final int constraints1g;
+    private final int constraints1h;
+    private final int constraints1i;
+
+    // The duals of the rows of lp, once the problem is solved.
+    private double duals[];
+
+    // The flow limits of the lines in the problem, added as they are
+    // found violated (none if there is no network), and their duals.
+    private final LineLimitSeparator lineLimits;
+    private final List<LineLimitSeparator.LineLimit> limits = new ArrayList<>();
+    private final List<IloRange> limitRanges = new ArrayList<>();
+    private final Set<LineLimitSeparator.LineLimit> limitSet = new HashSet<>();
+    private double limitDuals[];
 
     /**
      * Creates the Optimalility Problem.
@@ -44,111 +67,153 @@ public class UnitCommitmentBendersOptimalityProblem {
      */
   
     public UnitCommitmentBendersOptimalityProblem(UnitCommitmentProblem problem, int[][] U) throws IloException {
+        this(problem, U, null);
+    }
+
+    /**
+     * Creates the Optimalility Problem, recording its latencies.
+     * @param problem
+     * @param U a solution to the first-stage problem
+     * @param metrics where the latencies are recorded (null if not measured)
+     * @throws IloException 
+     */
+    public UnitCommitmentBendersOptimalityProblem(UnitCommitmentProblem problem, int[][] U, BendersMetrics metrics) throws IloException {
+        this(problem, U, metrics, null);
+    }
+
+    /**
+     * Creates the Optimalility Problem, recording its latencies.
+     * @param problem
+     * @param U a solution to the first-stage problem
+     * @param metrics where the latencies are recorded (null if not measured)
+     * @param lineLimits the separator of the flow limits of the network
+     * (null if there is no network)
+     * @throws IloException 
+     */
+    UnitCommitmentBendersOptimalityProblem(UnitCommitmentProblem problem, int[][] U, BendersMetrics metrics, LineLimitSeparator lineLimits) throws IloException {
     
+        UnitCommitmentEvents.ModelBuild event = new UnitCommitmentEvents.ModelBuild();
+        event.begin();
+        long start = System.nanoTime();
         this.problem=problem;
+        this.metrics=metrics;
+        this.lineLimits=lineLimits;
         this.model = new IloCplex();
-        this.p = new IloNumVar[problem.getNGenerators()][problem.getNPeriods()];
-        this.l = new IloNumVar[problem.getNPeriods()];
-
-         // Now we need to populate the arrays with objects of type IloNumVar.
-        for(int j = 0; j < problem.getNPeriods(); j++){
-            l[j] = model.numVar(0, Double.POSITIVE_INFINITY,"l_"+j);
-        }
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        this.p = new IloNumVar[nGenerators][];
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                p[i][j] = model.numVar(0, Double.POSITIVE_INFINITY, "p_"+i+"_"+j);
-            }
+        // Now we need to populate the arrays with objects of type IloNumVar.
+        // The variables are created in bulk, one array per generator,
+        // and registered as the columns of the constraint matrix.
+        LPMatrixBuilder matrix = new LPMatrixBuilder();
+        this.l = model.numVarArray(nPeriods, 0, Double.POSITIVE_INFINITY);
+        LPMatrixBuilder.name(l, "l", -1);
+        int lColumn = matrix.addColumns(l);
+        int pColumn[] = new int[nGenerators];
+        for(int i = 0; i < nGenerators; i++){
+            p[i] = model.numVarArray(nPeriods, 0, Double.POSITIVE_INFINITY);
+            LPMatrixBuilder.name(p[i], "p", i);
+            pColumn[i] = matrix.addColumns(p[i]);
         }
         
-        // Create and add the objective function to minimize v+ and v-.
+        // Create and add the objective function.
         // First we create an empty linear expression.
         IloLinearNumExpr objective = model.linearNumExpr();
         
-        // Then we add the terms of the expression.
-        for(int j = 0; j < problem.getNPeriods(); j++){
-            objective.addTerm(l[j], problem.getLoadSheddingCosts()[j]);
+        // Then we add the terms of the expression,
+        // one array of variables at a time.
+        double coefficients[] = new double[nPeriods];
+        for(int j = 0; j < nPeriods; j++){
+            coefficients[j] = problem.getLoadSheddingCosts()[j];
         }
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                objective.addTerm(p[i][j], problem.getMarginalCosts()[i]);
-            }
+        objective.addTerms(coefficients, l);
+        for(int i = 0; i < nGenerators; i++){
+            Arrays.fill(coefficients, problem.getMarginalCosts()[i]);
+            objective.addTerms(coefficients, p[i]);
         }
-
         // Finally we tell the model to minimize that 
         // linear expression.
         model.addMinimize(objective);
-        // Now for the constraints
 
-        constraints1e = new IloRange[problem.getNPeriods()];
-        constraints1f = new IloRange[problem.getNGenerators()][problem.getNPeriods()];
-        constraints1g = new IloRange[problem.getNGenerators()][problem.getNPeriods()];
-        constraints1h = new IloRange[problem.getNGenerators()][problem.getNPeriods()];
-        constraints1i = new IloRange[problem.getNGenerators()][problem.getNPeriods()];
+        // Now for the constraints. The rows are built in the matrix
+        // and added to the model at once at the end. The rows of each
+        // set are consecutive, e.g. the row of constraint 1f for
+        // generator i at period j is constraints1f+i*nPeriods+j.
         
         
         // Constraints 1e: Power balance constraints
         
-        for(int j = 0; j < problem.getNPeriods(); j++){
-            IloLinearNumExpr lhs = model.linearNumExpr();
-            // We add the terms to the linear expression
-            for(int i=0; i < problem.getNGenerators(); i++){
-                lhs.addTerm(p[i][j], 1);
+        constraints1e = matrix.getNRows();
+        for(int j = 0; j < nPeriods; j++){
+            for(int i=0; i < nGenerators; i++){
+                matrix.addTerm(pColumn[i]+j, 1);
             }
-            lhs.addTerm(l[j], 1);
-            // Finally we add the constraint to the model 
-            constraints1e[j] = model.addEq(lhs, problem.getPowerDemands()[j],"PowerBalance_"+j);
+            matrix.addTerm(lColumn+j, 1);
+            matrix.addEq(problem.getPowerDemands()[j], "PowerBalance", -1, j);
         }
         
         // Constraints 1f: Minimum output constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(p[i][j], 1);
-                constraints1f[i][j] = model.addGe(lhs, U[i][j]*problem.getMinimumOutput()[i],"MinimumOutput"+i+"_"+j);
+        constraints1f = matrix.getNRows();
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(pColumn[i]+j, 1);
+                matrix.addGe(U[i][j]*problem.getMinimumOutput()[i], "MinimumOutput", i, j);
             }
         }
         
         // Constraints 1g: Maximum output constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(p[i][j], 1);
-                constraints1g[i][j] = model.addLe(lhs, U[i][j]*problem.getMaximumOutput()[i],"MaximumOutput_"+i+"_"+j);
+        constraints1g = matrix.getNRows();
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(pColumn[i]+j, 1);
+                matrix.addLe(U[i][j]*problem.getMaximumOutput()[i], "MaximumOutput", i, j);
             }
         }
 
         // Constraints 1h: Maximum ramp-up constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(p[i][j], 1);
+        constraints1h = matrix.getNRows();
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(pColumn[i]+j, 1);
                 if (j>0){
-                    lhs.addTerm(p[i][j-1], -1);
+                    matrix.addTerm(pColumn[i]+j-1, -1);
                 }
-                constraints1h[i][j] = model.addLe(lhs, problem.getRampUpLimit()[i],"MaximumRampUp_"+i+"_"+j);
+                matrix.addLe(problem.getRampUpLimit()[i], "MaximumRampUp", i, j);
             }
         }
 
         // Constraints 1i: Maximum ramp-down constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(p[i][j], -1);
+        constraints1i = matrix.getNRows();
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(pColumn[i]+j, -1);
                 if (j>0){
-                    lhs.addTerm(p[i][j-1], 1);
+                    matrix.addTerm(pColumn[i]+j-1, 1);
                 }
-                constraints1i[i][j] = model.addLe(lhs, problem.getRampDownLimit()[i],"StartupCost_"+i+"_"+j);
+                matrix.addLe(problem.getRampDownLimit()[i], "MaximumRampDown", i, j);
+            }
+        }
+
+        // Finally we add all the constraints to the model at once.
+        this.lp = matrix.load(model);
+
+        // The flow limits already known to bind, if there is a network.
+        // The others are added by solve() if they are violated.
+        if (lineLimits != null){
+            for (LineLimitSeparator.LineLimit limit : lineLimits.getKnownLimits()){
+                addLineLimit(limit);
             }
         }
+
+        if (metrics != null){
+            metrics.record(BendersMetrics.Phase.SUBPROBLEM_BUILD, System.nanoTime() - start);
+        }
+        UnitCommitmentEvents.commitModelBuild(event, "UnitCommitmentBendersOptimalityProblem", problem.getNGenerators(), problem.getNPeriods());
     }
 
     /**
@@ -157,9 +222,76 @@ public class UnitCommitmentBendersOptimalityProblem {
      */
     public void solve() throws IloException{
         model.setOut(null);
+        UnitCommitmentEvents.SubproblemSolve event = new UnitCommitmentEvents.SubproblemSolve();
+        event.begin();
+        long start = System.nanoTime();
         model.solve();
+        while (addViolatedLineLimits()){
+            model.solve();
+        }
+        if (metrics != null){
+            metrics.record(BendersMetrics.Phase.LP_SOLVE, System.nanoTime() - start);
+            metrics.increment(BendersMetrics.Counter.SUBPROBLEM_SOLVES);
+            metrics.add(BendersMetrics.Counter.SUBPROBLEM_ITERATIONS, model.getNiterations64());
+        }
+        event.end();
+        if (event.shouldCommit()){
+            event.type = BendersCutType.OPTIMALITY.name();
+            event.generators = problem.getNGenerators();
+            event.periods = problem.getNPeriods();
+            event.objective = model.getObjValue();
+            event.iterations = model.getNiterations64();
+            event.commit();
+        }
     }
     
+    /**
+     * Adds the flow limits violated by the dispatch found, if any.
+     * @return whether limits were added, so that the problem
+     * must be solved again
+     * @throws IloException 
+     */
+    private boolean addViolatedLineLimits() throws IloException{
+        if (lineLimits == null || !model.isPrimalFeasible()){
+            return false;
+        }
+        boolean added = false;
+        for (LineLimitSeparator.LineLimit limit : lineLimits.separate(getP(), getL())){
+            // The limit is shared with the subproblems built afterwards.
+            lineLimits.remember(limit);
+            added = addLineLimit(limit) || added;
+        }
+        return added;
+    }
+
+    /**
+     * Adds a flow limit to the problem, unless it is already there.
+     * @param limit
+     * @return whether the limit was added
+     * @throws IloException 
+     */
+    private boolean addLineLimit(LineLimitSeparator.LineLimit limit) throws IloException{
+        if (!limitSet.add(limit)){
+            return false;
+        }
+        limits.add(limit);
+        limitRanges.add((IloRange) model.add(lineLimits.getRange(model, p, l, limit)));
+        return true;
+    }
+
+    /**
+     * Returns the duals of the flow limits in the problem.
+     * @return the duals, in the order of limits
+     * @throws IloException 
+     */
+    private double[] getLimitDuals() throws IloException{
+        if (limitDuals == null){
+            limitDuals = limitRanges.isEmpty() ? new double[0]
+                    : model.getDuals(limitRanges.toArray(new IloRange[0]));
+        }
+        return limitDuals;
+    }
+
     /**
      * Returns the objective value
      * @return the objective value
@@ -176,11 +308,9 @@ public class UnitCommitmentBendersOptimalityProblem {
      * @throws IloException 
      */
     public double[][] getP() throws IloException {
-        double P[][] = new double[problem.getNGenerators()][problem.getNPeriods()];
+        double P[][] = new double[problem.getNGenerators()][];
         for (int i = 0; i<problem.getNGenerators(); i++){
-            for (int j = 0; j<problem.getNPeriods(); j++){
-                P[i][j] = model.getValue(p[i][j]);
-            }
+            P[i] = model.getValues(p[i]);
         }
         return P;
     }
@@ -191,30 +321,52 @@ public class UnitCommitmentBendersOptimalityProblem {
      * @throws IloException 
      */
     public double[] getL() throws IloException {
-        double L[] = new double[problem.getNPeriods()];
-        for (int j = 0; j<problem.getNPeriods(); j++){
-            L[j] = model.getValue(l[j]);
+        return model.getValues(l);
+    }
+    /**
+     * Returns the duals of all the constraints, in the order of the rows
+     * of the matrix. They are obtained from Cplex in one call, the first
+     * time they are needed after solving the problem.
+     * @return the duals
+     * @throws IloException 
+     */
+    private double[] getDuals() throws IloException{
+        if (duals == null){
+            duals = model.getDuals(lp);
         }
-        return L;
+        return duals;
     }
     /**
      * Returns the constant part of the optimality cut.
      * That is, the part of the cut not dependent on u.
      * This is given by the constraints 1e, 1h, 1i
-     * (demand, ramp-up and ramp down). 
+     * (demand, ramp-up and ramp down) and the flow limits of the lines.
      * @return the constant of the cut
      * @throws IloException 
      */
     public double getCutConstant() throws IloException{
+        long start = System.nanoTime();
+        double dual[] = getDuals();
+        int nPeriods = problem.getNPeriods();
     	double constant = 0;
-    	for (int j = 0; j<problem.getNPeriods(); j++) {
-    		constant = constant + problem.getPowerDemands()[j]*model.getDual(constraints1e[j]);
+    	for (int j = 0; j<nPeriods; j++) {
+    		constant = constant + problem.getPowerDemands()[j]*dual[constraints1e+j];
         }
         for (int i = 0; i<problem.getNGenerators(); i++){
-            for (int j = 0; j<problem.getNPeriods(); j++){
-    			constant = constant + problem.getRampUpLimit()[i]*model.getDual(constraints1h[i][j]);
-    			constant = constant + problem.getRampDownLimit()[i]*model.getDual(constraints1i[i][j]);
+            double rampUp = 0;
+            double rampDown = 0;
+            for (int j=0; j<nPeriods; j++){
+    			rampUp = rampUp + dual[constraints1h+i*nPeriods+j];
+    			rampDown = rampDown + dual[constraints1i+i*nPeriods+j];
             }
+            constant = constant + problem.getRampUpLimit()[i]*rampUp + problem.getRampDownLimit()[i]*rampDown;
+        }
+        double limitDual[] = getLimitDuals();
+        for (int m = 0; m < limits.size(); m++){
+            constant = constant + lineLimits.getRightHandSide(limits.get(m))*limitDual[m];
+        }
+        if (metrics != null){
+            metrics.record(BendersMetrics.Phase.DUAL_EXTRACTION, System.nanoTime() - start);
         }
         return constant;
     }
@@ -228,15 +380,62 @@ public class UnitCommitmentBendersOptimalityProblem {
      * @throws IloException 
      */
     public IloLinearNumExpr getCutLinearTerm(IloNumVar u[][]) throws IloException{
+        long start = System.nanoTime();
+        double dual[] = getDuals();
+        int nPeriods = problem.getNPeriods();
         IloLinearNumExpr cutTerm = model.linearNumExpr();
+        double coefficients[] = new double[nPeriods];
         for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                cutTerm.addTerm(model.getDual(constraints1f[i][j])*problem.getMinimumOutput()[i], u[i][j]); 
-                cutTerm.addTerm(model.getDual(constraints1g[i][j])*problem.getMaximumOutput()[i], u[i][j]); 
+            for(int j = 0; j < nPeriods; j++){
+                coefficients[j] = dual[constraints1f+i*nPeriods+j]*problem.getMinimumOutput()[i]
+                        + dual[constraints1g+i*nPeriods+j]*problem.getMaximumOutput()[i];
             }
+            cutTerm.addTerms(coefficients, u[i]);
+        }
+        if (metrics != null){
+            metrics.record(BendersMetrics.Phase.DUAL_EXTRACTION, System.nanoTime() - start);
         }
         return cutTerm;
     }
+    /**
+     * Returns the optimality cut, in a form that can be kept after the
+     * problem has been released and added to another master problem
+     * with the same fleet.
+     * @return the cut
+     * @throws IloException 
+     */
+    public BendersCut getCut() throws IloException{
+        long start = System.nanoTime();
+        double dual[] = getDuals();
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        double demandDuals[] = Arrays.copyOfRange(dual, constraints1e, constraints1e+nPeriods);
+        double rampConstant = 0;
+        double coefficients[][] = new double[nGenerators][nPeriods];
+        for(int i = 0; i < nGenerators; i++){
+            double rampUp = 0;
+            double rampDown = 0;
+            for(int j = 0; j < nPeriods; j++){
+                rampUp = rampUp + dual[constraints1h+i*nPeriods+j];
+                rampDown = rampDown + dual[constraints1i+i*nPeriods+j];
+                coefficients[i][j] = dual[constraints1f+i*nPeriods+j]*problem.getMinimumOutput()[i]
+                        + dual[constraints1g+i*nPeriods+j]*problem.getMaximumOutput()[i];
+            }
+            rampConstant = rampConstant + problem.getRampUpLimit()[i]*rampUp + problem.getRampDownLimit()[i]*rampDown;
+        }
+        // The flow limits add to the constant: their flow limit part does
+        // not depend on the demands, and their load part does.
+        double limitDual[] = getLimitDuals();
+        for (int m = 0; m < limits.size(); m++){
+            LineLimitSeparator.LineLimit limit = limits.get(m);
+            rampConstant = rampConstant + lineLimits.getNetwork().getFlowLimit(limit.line)*limitDual[m];
+            demandDuals[limit.period] = demandDuals[limit.period] + lineLimits.getDemandCoefficient(limit)*limitDual[m];
+        }
+        if (metrics != null){
+            metrics.record(BendersMetrics.Phase.DUAL_EXTRACTION, System.nanoTime() - start);
+        }
+        return new BendersCut(BendersCutType.OPTIMALITY, demandDuals, rampConstant, coefficients);
+    }
     
     /**
      * Releases all the objects retained by the IloCplex object.
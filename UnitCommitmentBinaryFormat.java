@@ -0,0 +1,347 @@
+package UnitCommitment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact binary format for instances of the Unit Commitment Problem.
+ * A file starts with a header (magic number, version, kind, number of
+ * generators G and number of periods T) followed by one contiguous
+ * column per field, in little-endian order and aligned to 8 bytes:
+ * the fleet columns (minimum and maximum outputs, startup, commitment
+ * and marginal costs, ramp limits, minimum on and off times, names)
+ * and/or the demand columns (power demands and load shedding costs).
+ * A file holds either a whole instance, only a fleet, or only demands.
+ * Files are read through a MappedByteBuffer, so loading a column is a
+ * single bulk copy. Fleets are cached: all the instances loaded from the
+ * same fleet file share the same fleet arrays, so batch runs over many
+ * demand scenarios of one fleet read and store the fleet only once.
+ * @author Luttner
+ */
+public final class UnitCommitmentBinaryFormat {
+
+    private static final int MAGIC = 0x55435042;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * The content of a file.
+     */
+    public enum Kind {
+        INSTANCE,
+        FLEET,
+        DEMANDS
+    }
+
+    // The fleets already loaded, by absolute path.
+    private static final Map<Path, Fleet> FLEETS = new ConcurrentHashMap<>();
+
+    private UnitCommitmentBinaryFormat() {
+    }
+
+    /**
+     * The generator data of an instance, i.e., everything but the
+     * demands and the load shedding costs.
+     */
+    public static class Fleet {
+        private final int nGenerators;
+        private final double commitmentCosts[];
+        private final double marginalCosts[];
+        private final double startupCosts[];
+        private final int minimumOnTime[];
+        private final int minimumOffTime[];
+        private final double minimumOutput[];
+        private final double maximumOutput[];
+        private final double rampUpLimit[];
+        private final double rampDownLimit[];
+        private final String generatorNames[];
+        // Identifies the version of the file the fleet was read from.
+        private final FileTime lastModified;
+
+        private Fleet(int nGenerators, double commitmentCosts[], double marginalCosts[], double startupCosts[], int minimumOnTime[], int minimumOffTime[], double minimumOutput[], double maximumOutput[], double rampUpLimit[], double rampDownLimit[], String generatorNames[], FileTime lastModified) {
+            this.nGenerators = nGenerators;
+            this.commitmentCosts = commitmentCosts;
+            this.marginalCosts = marginalCosts;
+            this.startupCosts = startupCosts;
+            this.minimumOnTime = minimumOnTime;
+            this.minimumOffTime = minimumOffTime;
+            this.minimumOutput = minimumOutput;
+            this.maximumOutput = maximumOutput;
+            this.rampUpLimit = rampUpLimit;
+            this.rampDownLimit = rampDownLimit;
+            this.generatorNames = generatorNames;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the number of generators.
+         * @return 
+         */
+        public int getNGenerators() {
+            return nGenerators;
+        }
+
+        /**
+         * Creates an instance with this fleet and the given demands.
+         * The instance shares the arrays of the fleet.
+         * @param powerDemands the demand of each period
+         * @param loadSheddingCosts the load shedding cost of each period
+         * @return the instance
+         */
+        public UnitCommitmentProblem newProblem(double powerDemands[], double loadSheddingCosts[]) {
+            return new UnitCommitmentProblem(nGenerators, powerDemands.length, commitmentCosts, marginalCosts, startupCosts, minimumOnTime, minimumOffTime, minimumOutput, maximumOutput, rampUpLimit, rampDownLimit, generatorNames, loadSheddingCosts, powerDemands);
+        }
+    }
+
+    /**
+     * Writes a whole instance to a file.
+     * @param problem the instance
+     * @param path the file
+     * @throws IOException 
+     */
+    public static void write(UnitCommitmentProblem problem, Path path) throws IOException {
+        write(problem, path, Kind.INSTANCE);
+    }
+
+    /**
+     * Writes the fleet of an instance to a file.
+     * @param problem the instance
+     * @param path the file
+     * @throws IOException 
+     */
+    public static void writeFleet(UnitCommitmentProblem problem, Path path) throws IOException {
+        write(problem, path, Kind.FLEET);
+    }
+
+    /**
+     * Writes the demands (and load shedding costs) of an instance to a file.
+     * @param problem the instance
+     * @param path the file
+     * @throws IOException 
+     */
+    public static void writeDemands(UnitCommitmentProblem problem, Path path) throws IOException {
+        write(problem, path, Kind.DEMANDS);
+    }
+
+    private static void write(UnitCommitmentProblem problem, Path path, Kind kind) throws IOException {
+        int nGenerators = kind == Kind.DEMANDS ? 0 : problem.getNGenerators();
+        int nPeriods = kind == Kind.FLEET ? 0 : problem.getNPeriods();
+        byte names[][] = new byte[nGenerators][];
+        int namesSize = 0;
+        for (int i = 0; i < nGenerators; i++) {
+            names[i] = problem.getGeneratorNames()[i].getBytes(StandardCharsets.UTF_8);
+            namesSize += names[i].length;
+        }
+        long size = HEADER_SIZE;
+        if (kind != Kind.DEMANDS) {
+            size += 7L * 8 * nGenerators + align(2L * 4 * nGenerators) + align(4L * nGenerators + namesSize);
+        }
+        if (kind != Kind.FLEET) {
+            size += 2L * 8 * nPeriods;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(kind.ordinal()).putInt(nGenerators).putInt(nPeriods).putInt(0);
+        if (kind != Kind.DEMANDS) {
+            putDoubles(buffer, problem.getMinimumOutput(), nGenerators);
+            putDoubles(buffer, problem.getMaximumOutput(), nGenerators);
+            putDoubles(buffer, problem.getStartupCosts(), nGenerators);
+            putDoubles(buffer, problem.getCommitmentCosts(), nGenerators);
+            putDoubles(buffer, problem.getMarginalCosts(), nGenerators);
+            putDoubles(buffer, problem.getRampUpLimit(), nGenerators);
+            putDoubles(buffer, problem.getRampDownLimit(), nGenerators);
+            buffer.asIntBuffer().put(problem.getMinimumOnTime(), 0, nGenerators).put(problem.getMinimumOffTime(), 0, nGenerators);
+            buffer.position(buffer.position() + (int) align(2L * 4 * nGenerators));
+            int start = buffer.position();
+            for (int i = 0; i < nGenerators; i++) {
+                buffer.putInt(names[i].length);
+            }
+            for (int i = 0; i < nGenerators; i++) {
+                buffer.put(names[i]);
+            }
+            buffer.position(start + (int) align(4L * nGenerators + namesSize));
+        }
+        if (kind != Kind.FLEET) {
+            putDoubles(buffer, problem.getPowerDemands(), nPeriods);
+            putDoubles(buffer, problem.getLoadSheddingCosts(), nPeriods);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        FLEETS.remove(path.toAbsolutePath());
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static void putDoubles(ByteBuffer buffer, double values[], int length) {
+        buffer.asDoubleBuffer().put(values, 0, length);
+        buffer.position(buffer.position() + 8 * length);
+    }
+
+    private static double[] getDoubles(ByteBuffer buffer, int length) throws IOException {
+        require(buffer, 8L * length);
+        double values[] = new double[length];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + 8 * length);
+        return values;
+    }
+
+    /**
+     * Checks that the buffer holds the next bytes to read, so that a
+     * truncated or corrupt file is reported as such.
+     */
+    private static void require(ByteBuffer buffer, long bytes) throws IOException {
+        if (bytes < 0 || bytes > buffer.remaining()) {
+            throw new IOException("The file is truncated or corrupt");
+        }
+    }
+
+    /**
+     * Maps a file and checks its header.
+     * @return the buffer, positioned after the header
+     */
+    private static ByteBuffer map(Path path, Kind expected) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path+" is not a Unit Commitment binary file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(path+" has the unsupported version "+buffer.getInt(4));
+        }
+        int ordinal = buffer.getInt(8);
+        if (ordinal < 0 || ordinal >= Kind.values().length) {
+            throw new IOException(path+" holds an unknown kind "+ordinal);
+        }
+        if (buffer.getInt(12) < 0 || buffer.getInt(16) < 0) {
+            throw new IOException(path+" has a negative number of generators or periods");
+        }
+        Kind kind = Kind.values()[ordinal];
+        if (kind != expected && !(kind == Kind.INSTANCE && expected != Kind.INSTANCE)) {
+            throw new IOException(path+" holds "+kind+", not "+expected);
+        }
+        buffer.position(HEADER_SIZE);
+        return buffer;
+    }
+
+    private static Fleet getFleet(ByteBuffer buffer, FileTime lastModified) throws IOException {
+        int nGenerators = buffer.getInt(12);
+        double minimumOutput[] = getDoubles(buffer, nGenerators);
+        double maximumOutput[] = getDoubles(buffer, nGenerators);
+        double startupCosts[] = getDoubles(buffer, nGenerators);
+        double commitmentCosts[] = getDoubles(buffer, nGenerators);
+        double marginalCosts[] = getDoubles(buffer, nGenerators);
+        double rampUpLimit[] = getDoubles(buffer, nGenerators);
+        double rampDownLimit[] = getDoubles(buffer, nGenerators);
+        int minimumOnTime[] = new int[nGenerators];
+        int minimumOffTime[] = new int[nGenerators];
+        require(buffer, align(2L * 4 * nGenerators) + 4L * nGenerators);
+        buffer.asIntBuffer().get(minimumOnTime).get(minimumOffTime);
+        buffer.position(buffer.position() + (int) align(2L * 4 * nGenerators));
+        int start = buffer.position();
+        int lengths[] = new int[nGenerators];
+        buffer.asIntBuffer().get(lengths);
+        buffer.position(start + 4 * nGenerators);
+        String generatorNames[] = new String[nGenerators];
+        int namesSize = 0;
+        for (int i = 0; i < nGenerators; i++) {
+            require(buffer, lengths[i]);
+            byte name[] = new byte[lengths[i]];
+            buffer.get(name);
+            generatorNames[i] = new String(name, StandardCharsets.UTF_8);
+            namesSize += lengths[i];
+        }
+        require(buffer, align(4L * nGenerators + namesSize) - (4L * nGenerators + namesSize));
+        buffer.position(start + (int) align(4L * nGenerators + namesSize));
+        return new Fleet(nGenerators, commitmentCosts, marginalCosts, startupCosts, minimumOnTime, minimumOffTime, minimumOutput, maximumOutput, rampUpLimit, rampDownLimit, generatorNames, lastModified);
+    }
+
+    /**
+     * Reads a whole instance from a file.
+     * @param path the file
+     * @return the instance
+     * @throws IOException 
+     */
+    public static UnitCommitmentProblem read(Path path) throws IOException {
+        ByteBuffer buffer = map(path, Kind.INSTANCE);
+        int nPeriods = buffer.getInt(16);
+        Fleet fleet = getFleet(buffer, null);
+        return fleet.newProblem(getDoubles(buffer, nPeriods), getDoubles(buffer, nPeriods));
+    }
+
+    /**
+     * Reads an instance from a fleet file (or instance file, whose
+     * demands are ignored) and a demands file.
+     * The fleet is read only once and shared by all the instances.
+     * @param fleetPath the fleet file
+     * @param demandsPath the demands file
+     * @return the instance
+     * @throws IOException 
+     */
+    public static UnitCommitmentProblem read(Path fleetPath, Path demandsPath) throws IOException {
+        Fleet fleet = readFleet(fleetPath);
+        ByteBuffer buffer = map(demandsPath, Kind.DEMANDS);
+        int nPeriods = buffer.getInt(16);
+        if (buffer.getInt(8) == Kind.INSTANCE.ordinal()) {
+            getFleet(buffer, null);
+        }
+        return fleet.newProblem(getDoubles(buffer, nPeriods), getDoubles(buffer, nPeriods));
+    }
+
+    /**
+     * Reads a fleet from a file, or returns the fleet already read from
+     * it if the file has not been modified since.
+     * @param path the fleet file (or an instance file)
+     * @return the fleet
+     * @throws IOException 
+     */
+    public static Fleet readFleet(Path path) throws IOException {
+        Path key = path.toAbsolutePath();
+        FileTime lastModified = Files.getLastModifiedTime(key);
+        Fleet fleet = FLEETS.get(key);
+        if (fleet == null || !lastModified.equals(fleet.lastModified)) {
+            fleet = getFleet(map(key, Kind.FLEET), lastModified);
+            FLEETS.put(key, fleet);
+        }
+        return fleet;
+    }
+
+    /**
+     * Converts text instance files to binary files.
+     * Usage: UnitCommitmentBinaryFormat generators.txt loads.txt loadSheddingCost instance.ucb
+     * or: UnitCommitmentBinaryFormat generators.txt loads.txt loadSheddingCost fleet.ucb demands.ucb
+     * @param args
+     * @throws IOException 
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: UnitCommitmentBinaryFormat generators.txt loads.txt loadSheddingCost instance.ucb [demands.ucb]");
+            return;
+        }
+        UnitCommitmentProblem problem = new UnitCommitmentProblem(args[0], args[1], Double.parseDouble(args[2]));
+        if (args.length == 4) {
+            write(problem, Paths.get(args[3]));
+        } else {
+            writeFleet(problem, Paths.get(args[3]));
+            writeDemands(problem, Paths.get(args[4]));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package UnitCommitment;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Java Flight Recorder events emitted by the Unit Commitment models.
+ * They allow correlating the construction of the models and the
+ * iterations of the Bender's algorithm with GC, JNI and Cplex time
+ * in a single recording. When the events are not enabled in the
+ * recording, creating and committing them costs next to nothing.
+ * @author Luttner
+ */
+public final class UnitCommitmentEvents {
+
+    private UnitCommitmentEvents() {
+    }
+
+    /**
+     * Emitted around the construction of a problem or of a model.
+     */
+    @Name("UnitCommitment.ModelBuild")
+    @Label("Model Build")
+    @Category("Unit Commitment")
+    @Description("Construction of a Unit Commitment problem or model")
+    public static class ModelBuild extends Event {
+        @Label("Model")
+        public String model;
+        @Label("Generators")
+        public int generators;
+        @Label("Periods")
+        public int periods;
+    }
+
+    /**
+     * Emitted around each call of the lazy constraint callback
+     * of the Master Problem.
+     */
+    @Name("UnitCommitment.BendersCallback")
+    @Label("Benders Callback")
+    @Category("Unit Commitment")
+    @Description("One call of the lazy constraint callback of the Bender's Master Problem")
+    public static class BendersCallback extends Event {
+        @Label("Callback Count")
+        public long callbackCount;
+        @Label("Generators")
+        public int generators;
+        @Label("Periods")
+        public int periods;
+        @Label("Phi")
+        public double phi;
+        @Label("Cut Type")
+        @Description("The type of the cut added, or NONE if the node is optimal")
+        public String cutType;
+    }
+
+    /**
+     * Emitted around each solve of a subproblem.
+     */
+    @Name("UnitCommitment.SubproblemSolve")
+    @Label("Subproblem Solve")
+    @Category("Unit Commitment")
+    @Description("Solve of a feasibility or optimality subproblem")
+    public static class SubproblemSolve extends Event {
+        @Label("Subproblem Type")
+        public String type;
+        @Label("Generators")
+        public int generators;
+        @Label("Periods")
+        public int periods;
+        @Label("Objective")
+        public double objective;
+        @Label("Iterations")
+        public long iterations;
+    }
+
+    /**
+     * Emitted around the addition of a cut to the Master Problem.
+     */
+    @Name("UnitCommitment.CutAddition")
+    @Label("Cut Addition")
+    @Category("Unit Commitment")
+    @Description("Addition of a feasibility or optimality cut to the Bender's Master Problem")
+    public static class CutAddition extends Event {
+        @Label("Cut Type")
+        public String cutType;
+        @Label("Generators")
+        public int generators;
+        @Label("Periods")
+        public int periods;
+        @Label("Violation")
+        public double violation;
+        @Label("Non-zeros")
+        public int nonZeros;
+    }
+
+    /**
+     * Commits a ModelBuild event if it is enabled.
+     * @param event the event, begun before the construction
+     * @param model the name of the problem or model built
+     * @param generators the number of generators
+     * @param periods the number of periods
+     */
+    static void commitModelBuild(ModelBuild event, String model, int generators, int periods) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.model = model;
+            event.generators = generators;
+            event.periods = periods;
+            event.commit();
+        }
+    }
+}
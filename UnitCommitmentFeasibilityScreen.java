@@ -0,0 +1,259 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Decides in O(G*T), without solving an LP, whether a status of the
+ * generators U admits a feasible dispatch, i.e. whether the objective of
+ * the Feasibility Subproblem is zero.
+ * Given U, the outputs of each generator must lie in the windows
+ * [U*minimumOutput, U*maximumOutput] and respect the ramp limits
+ * (with an output of 0 before the first period), and the outputs of all
+ * the generators must not exceed the demand at any period (the rest of
+ * the demand is shed). The ramp limits are difference constraints
+ * between consecutive periods, so a forward and a backward pass over the
+ * periods tighten each window to the outputs that are reachable: the
+ * generator has a feasible trajectory if and only if no window is empty.
+ * The lower ends of the windows then form a feasible trajectory
+ * themselves, which is the lowest one at every period: thus U is feasible
+ * if and only if, at every period, the sum of the lower ends does not
+ * exceed the demand.
+ * Since the Feasibility Subproblem is solved with tolerances, the screen
+ * is inconclusive when a condition fails only by a margin smaller than
+ * its tolerance.
+ * Since the callback skips the Feasibility Subproblem when the screen
+ * says FEASIBLE, main() checks the screen against it on generated
+ * instances.
+ * @author Luttner
+ */
+public final class UnitCommitmentFeasibilityScreen {
+
+    /**
+     * The outcome of the screen.
+     */
+    public enum Outcome {
+        /** U admits a feasible dispatch. */
+        FEASIBLE,
+        /** U admits no feasible dispatch. */
+        INFEASIBLE,
+        /** The screen could not decide within its tolerance. */
+        INCONCLUSIVE
+    }
+
+    private final UnitCommitmentProblem problem;
+    private final double tolerance;
+
+    /**
+     * Creates a screen with a tolerance of 1e-6.
+     * @param problem
+     */
+    public UnitCommitmentFeasibilityScreen(UnitCommitmentProblem problem) {
+        this(problem, 1e-6);
+    }
+
+    /**
+     * Creates a screen.
+     * @param problem
+     * @param tolerance the absolute tolerance, scaled by the magnitude
+     * of the bounds compared
+     */
+    public UnitCommitmentFeasibilityScreen(UnitCommitmentProblem problem, double tolerance) {
+        this.problem = problem;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Screens a status of the generators.
+     * @param U the status of each generator at each period
+     * @return whether U admits a feasible dispatch
+     */
+    public Outcome screen(int U[][]) {
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        double minimumOutput[] = problem.getMinimumOutput();
+        double maximumOutput[] = problem.getMaximumOutput();
+        double rampUpLimit[] = problem.getRampUpLimit();
+        double rampDownLimit[] = problem.getRampDownLimit();
+        double demands[] = problem.getPowerDemands();
+
+        double low[] = new double[nPeriods];
+        double high[] = new double[nPeriods];
+        double lowest[] = new double[nPeriods];
+        boolean conclusive = true;
+        for (int i = 0; i < nGenerators; i++) {
+            double rampUp = rampUpLimit[i];
+            double rampDown = rampDownLimit[i];
+            // Forward pass: the output reachable from the previous period
+            // (0 before the first one).
+            double previousLow = 0;
+            double previousHigh = 0;
+            for (int j = 0; j < nPeriods; j++) {
+                low[j] = Math.max(U[i][j]*minimumOutput[i], previousLow - rampDown);
+                high[j] = Math.min(U[i][j]*maximumOutput[i], previousHigh + rampUp);
+                previousLow = low[j];
+                previousHigh = high[j];
+            }
+            // Backward pass: the output from which the next period
+            // is reachable.
+            for (int j = nPeriods - 2; j >= 0; j--) {
+                low[j] = Math.max(low[j], low[j+1] - rampUp);
+                high[j] = Math.min(high[j], high[j+1] + rampDown);
+            }
+            for (int j = 0; j < nPeriods; j++) {
+                double margin = high[j] - low[j];
+                double scale = tolerance*Math.max(1, Math.max(Math.abs(low[j]), Math.abs(high[j])));
+                if (margin < -scale) {
+                    return Outcome.INFEASIBLE;
+                }
+                if (margin < 0) {
+                    conclusive = false;
+                }
+                lowest[j] = lowest[j] + low[j];
+            }
+        }
+        for (int j = 0; j < nPeriods; j++) {
+            double margin = demands[j] - lowest[j];
+            double scale = tolerance*Math.max(1, Math.abs(demands[j]));
+            if (margin < -scale) {
+                return conclusive ? Outcome.INFEASIBLE : Outcome.INCONCLUSIVE;
+            }
+            if (margin < 0) {
+                conclusive = false;
+            }
+        }
+        return conclusive ? Outcome.FEASIBLE : Outcome.INCONCLUSIVE;
+    }
+
+    /**
+     * Checks the screen against the objective of the Feasibility
+     * Subproblem on generated instances, and prints the number of
+     * disagreements. A false FEASIBLE would make the callback skip a
+     * needed feasibility cut. Each instance is checked as generated and
+     * with ramp limits below the minimum outputs (so that starts and
+     * shutdowns are ramp-bound), with U of three kinds: random, the merit
+     * order with random flips (ramp-bound) and the units with the largest
+     * minimum outputs first until about the demand (min-output-bound).
+     * Usage: UnitCommitmentFeasibilityScreen [instances] [G] [T] [seed]
+     * @param args
+     * @throws IloException
+     */
+    public static void main(String[] args) throws IloException {
+        int nInstances = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int nGenerators = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int nPeriods = args.length > 2 ? Integer.parseInt(args[2]) : 24;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        Random random = new Random(seed);
+        long checked = 0;
+        long screened = 0;
+        long falseFeasible = 0;
+        long falseInfeasible = 0;
+        for (int k = 0; k < nInstances; k++) {
+            UnitCommitmentProblem generated = new UnitCommitmentInstanceGenerator(seed + k).generate(nGenerators, nPeriods);
+            UnitCommitmentProblem problems[] = {generated, withSlowRamps(generated, 0.3 + 0.6*random.nextDouble())};
+            for (UnitCommitmentProblem problem : problems) {
+                UnitCommitmentFeasibilityScreen screen = new UnitCommitmentFeasibilityScreen(problem);
+                for (int kind = 0; kind < 3; kind++) {
+                    int U[][] = kind == 0 ? randomCommitment(problem, random)
+                            : kind == 1 ? flippedMeritOrder(problem, random)
+                            : minimumOutputOrder(problem, 0.9 + 0.2*random.nextDouble());
+                    Outcome outcome = screen.screen(U);
+                    UnitCommitmentBendersFeasibilityProblem fsp = new UnitCommitmentBendersFeasibilityProblem(problem, U);
+                    fsp.solve();
+                    double objective = fsp.getObjective();
+                    fsp.end();
+                    checked++;
+                    if (outcome != Outcome.INCONCLUSIVE) {
+                        screened++;
+                    }
+                    if (outcome == Outcome.FEASIBLE && objective >= 1e-6) {
+                        falseFeasible++;
+                        System.out.println("False FEASIBLE: instance "+k+", kind "+kind+", objective "+objective);
+                    } else if (outcome == Outcome.INFEASIBLE && objective < 1e-9) {
+                        falseInfeasible++;
+                        System.out.println("False INFEASIBLE: instance "+k+", kind "+kind+", objective "+objective);
+                    }
+                }
+            }
+        }
+        System.out.println("Checked "+checked+" U, screened "+screened+", false FEASIBLE "+falseFeasible
+                +", false INFEASIBLE "+falseInfeasible);
+        if (falseFeasible + falseInfeasible > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns a copy of a problem whose ramp limits are a factor
+     * of the minimum outputs.
+     */
+    private static UnitCommitmentProblem withSlowRamps(UnitCommitmentProblem problem, double factor) {
+        double rampLimit[] = new double[problem.getNGenerators()];
+        for (int i = 0; i < rampLimit.length; i++) {
+            rampLimit[i] = factor*problem.getMinimumOutput()[i];
+        }
+        return new UnitCommitmentProblem(problem.getNGenerators(), problem.getNPeriods(), problem.getCommitmentCosts(),
+                problem.getMarginalCosts(), problem.getStartupCosts(), problem.getMinimumOnTime(), problem.getMinimumOffTime(),
+                problem.getMinimumOutput(), problem.getMaximumOutput(), rampLimit, rampLimit.clone(),
+                problem.getGeneratorNames(), problem.getLoadSheddingCosts(), problem.getPowerDemands());
+    }
+
+    private static int[][] randomCommitment(UnitCommitmentProblem problem, Random random) {
+        int U[][] = new int[problem.getNGenerators()][problem.getNPeriods()];
+        for (int i = 0; i < U.length; i++) {
+            for (int j = 0; j < U[i].length; j++) {
+                U[i][j] = random.nextInt(2);
+            }
+        }
+        return U;
+    }
+
+    /**
+     * Commits, in each period, the cheapest units until the demand is
+     * covered, and then flips a tenth of the statuses.
+     */
+    private static int[][] flippedMeritOrder(UnitCommitmentProblem problem, Random random) {
+        int U[][] = commitInOrder(problem, problem.getMarginalCosts(), problem.getMaximumOutput(), 1);
+        for (int k = 0; k < problem.getNGenerators()*problem.getNPeriods()/10; k++) {
+            int i = random.nextInt(problem.getNGenerators());
+            int j = random.nextInt(problem.getNPeriods());
+            U[i][j] = 1 - U[i][j];
+        }
+        return U;
+    }
+
+    /**
+     * Commits, in each period, the units with the largest minimum outputs
+     * until their minimum outputs reach a factor of the demand.
+     */
+    private static int[][] minimumOutputOrder(UnitCommitmentProblem problem, double factor) {
+        double key[] = new double[problem.getNGenerators()];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = -problem.getMinimumOutput()[i];
+        }
+        return commitInOrder(problem, key, problem.getMinimumOutput(), factor);
+    }
+
+    /**
+     * Commits, in each period, the units in increasing order of key
+     * until the sum of their outputs reaches a factor of the demand.
+     */
+    private static int[][] commitInOrder(UnitCommitmentProblem problem, double key[], double output[], double factor) {
+        Integer order[] = new Integer[problem.getNGenerators()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(key[a], key[b]));
+        int U[][] = new int[problem.getNGenerators()][problem.getNPeriods()];
+        for (int j = 0; j < problem.getNPeriods(); j++) {
+            double sum = 0;
+            for (int k = 0; k < order.length && sum < factor*problem.getPowerDemands()[j]; k++) {
+                U[order[k]][j] = 1;
+                sum = sum + output[order[k]];
+            }
+        }
+        return U;
+    }
+}
@@ -0,0 +1,168 @@
+package UnitCommitment;
+
+import java.util.Random;
+
+/**
+ * Generates reproducible, realistic instances of the Unit Commitment
+ * Problem of any size.
+ * The fleet is a mix of three kinds of units:
+ * base units (large, inflexible, cheap to run and expensive to start),
+ * mid-merit units and peaking units (small, flexible, expensive to run
+ * and cheap to start). Within each kind the costs and the ramp limits
+ * are correlated with the size of the unit.
+ * The demand follows a daily profile with a morning and an evening peak,
+ * optionally modulated by a weekly profile with lower weekend demand,
+ * and is scaled to the capacity of the fleet.
+ * @author Luttner
+ */
+public class UnitCommitmentInstanceGenerator {
+
+    /**
+     * The shares of base, mid-merit and peaking units in the fleet.
+     */
+    public enum FleetMix {
+        BALANCED(0.3, 0.4, 0.3),
+        BASE_HEAVY(0.5, 0.3, 0.2),
+        PEAK_HEAVY(0.2, 0.3, 0.5);
+
+        private final double base;
+        private final double mid;
+        private final double peak;
+
+        FleetMix(double base, double mid, double peak) {
+            this.base = base;
+            this.mid = mid;
+            this.peak = peak;
+        }
+    }
+
+    /**
+     * The shape of the demand over the horizon.
+     */
+    public enum LoadShape {
+        /**
+         * The same daily profile every day.
+         */
+        DAILY,
+        /**
+         * The daily profile, lower on weekends.
+         */
+        WEEKLY
+    }
+
+    // Relative demand at each hour of the day (peak = 1).
+    private static final double DAILY_PROFILE[] = {
+        0.62, 0.58, 0.56, 0.55, 0.56, 0.60, 0.70, 0.82, 0.90, 0.92, 0.93, 0.93,
+        0.92, 0.90, 0.89, 0.89, 0.91, 0.95, 1.00, 0.99, 0.94, 0.85, 0.76, 0.68
+    };
+    // Relative demand at each day of the week, starting on Monday.
+    private static final double WEEKLY_PROFILE[] = {
+        1.00, 1.01, 1.01, 1.00, 0.97, 0.84, 0.80
+    };
+
+    private final long seed;
+
+    /**
+     * Creates a generator. Two generators with the same seed generate
+     * the same instances.
+     * @param seed the seed of the random numbers
+     */
+    public UnitCommitmentInstanceGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Generates an instance with a balanced fleet and a weekly load shape.
+     * @param nGenerators the number of generators
+     * @param nPeriods the number of (hourly) periods
+     * @return the instance
+     */
+    public UnitCommitmentProblem generate(int nGenerators, int nPeriods) {
+        return generate(nGenerators, nPeriods, FleetMix.BALANCED, LoadShape.WEEKLY);
+    }
+
+    /**
+     * Generates an instance.
+     * @param nGenerators the number of generators
+     * @param nPeriods the number of (hourly) periods
+     * @param mix the shares of base, mid-merit and peaking units
+     * @param shape the shape of the demand
+     * @return the instance
+     */
+    public UnitCommitmentProblem generate(int nGenerators, int nPeriods, FleetMix mix, LoadShape shape) {
+        Random random = new Random(seed ^ (31L * nGenerators + nPeriods));
+
+        double commitmentCosts[] = new double[nGenerators];
+        double marginalCosts[] = new double[nGenerators];
+        double startupCosts[] = new double[nGenerators];
+        int minimumOnTime[] = new int[nGenerators];
+        int minimumOffTime[] = new int[nGenerators];
+        double minimumOutput[] = new double[nGenerators];
+        double maximumOutput[] = new double[nGenerators];
+        double rampUpLimit[] = new double[nGenerators];
+        double rampDownLimit[] = new double[nGenerators];
+        String generatorNames[] = new String[nGenerators];
+
+        int nBase = (int) Math.round(mix.base * nGenerators);
+        int nMid = (int) Math.round(mix.mid * nGenerators);
+        double capacity = 0;
+        double mostExpensive = 0;
+        for (int i = 0; i < nGenerators; i++) {
+            // size is in [0, 1] and correlates the parameters of a unit:
+            // within a kind, larger units are cheaper to run, more
+            // expensive to start and slower to ramp.
+            double size = random.nextDouble();
+            double noise = 1 + 0.05 * random.nextGaussian();
+            if (i < nBase) {
+                generatorNames[i] = "Base"+i;
+                maximumOutput[i] = 300 + 500 * size;
+                minimumOutput[i] = maximumOutput[i] * (0.5 + 0.2 * size);
+                rampUpLimit[i] = maximumOutput[i] * (0.4 - 0.2 * size);
+                marginalCosts[i] = (20 - 8 * size) * noise;
+                startupCosts[i] = maximumOutput[i] * (40 + 20 * size);
+                minimumOnTime[i] = 8 + (int) (16 * size);
+                minimumOffTime[i] = 6 + (int) (12 * size);
+            } else if (i < nBase + nMid) {
+                generatorNames[i] = "Mid"+i;
+                maximumOutput[i] = 150 + 250 * size;
+                minimumOutput[i] = maximumOutput[i] * (0.35 + 0.15 * size);
+                rampUpLimit[i] = maximumOutput[i] * (0.7 - 0.3 * size);
+                marginalCosts[i] = (40 - 12 * size) * noise;
+                startupCosts[i] = maximumOutput[i] * (15 + 10 * size);
+                minimumOnTime[i] = 3 + (int) (5 * size);
+                minimumOffTime[i] = 2 + (int) (4 * size);
+            } else {
+                generatorNames[i] = "Peak"+i;
+                maximumOutput[i] = 20 + 130 * size;
+                minimumOutput[i] = maximumOutput[i] * (0.1 + 0.2 * size);
+                rampUpLimit[i] = maximumOutput[i];
+                marginalCosts[i] = (90 - 35 * size) * noise;
+                startupCosts[i] = maximumOutput[i] * (2 + 3 * size);
+                minimumOnTime[i] = 1 + (int) (2 * size);
+                minimumOffTime[i] = 1 + (int) (2 * size);
+            }
+            // A unit must be able to reach its minimum output in one period
+            // to ever be started.
+            rampUpLimit[i] = Math.max(rampUpLimit[i], minimumOutput[i]);
+            rampDownLimit[i] = rampUpLimit[i];
+            commitmentCosts[i] = 0.1 * marginalCosts[i] * minimumOutput[i];
+            capacity += maximumOutput[i];
+            mostExpensive = Math.max(mostExpensive, marginalCosts[i]);
+        }
+
+        double loadSheddingCosts[] = new double[nPeriods];
+        double powerDemands[] = new double[nPeriods];
+        // The peak demand is around 80% of the installed capacity.
+        double peakDemand = 0.8 * capacity;
+        for (int j = 0; j < nPeriods; j++) {
+            double relative = DAILY_PROFILE[j % 24];
+            if (shape == LoadShape.WEEKLY) {
+                relative = relative * WEEKLY_PROFILE[(j / 24) % 7];
+            }
+            powerDemands[j] = peakDemand * relative * (1 + 0.02 * random.nextGaussian());
+            loadSheddingCosts[j] = 10 * mostExpensive;
+        }
+
+        return new UnitCommitmentProblem(nGenerators, nPeriods, commitmentCosts, marginalCosts, startupCosts, minimumOnTime, minimumOffTime, minimumOutput, maximumOutput, rampUpLimit, rampDownLimit, generatorNames, loadSheddingCosts, powerDemands);
+    }
+}
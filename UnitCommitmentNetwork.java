@@ -0,0 +1,379 @@
+package UnitCommitment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The transmission network of a Unit Commitment Problem: the buses, the
+ * bus of each generator, the share of the demand at each bus and the lines
+ * with their reactances and flow limits.
+ * The flows are those of the DC power flow, given by the power transfer
+ * distribution factors (PTDF): the flow on a line is sum_b PTDF[k][b]*x_b,
+ * where x_b is the net injection at bus b (generation minus served demand)
+ * and the first bus is the slack bus.
+ * The problem has one load shedding variable per period, so the load shed
+ * is spread over the buses as the demand is: the demand served at bus b
+ * is share_b*(D - l).
+ * Thus the flow on line k at a period is
+ * sum_i g_ki*p_i + w_k*(l - D), with g_ki = PTDF[k][bus of i] (the
+ * generator shift factors) and w_k = sum_b PTDF[k][b]*share_b (the load
+ * shift factor).
+ * @author Luttner
+ */
+public final class UnitCommitmentNetwork {
+
+    private final int nBuses;
+    private final int generatorBus[];
+    private final double loadShares[];
+    private final int lineFrom[];
+    private final int lineTo[];
+    private final double reactances[];
+    private final double flowLimits[];
+
+    // The shift factors of the generators and of the load on each line.
+    private final double generatorShiftFactors[][];
+    private final double loadShiftFactors[];
+
+    /**
+     * Creates a network and computes its shift factors.
+     * @param nBuses
+     * @param generatorBus the bus of each generator
+     * @param loadShares the share of the demand at each bus (they must sum to 1)
+     * @param lineFrom the first bus of each line
+     * @param lineTo the second bus of each line
+     * @param reactances the reactance of each line
+     * @param flowLimits the flow limit of each line (in both directions)
+     * @throws IllegalArgumentException if the data is inconsistent or the
+     * network is not connected
+     */
+    public UnitCommitmentNetwork(int nBuses, int generatorBus[], double loadShares[], int lineFrom[], int lineTo[], double reactances[], double flowLimits[]) {
+        if (loadShares.length != nBuses) {
+            throw new IllegalArgumentException("Expected "+nBuses+" load shares, got "+loadShares.length);
+        }
+        int nLines = lineFrom.length;
+        if (lineTo.length != nLines || reactances.length != nLines || flowLimits.length != nLines) {
+            throw new IllegalArgumentException("The line data have different lengths");
+        }
+        double sum = 0;
+        for (double share : loadShares) {
+            sum = sum + share;
+        }
+        if (Math.abs(sum - 1) > 1e-6) {
+            throw new IllegalArgumentException("The load shares sum to "+sum);
+        }
+        for (int bus : generatorBus) {
+            checkBus(bus, nBuses);
+        }
+        for (int k = 0; k < nLines; k++) {
+            checkBus(lineFrom[k], nBuses);
+            checkBus(lineTo[k], nBuses);
+            if (!(reactances[k] > 0)) {
+                throw new IllegalArgumentException("Line "+k+" has reactance "+reactances[k]);
+            }
+        }
+        this.nBuses = nBuses;
+        this.generatorBus = generatorBus;
+        this.loadShares = loadShares;
+        this.lineFrom = lineFrom;
+        this.lineTo = lineTo;
+        this.reactances = reactances;
+        this.flowLimits = flowLimits;
+
+        double ptdf[][] = computePTDF();
+        this.generatorShiftFactors = new double[nLines][generatorBus.length];
+        this.loadShiftFactors = new double[nLines];
+        for (int k = 0; k < nLines; k++) {
+            for (int i = 0; i < generatorBus.length; i++) {
+                generatorShiftFactors[k][i] = ptdf[k][generatorBus[i]];
+            }
+            for (int b = 0; b < nBuses; b++) {
+                loadShiftFactors[k] = loadShiftFactors[k] + ptdf[k][b]*loadShares[b];
+            }
+        }
+    }
+
+    private static void checkBus(int bus, int nBuses) {
+        if (bus < 0 || bus >= nBuses) {
+            throw new IllegalArgumentException("No bus "+bus);
+        }
+    }
+
+    /**
+     * Computes the PTDF matrix: the susceptance matrix without the row and
+     * column of the slack bus is inverted (by Gauss-Jordan elimination with
+     * partial pivoting), giving the angles for a unit injection at each bus,
+     * and the flow on a line is the difference of the angles at its ends
+     * divided by its reactance.
+     * @return PTDF[line][bus]
+     */
+    private double[][] computePTDF() {
+        int n = nBuses - 1;
+        // The reduced susceptance matrix, augmented with the identity.
+        double a[][] = new double[n][2*n];
+        for (int k = 0; k < lineFrom.length; k++) {
+            double b = 1/reactances[k];
+            int f = lineFrom[k] - 1;
+            int t = lineTo[k] - 1;
+            if (f >= 0) {
+                a[f][f] = a[f][f] + b;
+            }
+            if (t >= 0) {
+                a[t][t] = a[t][t] + b;
+            }
+            if (f >= 0 && t >= 0) {
+                a[f][t] = a[f][t] - b;
+                a[t][f] = a[t][f] - b;
+            }
+        }
+        for (int r = 0; r < n; r++) {
+            a[r][n+r] = 1;
+        }
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < n; r++) {
+                if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) {
+                    pivot = r;
+                }
+            }
+            if (Math.abs(a[pivot][col]) < 1e-12) {
+                throw new IllegalArgumentException("The network is not connected");
+            }
+            double swap[] = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swap;
+            double inverse = 1/a[col][col];
+            for (int c = col; c < 2*n; c++) {
+                a[col][c] = a[col][c]*inverse;
+            }
+            for (int r = 0; r < n; r++) {
+                double factor = a[r][col];
+                if (r != col && factor != 0) {
+                    for (int c = col; c < 2*n; c++) {
+                        a[r][c] = a[r][c] - factor*a[col][c];
+                    }
+                }
+            }
+        }
+        // theta(bus r, injection at bus b) = X[r-1][b-1], and 0 at the slack bus.
+        double ptdf[][] = new double[lineFrom.length][nBuses];
+        for (int k = 0; k < lineFrom.length; k++) {
+            int f = lineFrom[k] - 1;
+            int t = lineTo[k] - 1;
+            for (int b = 1; b < nBuses; b++) {
+                double thetaFrom = f >= 0 ? a[f][n+b-1] : 0;
+                double thetaTo = t >= 0 ? a[t][n+b-1] : 0;
+                ptdf[k][b] = (thetaFrom - thetaTo)/reactances[k];
+            }
+        }
+        return ptdf;
+    }
+
+    /**
+     * Reads a network from text files, in the style of the instance files.
+     * The buses file has one header line followed by one line per bus:
+     * name and share of the demand. The generator buses file has one header
+     * line followed by one line per generator: generator name and bus name.
+     * The lines file has one header line followed by one line per line:
+     * name, first bus name, second bus name, reactance and flow limit.
+     * The first bus is the slack bus.
+     * @param problem the problem whose generators are located
+     * @param busesFileName
+     * @param generatorBusesFileName
+     * @param linesFileName
+     * @return the network
+     * @throws IOException
+     */
+    public static UnitCommitmentNetwork read(UnitCommitmentProblem problem, String busesFileName, String generatorBusesFileName, String linesFileName) throws IOException {
+        Map<String, Integer> buses = new HashMap<>();
+        double loadShares[] = new double[16];
+        try (InstanceTokenizer tokens = new InstanceTokenizer(busesFileName)) {
+            tokens.skipLine();
+            while (tokens.hasNext()) {
+                String name = tokens.nextString();
+                if (buses.size() == loadShares.length) {
+                    loadShares = Arrays.copyOf(loadShares, 2*loadShares.length);
+                }
+                loadShares[buses.size()] = tokens.nextDouble();
+                buses.put(name, buses.size());
+            }
+        }
+        int nBuses = buses.size();
+
+        Map<String, Integer> generators = new HashMap<>();
+        for (int i = 0; i < problem.getNGenerators(); i++) {
+            generators.put(problem.getGeneratorNames()[i], i);
+        }
+        int generatorBus[] = new int[problem.getNGenerators()];
+        Arrays.fill(generatorBus, -1);
+        try (InstanceTokenizer tokens = new InstanceTokenizer(generatorBusesFileName)) {
+            tokens.skipLine();
+            while (tokens.hasNext()) {
+                String generator = tokens.nextString();
+                String bus = tokens.nextString();
+                Integer i = generators.get(generator);
+                if (i != null) {
+                    generatorBus[i] = busIndex(buses, bus);
+                }
+            }
+        }
+        for (int i = 0; i < generatorBus.length; i++) {
+            if (generatorBus[i] < 0) {
+                throw new IOException("No bus for generator "+problem.getGeneratorNames()[i]);
+            }
+        }
+
+        int nLines = 0;
+        int lineFrom[] = new int[16];
+        int lineTo[] = new int[16];
+        double reactances[] = new double[16];
+        double flowLimits[] = new double[16];
+        try (InstanceTokenizer tokens = new InstanceTokenizer(linesFileName)) {
+            tokens.skipLine();
+            while (tokens.hasNext()) {
+                if (nLines == lineFrom.length) {
+                    lineFrom = Arrays.copyOf(lineFrom, 2*nLines);
+                    lineTo = Arrays.copyOf(lineTo, 2*nLines);
+                    reactances = Arrays.copyOf(reactances, 2*nLines);
+                    flowLimits = Arrays.copyOf(flowLimits, 2*nLines);
+                }
+                tokens.nextString();
+                lineFrom[nLines] = busIndex(buses, tokens.nextString());
+                lineTo[nLines] = busIndex(buses, tokens.nextString());
+                reactances[nLines] = tokens.nextDouble();
+                flowLimits[nLines] = tokens.nextDouble();
+                nLines++;
+            }
+        }
+        return new UnitCommitmentNetwork(nBuses, generatorBus, Arrays.copyOf(loadShares, nBuses),
+                Arrays.copyOf(lineFrom, nLines), Arrays.copyOf(lineTo, nLines),
+                Arrays.copyOf(reactances, nLines), Arrays.copyOf(flowLimits, nLines));
+    }
+
+    private static int busIndex(Map<String, Integer> buses, String name) throws IOException {
+        Integer bus = buses.get(name);
+        if (bus == null) {
+            throw new IOException("Unknown bus "+name);
+        }
+        return bus;
+    }
+
+    /**
+     * Returns the fingerprint of the data of the network which enter the
+     * models: the shift factors of the generators and of the load and
+     * the flow limits of the lines. The cuts of a problem with a network
+     * are only valid for the problems with the same network fingerprint.
+     * @return a SHA-256 digest, in hexadecimal
+     */
+    public String fingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+        int nLines = getNLines();
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 8*nLines*(generatorBus.length + 2));
+        buffer.putInt(nLines).putInt(generatorBus.length);
+        for (int k = 0; k < nLines; k++) {
+            for (double shiftFactor : generatorShiftFactors[k]) {
+                buffer.putDouble(shiftFactor);
+            }
+            buffer.putDouble(loadShiftFactors[k]).putDouble(flowLimits[k]);
+        }
+        digest.update(buffer.array());
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Returns the fingerprint of a network, or an empty string
+     * if there is no network.
+     * @param network the network, or null
+     * @return
+     */
+    static String fingerprint(UnitCommitmentNetwork network) {
+        return network == null ? "" : network.fingerprint();
+    }
+
+    /**
+     * Returns the number of buses.
+     * @return
+     */
+    public int getNBuses() {
+        return nBuses;
+    }
+
+    /**
+     * Returns the number of lines.
+     * @return
+     */
+    public int getNLines() {
+        return lineFrom.length;
+    }
+
+    /**
+     * Returns the bus of a generator.
+     * @param generator
+     * @return
+     */
+    public int getGeneratorBus(int generator) {
+        return generatorBus[generator];
+    }
+
+    /**
+     * Returns the flow limit of a line.
+     * @param line
+     * @return
+     */
+    public double getFlowLimit(int line) {
+        return flowLimits[line];
+    }
+
+    /**
+     * Returns the shift factors of the generators on a line, i.e. the
+     * flow on the line per unit of output of each generator.
+     * The array is not copied.
+     * @param line
+     * @return
+     */
+    double[] getGeneratorShiftFactors(int line) {
+        return generatorShiftFactors[line];
+    }
+
+    /**
+     * Returns the shift factor of the load on a line, i.e. minus the flow
+     * on the line per unit of demand served.
+     * @param line
+     * @return
+     */
+    double getLoadShiftFactor(int line) {
+        return loadShiftFactors[line];
+    }
+
+    /**
+     * Returns the flow on a line at a period of a dispatch.
+     * @param line
+     * @param period
+     * @param P the output of each generator at each period
+     * @param L the load shed at each period
+     * @param demands the power demand at each period
+     * @return the flow, positive from the first bus to the second
+     */
+    public double getFlow(int line, int period, double P[][], double L[], double demands[]) {
+        double shiftFactors[] = generatorShiftFactors[line];
+        double flow = loadShiftFactors[line]*(L[period] - demands[period]);
+        for (int i = 0; i < shiftFactors.length; i++) {
+            flow = flow + shiftFactors[i]*P[i][period];
+        }
+        return flow;
+    }
+}
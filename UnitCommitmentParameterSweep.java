@@ -0,0 +1,284 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves a Unit Commitment Problem for a series of marginal costs and load
+ * shedding costs, e.g. for a sensitivity study over the fuel prices.
+ * The costs only appear in the objective, so the model is built once and
+ * its objective coefficients are changed in place for each point (see
+ * UnitCommitmentProblemModel.setCosts()). The solution of each point
+ * remains feasible for the next one and is given to Cplex as a MIP start,
+ * so that each solve starts with a good incumbent.
+ * The points can be spread over several workers, each with its own model
+ * and an equal share of the cores. Each worker solves a contiguous run of
+ * the points, so that the points of grid() keep warm-starting each other.
+ * @author Luttner
+ */
+public class UnitCommitmentParameterSweep {
+
+    /**
+     * The costs of one point of the sweep.
+     */
+    public static final class Point {
+        private final String label;
+        private final double marginalCosts[];
+        private final double loadSheddingCosts[];
+
+        /**
+         * Creates a point.
+         * @param label the label of the point in the results
+         * @param marginalCosts the marginal cost of each generator
+         * @param loadSheddingCosts the load shedding cost of each period
+         */
+        public Point(String label, double marginalCosts[], double loadSheddingCosts[]) {
+            this.label = label;
+            this.marginalCosts = marginalCosts;
+            this.loadSheddingCosts = loadSheddingCosts;
+        }
+
+        /**
+         * Creates a point with the same load shedding cost at every period
+         * and the marginal costs of the problem scaled by a factor
+         * (the change of the fuel prices).
+         * @param problem
+         * @param loadSheddingCost
+         * @param fuelPriceFactor e.g. 1.1 for fuel prices 10% higher
+         * @return the point
+         */
+        public static Point of(UnitCommitmentProblem problem, double loadSheddingCost, double fuelPriceFactor) {
+            double marginalCosts[] = new double[problem.getNGenerators()];
+            for (int i = 0; i < marginalCosts.length; i++) {
+                marginalCosts[i] = problem.getMarginalCosts()[i]*fuelPriceFactor;
+            }
+            double loadSheddingCosts[] = new double[problem.getNPeriods()];
+            Arrays.fill(loadSheddingCosts, loadSheddingCost);
+            return new Point(loadSheddingCost+";"+fuelPriceFactor, marginalCosts, loadSheddingCosts);
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public double[] getMarginalCosts() {
+            return marginalCosts;
+        }
+
+        public double[] getLoadSheddingCosts() {
+            return loadSheddingCosts;
+        }
+    }
+
+    /**
+     * The outcome of one point of the sweep.
+     */
+    public static final class Result {
+        private final Point point;
+        private final UnitCommitmentSolveResult result;
+        private final UnitCommitmentSolution solution;
+
+        Result(Point point, UnitCommitmentSolveResult result, UnitCommitmentSolution solution) {
+            this.point = point;
+            this.result = result;
+            this.solution = solution;
+        }
+
+        public Point getPoint() {
+            return point;
+        }
+
+        /**
+         * Returns the status, objective and bound of the solve.
+         * @return
+         */
+        public UnitCommitmentSolveResult getResult() {
+            return result;
+        }
+
+        /**
+         * Returns the solution found.
+         * @return the solution, or null if none has been found
+         */
+        public UnitCommitmentSolution getSolution() {
+            return solution;
+        }
+    }
+
+    private final UnitCommitmentProblem problem;
+    private int workers = 1;
+    // The termination criteria of each solve
+    // (NaN for the defaults of Cplex).
+    private double relativeGap = Double.NaN;
+    private double timeLimit = Double.NaN;
+
+    /**
+     * Creates a sweep of a problem, whose costs are replaced
+     * by those of each point.
+     * @param problem
+     */
+    public UnitCommitmentParameterSweep(UnitCommitmentProblem problem) {
+        this.problem = problem;
+    }
+
+    /**
+     * Builds the points of a grid of load shedding costs and fuel price
+     * factors (see Point.of()). The grid is traversed back and forth along
+     * the fuel price factors, so that consecutive points are neighbors.
+     * @param problem
+     * @param loadSheddingCosts
+     * @param fuelPriceFactors
+     * @return the points
+     */
+    public static List<Point> grid(UnitCommitmentProblem problem, double loadSheddingCosts[], double fuelPriceFactors[]) {
+        List<Point> points = new ArrayList<>(loadSheddingCosts.length*fuelPriceFactors.length);
+        for (int a = 0; a < loadSheddingCosts.length; a++) {
+            for (int b = 0; b < fuelPriceFactors.length; b++) {
+                int f = a % 2 == 0 ? b : fuelPriceFactors.length - 1 - b;
+                points.add(Point.of(problem, loadSheddingCosts[a], fuelPriceFactors[f]));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Sets the number of models solved at the same time. The default is 1.
+     * @param workers
+     */
+    public void setWorkers(int workers) {
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * Sets the relative gap at which each solve stops.
+     * @param gap
+     */
+    public void setRelativeGap(double gap) {
+        this.relativeGap = gap;
+    }
+
+    /**
+     * Sets a limit on the time spent by each solve.
+     * @param seconds
+     */
+    public void setTimeLimit(double seconds) {
+        this.timeLimit = seconds;
+    }
+
+    /**
+     * Solves the problem at each point.
+     * @param points
+     * @return the results, in the order of the points
+     * @throws IloException
+     */
+    public List<Result> run(List<Point> points) throws IloException {
+        int nWorkers = Math.min(workers, points.size());
+        if (nWorkers <= 1) {
+            return run(points, 0);
+        }
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors()/nWorkers);
+        ExecutorService pool = Executors.newFixedThreadPool(nWorkers);
+        try {
+            List<Future<List<Result>>> runs = new ArrayList<>();
+            for (int w = 0; w < nWorkers; w++) {
+                List<Point> run = points.subList(w*points.size()/nWorkers, (w + 1)*points.size()/nWorkers);
+                runs.add(pool.submit(() -> run(run, threads)));
+            }
+            List<Result> results = new ArrayList<>(points.size());
+            for (Future<List<Result>> run : runs) {
+                results.addAll(run.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IloException("The sweep has been interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IloException) {
+                throw (IloException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Solves a run of points with one model.
+     * @param points
+     * @param threads the threads of Cplex, or 0 for all the cores
+     * @return the results, in the order of the points
+     * @throws IloException
+     */
+    private List<Result> run(List<Point> points, int threads) throws IloException {
+        List<Result> results = new ArrayList<>(points.size());
+        UnitCommitmentProblemModel model = new UnitCommitmentProblemModel(problem);
+        try {
+            model.setThreads(threads);
+            if (!Double.isNaN(relativeGap)) {
+                model.setRelativeGap(relativeGap);
+            }
+            if (!Double.isNaN(timeLimit)) {
+                model.setTimeLimit(timeLimit);
+            }
+            UnitCommitmentSolution previous = null;
+            for (Point point : points) {
+                model.setCosts(point.getMarginalCosts(), point.getLoadSheddingCosts());
+                if (previous != null) {
+                    model.addMIPStart(previous.getU(), IloCplex.MIPStartEffort.SolveFixed, true);
+                }
+                UnitCommitmentSolveResult result = model.optimize();
+                UnitCommitmentSolution solution = result.hasIncumbent() ? model.getSolution() : null;
+                results.add(new Result(point, result, solution));
+                if (solution != null) {
+                    previous = solution;
+                }
+            }
+        } finally {
+            model.end();
+        }
+        return results;
+    }
+
+    /**
+     * Sweeps a grid of load shedding costs and fuel price factors and
+     * prints one CSV line per point:
+     * loadSheddingCost;fuelPriceFactor;status;objective;gap;seconds
+     * Usage: UnitCommitmentParameterSweep generators.txt loads.txt
+     * sheddingCost,sheddingCost,... factor,factor,... [workers] [timeLimit]
+     * @param args
+     * @throws IloException
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IloException, IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: UnitCommitmentParameterSweep generators.txt loads.txt sheddingCost,... factor,... [workers] [timeLimit]");
+            return;
+        }
+        double loadSheddingCosts[] = Arrays.stream(args[2].split(",")).mapToDouble(Double::parseDouble).toArray();
+        double fuelPriceFactors[] = Arrays.stream(args[3].split(",")).mapToDouble(Double::parseDouble).toArray();
+        UnitCommitmentProblem problem = new UnitCommitmentProblem(args[0], args[1], loadSheddingCosts[0]);
+        UnitCommitmentParameterSweep sweep = new UnitCommitmentParameterSweep(problem);
+        if (args.length > 4) {
+            sweep.setWorkers(Integer.parseInt(args[4]));
+        }
+        if (args.length > 5) {
+            sweep.setTimeLimit(Double.parseDouble(args[5]));
+        }
+        for (Result result : sweep.run(grid(problem, loadSheddingCosts, fuelPriceFactors))) {
+            UnitCommitmentSolveResult r = result.getResult();
+            System.out.println(result.getPoint().getLabel()+";"+r.getStatus()+";"+r.getObjective()
+                    +";"+r.getGap()+";"+r.getSeconds());
+        }
+    }
+}
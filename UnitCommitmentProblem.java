@@ -1,8 +1,8 @@
 package UnitCommitment;
 
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.*;
+import java.io.IOException;
+import java.io.PrintWriter;
 
 /**
  *
@@ -39,59 +39,36 @@ public class UnitCommitmentProblem {
     // Constructors
 
     /** Constructor of UnitCommitmentProblem from files
-     *
+     * Reads the given number of generators and periods.
      * @param nGenerators
      * @param nPeriods
      * @param generatorFileName
      * @param demandsFileName
      * @param loadSheddingCosts
-     * @throws FileNotFoundException
+     * @throws IOException
      */
-    public UnitCommitmentProblem(int nGenerators, int nPeriods, String generatorFileName, String demandsFileName, double loadSheddingCosts) throws FileNotFoundException {
-        this.nGenerators=nGenerators;
-        this.nPeriods=nPeriods;
-        this.commitmentCosts= new double[nGenerators];
-        this.marginalCosts=new double[nGenerators];
-        this.startupCosts=new double[nGenerators];
-        this.minimumOnTime=new int[nGenerators];
-        this.minimumOffTime=new int[nGenerators];
-        this.minimumOutput=new double[nGenerators];
-        this.maximumOutput=new double[nGenerators];
-        this.rampUpLimit=new double[nGenerators];
-        this.rampDownLimit=new double[nGenerators];
-        this.generatorNames=new String[nGenerators];
-        this.loadSheddingCosts=new double[nGenerators];
-        this.powerDemands=new double[nPeriods];
-        
-        File generatorFile = new File(generatorFileName);
-        try (Scanner generatorScanner = new Scanner(generatorFile)) {
-            generatorScanner.useLocale(Locale.US);
-            
-            generatorScanner.nextLine();
-            generatorScanner.nextLine();
-            for (int i =0; i<nGenerators; i++){
-                this.generatorNames[i]=generatorScanner.next();
-                this.minimumOutput[i]=generatorScanner.nextDouble();
-                this.maximumOutput[i]=generatorScanner.nextDouble();
-                this.startupCosts[i]=generatorScanner.nextDouble();
-                this.commitmentCosts[i]=generatorScanner.nextDouble();
-                this.rampUpLimit[i]=generatorScanner.nextDouble();
-                this.rampDownLimit[i]=rampUpLimit[i];
-                this.minimumOnTime[i]=generatorScanner.nextInt();
-                this.minimumOffTime[i]=generatorScanner.nextInt();
-                this.marginalCosts[i]=generatorScanner.nextDouble();
-                this.loadSheddingCosts[i]=loadSheddingCosts;
-            }
-        }
-        
-        File demandsFile = new File(demandsFileName);
-        try (Scanner demandsScanner = new Scanner(demandsFile)) {
-            demandsScanner.nextLine();
-            for (int j=0; j<nPeriods; j++){
-                this.powerDemands[j] = demandsScanner.nextDouble();
-            }
-        }
+    public UnitCommitmentProblem(int nGenerators, int nPeriods, String generatorFileName, String demandsFileName, double loadSheddingCosts) throws IOException {
+        this(UnitCommitmentProblemReader.read(generatorFileName, demandsFileName, nGenerators, nPeriods, loadSheddingCosts));
+    }
+
+    /** Constructor of UnitCommitmentProblem from files
+     * The number of generators and periods are inferred from the files.
+     * @param generatorFileName
+     * @param demandsFileName
+     * @param loadSheddingCosts
+     * @throws IOException
+     */
+    public UnitCommitmentProblem(String generatorFileName, String demandsFileName, double loadSheddingCosts) throws IOException {
+        this(UnitCommitmentProblemReader.read(generatorFileName, demandsFileName, -1, -1, loadSheddingCosts));
+    }
 
+    /**
+     * Constructor of UnitCommitmentProblem from the columns read
+     * by a UnitCommitmentProblemReader.
+     * @param data
+     */
+    UnitCommitmentProblem(UnitCommitmentProblemReader data) {
+        this(data.nGenerators, data.nPeriods, data.commitmentCosts, data.marginalCosts, data.startupCosts, data.minimumOnTime, data.minimumOffTime, data.minimumOutput, data.maximumOutput, data.rampUpLimit, data.rampDownLimit, data.generatorNames, data.loadSheddingCosts, data.powerDemands);
     }
 
 
@@ -109,10 +86,16 @@ public class UnitCommitmentProblem {
      * @param rampUpLimit
      * @param rampDownLimit
      * @param generatorNames
-     * @param loadSheddingCosts
+     * @param loadSheddingCosts the load shedding cost of each period
      * @param powerDemands
+     * @throws IllegalArgumentException if there is not one load shedding
+     * cost and one demand per period
      */
     public UnitCommitmentProblem(int nGenerators, int nPeriods, double commitmentCosts[], double marginalCosts[], double startupCosts[], int minimumOnTime[], int minimumOffTime[], double minimumOutput[], double maximumOutput[], double rampUpLimit[], double rampDownLimit[], String generatorNames[], double loadSheddingCosts[], double powerDemands[]) {
+        if (loadSheddingCosts.length != nPeriods || powerDemands.length != nPeriods) {
+            throw new IllegalArgumentException("Expected "+nPeriods+" load shedding costs and demands, got "
+                    +loadSheddingCosts.length+" and "+powerDemands.length);
+        }
         this.nGenerators=nGenerators;
         this.nPeriods=nPeriods;
         this.commitmentCosts=commitmentCosts;
@@ -129,6 +112,20 @@ public class UnitCommitmentProblem {
         this.powerDemands=powerDemands;
     }
     // Methods 
+    /**
+     * Returns a problem with the same fleet and demands as this one, but
+     * other marginal costs and load shedding costs. The other arrays
+     * are shared.
+     * @param marginalCosts the marginal cost of each generator
+     * @param loadSheddingCosts the load shedding cost of each period
+     * @return the problem
+     */
+    public UnitCommitmentProblem withCosts(double marginalCosts[], double loadSheddingCosts[]) {
+        if (marginalCosts.length != nGenerators) {
+            throw new IllegalArgumentException("Expected "+nGenerators+" marginal costs, got "+marginalCosts.length);
+        }
+        return new UnitCommitmentProblem(nGenerators, nPeriods, commitmentCosts, marginalCosts, startupCosts, minimumOnTime, minimumOffTime, minimumOutput, maximumOutput, rampUpLimit, rampDownLimit, generatorNames, loadSheddingCosts, powerDemands);
+    }
     /**
      * Returns the number of generators.
      * @return 
@@ -225,6 +222,30 @@ public class UnitCommitmentProblem {
         return powerDemands;
     }
 
+    /**
+     * Saves the problem in the format read by the constructor from files.
+     * The load shedding costs are not saved, since that constructor
+     * receives them as a parameter.
+     * @param generatorFileName
+     * @param demandsFileName
+     * @throws FileNotFoundException 
+     */
+    public void save(String generatorFileName, String demandsFileName) throws FileNotFoundException {
+        try (PrintWriter generatorWriter = new PrintWriter(generatorFileName)) {
+            generatorWriter.println("Generators");
+            generatorWriter.println("Name MinimumOutput MaximumOutput StartupCost CommitmentCost RampLimit MinimumOnTime MinimumOffTime MarginalCost");
+            for (int i = 0; i < nGenerators; i++){
+                generatorWriter.println(generatorNames[i]+" "+minimumOutput[i]+" "+maximumOutput[i]+" "+startupCosts[i]+" "+commitmentCosts[i]+" "+rampUpLimit[i]+" "+minimumOnTime[i]+" "+minimumOffTime[i]+" "+marginalCosts[i]);
+            }
+        }
+        try (PrintWriter demandsWriter = new PrintWriter(demandsFileName)) {
+            demandsWriter.println("Loads");
+            for (int j = 0; j < nPeriods; j++){
+                demandsWriter.println(powerDemands[j]);
+            }
+        }
+    }
+
      /**
      * Prints the problem.
      */
@@ -2,11 +2,18 @@ package UnitCommitment;
 
 // Necessary imports of classes 
 // which are not in our package
+import ilog.concert.IloConversion;
 import ilog.concert.IloException;
 import ilog.concert.IloIntVar;
 import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumVar;
+import ilog.concert.IloNumVarType;
+import ilog.concert.IloObjective;
 import ilog.cplex.IloCplex;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 /**
  * This class creates the template for objects representing
@@ -20,9 +27,8 @@ public class UnitCommitmentProblemModel {
     // container of the mathematical 
     // programming elements.
     // Since we will not modify 
-    // the variables holding the 
-    // model and the problem 
-    // we can make them final.
+    // the variable holding the 
+    // model we can make it final.
     private final IloCplex model;
 
     // Stores the problem, the variables and the constraints
@@ -30,14 +36,31 @@ public class UnitCommitmentProblemModel {
     // UnitCommitmentProblemModel.
     // We use 4 different arrays of variables,
     // as detailed in the constructor below.
+    // The problem is replaced when its costs
+    // are changed (see setCosts()).
     
-    private final UnitCommitmentProblem problem;
+    private UnitCommitmentProblem problem;
     private final IloNumVar[][] c;
     private final IloNumVar[] l;
     private final IloIntVar[][] u;
     private final IloNumVar[][] p;
+    private final IloObjective objective;
+
+    // Receives the changes of the incumbent and of the best bound.
+    // By default nothing is reported.
+    private SolveListener listener = SolveListener.NO_OP;
+
+    // The conversions of u to continuous variables,
+    // if the problem is relaxed (see relax()).
+    private IloConversion relaxation[];
+
+    // The separator of the flow limits of the lines, or null if the
+    // problem has no network.
+    private LineLimitSeparator lineLimits;
     
     public UnitCommitmentProblemModel(UnitCommitmentProblem problem) throws IloException{
+        UnitCommitmentEvents.ModelBuild event = new UnitCommitmentEvents.ModelBuild();
+        event.begin();
         // Creates the IloCplex object
         // and stores the problem in the
         // field variable. 
@@ -55,42 +78,59 @@ public class UnitCommitmentProblemModel {
         // l being unidimensional on periods and the other three being
         // bidimensional on periods and generators.
         
-        c = new IloNumVar[problem.getNGenerators()][problem.getNPeriods()];
-        l = new IloNumVar[problem.getNPeriods()];
-        u = new IloIntVar[problem.getNGenerators()][problem.getNPeriods()];
-        p = new IloNumVar[problem.getNGenerators()][problem.getNPeriods()];
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        c = new IloNumVar[nGenerators][];
+        u = new IloIntVar[nGenerators][];
+        p = new IloNumVar[nGenerators][];
         
         // Now we need to populate the arrays with objects of type IloNumVar.
-        for(int j = 0; j < problem.getNPeriods(); j++){
-            l[j] = model.numVar(0, Double.POSITIVE_INFINITY,"l_"+j);
-        }
-        
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                c[i][j] = model.numVar(0, Double.POSITIVE_INFINITY, "c_"+i+"_"+j);
-                u[i][j] = model.boolVar("u_"+i+"_"+j);
-                p[i][j] = model.numVar(0, Double.POSITIVE_INFINITY, "p_"+i+"_"+j);
-            }
+        // The variables are created in bulk, one array per generator,
+        // and registered as the columns of the constraint matrix.
+        // We keep the column of the first variable of each array,
+        // e.g. the column of u[i][j] is uColumn[i]+j.
+        LPMatrixBuilder matrix = new LPMatrixBuilder();
+        l = model.numVarArray(nPeriods, 0, Double.POSITIVE_INFINITY);
+        LPMatrixBuilder.name(l, "l", -1);
+        int lColumn = matrix.addColumns(l);
+        int cColumn[] = new int[nGenerators];
+        int uColumn[] = new int[nGenerators];
+        int pColumn[] = new int[nGenerators];
+        for(int i = 0; i < nGenerators; i++){
+            c[i] = model.numVarArray(nPeriods, 0, Double.POSITIVE_INFINITY);
+            u[i] = model.boolVarArray(nPeriods);
+            p[i] = model.numVarArray(nPeriods, 0, Double.POSITIVE_INFINITY);
+            LPMatrixBuilder.name(c[i], "c", i);
+            LPMatrixBuilder.name(u[i], "u", i);
+            LPMatrixBuilder.name(p[i], "p", i);
+            cColumn[i] = matrix.addColumns(c[i]);
+            uColumn[i] = matrix.addColumns(u[i]);
+            pColumn[i] = matrix.addColumns(p[i]);
         }
         
         // Create and add the objective function.
         // First we create an empty linear expression.
-        IloLinearNumExpr objective = model.linearNumExpr();
+        IloLinearNumExpr expression = model.linearNumExpr();
         
-        // Then we add the terms of the expression.
-        for(int j = 0; j < problem.getNPeriods(); j++){
-            objective.addTerm(l[j], problem.getLoadSheddingCosts()[j]);
+        // Then we add the terms of the expression, 
+        // one array of variables at a time.
+        double coefficients[] = new double[nPeriods];
+        for(int j = 0; j < nPeriods; j++){
+            coefficients[j] = problem.getLoadSheddingCosts()[j];
         }
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                objective.addTerm(c[i][j], 1);
-                objective.addTerm(u[i][j], problem.getCommitmentCosts()[i]);
-                objective.addTerm(p[i][j], problem.getMarginalCosts()[i]);
-            }
+        expression.addTerms(coefficients, l);
+        for(int i = 0; i < nGenerators; i++){
+            Arrays.fill(coefficients, 1);
+            expression.addTerms(coefficients, c[i]);
+            Arrays.fill(coefficients, problem.getCommitmentCosts()[i]);
+            expression.addTerms(coefficients, u[i]);
+            Arrays.fill(coefficients, problem.getMarginalCosts()[i]);
+            expression.addTerms(coefficients, p[i]);
         }
         // Finally we tell the model to minimize that 
-        // linear expression.
-        model.addMinimize(objective);
+        // linear expression. We keep the objective to
+        // change its coefficients (see setCosts()).
+        objective = model.addMinimize(expression);
 
         // Now for the constraints, which are divided into sets according
         // to the problem formulation, named with 1b, 1c, ... 1i.
@@ -99,139 +139,430 @@ public class UnitCommitmentProblemModel {
         
     
         // We build each of the constraint sets, adding the terms to the
-        // linear expression and then add the constraint sets to the model.
+        // current row of the matrix and then ending the row with its 
+        // right-hand side. All the rows are added to the model at the end.
 
         // Constraints 1b: Start-up costs
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(c[i][j], 1);
-                lhs.addTerm(u[i][j], -problem.getStartupCosts()[i]);
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(cColumn[i]+j, 1);
+                matrix.addTerm(uColumn[i]+j, -problem.getStartupCosts()[i]);
                 if (j>0){
-                    lhs.addTerm(u[i][j-1], problem.getStartupCosts()[i]);
+                    matrix.addTerm(uColumn[i]+j-1, problem.getStartupCosts()[i]);
                 }
-                // Finally we add the constraint to the model 
-                model.addGe(lhs, 0,"StartupCost_"+i+"_"+j);
+                matrix.addGe(0, "StartupCost", i, j);
             }
         }
 
         // Constraints 1c: Minimum ontime constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
                 for(int t=j; t< minimumOnTimeAtT(i,j); t++){
-                    lhs.addTerm(u[i][t], 1);
-                    lhs.addTerm(u[i][j], -1);
+                    matrix.addTerm(uColumn[i]+t, 1);
+                    matrix.addTerm(uColumn[i]+j, -1);
                     if (j>0){
-                        lhs.addTerm(u[i][j-1], 1);
+                        matrix.addTerm(uColumn[i]+j-1, 1);
                     }
                 }
-                // Finally we add the constraint to the model 
-                model.addGe(lhs, 0,"MinimumOntime_"+i+"_"+j);
+                matrix.addGe(0, "MinimumOntime", i, j);
             }
         }
 
         // Constraints 1d: Minimum offtime constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
                 for(int t=j; t< minimumOffTimeAtT(i,j); t++){
-                    lhs.addTerm(u[i][t], -1);
-                    lhs.addTerm(u[i][j], 1);
+                    matrix.addTerm(uColumn[i]+t, -1);
+                    matrix.addTerm(uColumn[i]+j, 1);
                     if (j>0){
-                        lhs.addTerm(u[i][j-1], -1);
+                        matrix.addTerm(uColumn[i]+j-1, -1);
                     }
                 }
-                // Finally we add the constraint to the model 
-                model.addGe(lhs, j-minimumOffTimeAtT(i,j)-1,"MinimumOffTime_"+i+"_"+j);
+                matrix.addGe(j-minimumOffTimeAtT(i,j)-1, "MinimumOffTime", i, j);
             }
         }
 
         // Constraints 1e: Power balance constraints
         
-        for(int j = 0; j < problem.getNPeriods(); j++){
-            IloLinearNumExpr lhs = model.linearNumExpr();
-            // We add the terms to the linear expression
-            for(int i=0; i < problem.getNGenerators(); i++){
-                lhs.addTerm(p[i][j], 1);
+        for(int j = 0; j < nPeriods; j++){
+            for(int i=0; i < nGenerators; i++){
+                matrix.addTerm(pColumn[i]+j, 1);
             }
-            lhs.addTerm(l[j], 1);
-            // Finally we add the constraint to the model 
-            model.addEq(lhs, problem.getPowerDemands()[j],"PowerBalance_"+j);
+            matrix.addTerm(lColumn+j, 1);
+            matrix.addEq(problem.getPowerDemands()[j], "PowerBalance", -1, j);
         }
         
         // Constraints 1f: Minimum output constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(p[i][j], 1);
-                lhs.addTerm(u[i][j], -problem.getMinimumOutput()[i]);
-                model.addGe(lhs, 0,"MinimumOutput"+i+"_"+j);
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(pColumn[i]+j, 1);
+                matrix.addTerm(uColumn[i]+j, -problem.getMinimumOutput()[i]);
+                matrix.addGe(0, "MinimumOutput", i, j);
             }
         }
         
         // Constraints 1g: Maximum output constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(p[i][j], 1);
-                lhs.addTerm(u[i][j], -problem.getMaximumOutput()[i]);
-                model.addLe(lhs, 0,"MaximumOutput_"+i+"_"+j);
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(pColumn[i]+j, 1);
+                matrix.addTerm(uColumn[i]+j, -problem.getMaximumOutput()[i]);
+                matrix.addLe(0, "MaximumOutput", i, j);
             }
         }
 
         // Constraints 1h: Maximum ramp-up constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(p[i][j], 1);
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(pColumn[i]+j, 1);
                 if (j>0){
-                    lhs.addTerm(p[i][j-1], -1);
+                    matrix.addTerm(pColumn[i]+j-1, -1);
                 }
-                model.addLe(lhs, problem.getRampUpLimit()[i],"MaximumRampUp_"+i+"_"+j);
+                matrix.addLe(problem.getRampUpLimit()[i], "MaximumRampUp", i, j);
             }
         }
 
         // Constraints 1i: Maximum ramp-down constraints
         
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            for(int j = 0; j < problem.getNPeriods(); j++){
-                IloLinearNumExpr lhs = model.linearNumExpr();
-                // We add the terms to the linear expression
-                lhs.addTerm(p[i][j], -1);
+        for(int i = 0; i < nGenerators; i++){
+            for(int j = 0; j < nPeriods; j++){
+                matrix.addTerm(pColumn[i]+j, -1);
                 if (j>0){
-                    lhs.addTerm(p[i][j-1], 1);
+                    matrix.addTerm(pColumn[i]+j-1, 1);
                 }
-                model.addLe(lhs, problem.getRampDownLimit()[i],"StartupCost_"+i+"_"+j);
+                matrix.addLe(problem.getRampDownLimit()[i], "MaximumRampDown", i, j);
             }
         }
+
+        // Finally we add all the constraints to the model at once.
+        matrix.load(model);
+        UnitCommitmentEvents.commitModelBuild(event, "UnitCommitmentProblemModel", problem.getNGenerators(), problem.getNPeriods());
     }
 
     /** 
      * Attempts to solve the model - prints the optimal value or
-     * information about infeasibility.
+     * information about infeasibility. The solve stops at the first
+     * termination criterion met (gap, time or node limit).
+     * @return the objective of the incumbent, the best bound and the gap
      * @throws IloException 
      */
-    public void solve() throws IloException{
-        boolean has_feasible_solution = model.solve();
-        if(has_feasible_solution){
-            System.out.println("Optimal value "+model.getObjValue());
+    public UnitCommitmentSolveResult solve() throws IloException{
+        UnitCommitmentSolveResult result = optimize();
+        if(result.getStatus() == UnitCommitmentSolveResult.Status.OPTIMAL){
+            System.out.println("Optimal value "+result.getObjective());
+        }else if(result.hasIncumbent()){
+            System.out.println("Best value found "+result.getObjective()+", gap "+result.getGap());
         }else{
             System.out.println("No feasible solution has been found");
         }
+        return result;
+    }
+
+    /**
+     * Solves the model without printing anything.
+     * @return the objective of the incumbent, the best bound and the gap
+     * @throws IloException 
+     */
+    UnitCommitmentSolveResult optimize() throws IloException{
+        if (listener != SolveListener.NO_OP){
+            model.use(new InfoCallback());
+        }
+        long start = System.nanoTime();
+        if (lineLimits != null && model.isMIP()){
+            model.use(new LineLimitCallback());
+        }
+        model.solve();
+        // Without branching there are no lazy constraints,
+        // so the LP is solved again while limits are violated.
+        while (lineLimits != null && !model.isMIP() && addViolatedLineLimits()){
+            model.solve();
+        }
+        return UnitCommitmentSolveResult.of(model, (System.nanoTime() - start)/1e9);
     }
+
+    /**
+     * Adds the transmission network to the problem. The flow limits of its
+     * lines are left out of the model: they are added as lazy constraints
+     * when an integer solution violates them (or, if the problem is
+     * relaxed, when the solution of the LP violates them).
+     * @param network the network, whose generators are those of the problem
+     */
+    public void setNetwork(UnitCommitmentNetwork network){
+        this.lineLimits = network == null ? null : new LineLimitSeparator(problem, network);
+    }
+
+    /**
+     * Returns the number of flow limits added to the model so far.
+     * @return
+     */
+    public int getNLineLimits(){
+        return lineLimits == null ? 0 : lineLimits.getNKnownLimits();
+    }
+
+    /**
+     * Adds the flow limits violated by the solution of the LP, if any.
+     * @return whether limits were added
+     * @throws IloException 
+     */
+    private boolean addViolatedLineLimits() throws IloException{
+        if (!model.isPrimalFeasible()){
+            return false;
+        }
+        boolean added = false;
+        for (LineLimitSeparator.LineLimit limit : lineLimits.separate(getP(), getL())){
+            // A limit already in the model may still be violated within
+            // the tolerances of Cplex: it is not added again.
+            if (lineLimits.remember(limit)){
+                model.add(lineLimits.getRange(model, p, l, limit));
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Relaxes the integrality of u, so that solve() solves the LP
+     * relaxation of the problem, whose objective is a lower bound
+     * on the optimal objective.
+     * @throws IloException 
+     */
+    void relax() throws IloException{
+        if (relaxation == null){
+            relaxation = new IloConversion[u.length];
+            for (int i = 0; i < u.length; i++){
+                relaxation[i] = model.conversion(u[i], IloNumVarType.Float);
+                model.add(relaxation[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the values of u in the solution found, which are
+     * fractional if the problem is relaxed.
+     * @return U[][]
+     * @throws IloException 
+     */
+    double[][] getRelaxedU() throws IloException{
+        double U[][] = new double[u.length][];
+        for (int i = 0; i < u.length; i++){
+            U[i] = model.getValues(u[i]);
+        }
+        return U;
+    }
+
+    /**
+     * Fixes the status of the generators, so that solve() only
+     * determines the dispatch (p and l) and the startup costs.
+     * @param U the status of each generator at each period
+     * @throws IloException 
+     */
+    void fixCommitment(int U[][]) throws IloException{
+        for (int i = 0; i < u.length; i++){
+            for (int j = 0; j < u[i].length; j++){
+                u[i][j].setLB(U[i][j]);
+                u[i][j].setUB(U[i][j]);
+            }
+        }
+    }
+
+    /**
+     * Sets the listener which receives the changes of the incumbent
+     * and of the best bound during the solve.
+     * @param listener the listener, or null to report nothing
+     */
+    public void setListener(SolveListener listener) {
+        this.listener = listener == null ? SolveListener.NO_OP : listener;
+    }
+
+    /**
+     * Changes the marginal costs and the load shedding costs in the
+     * objective of the model, without building it again, e.g. to solve
+     * a series of problems which only differ in their costs. The
+     * constraints do not depend on these costs, so the solutions found
+     * remain feasible and can be given back as MIP starts.
+     * @param marginalCosts the marginal cost of each generator
+     * @param loadSheddingCosts the load shedding cost of each period
+     * @throws IloException 
+     */
+    public void setCosts(double marginalCosts[], double loadSheddingCosts[]) throws IloException {
+        UnitCommitmentProblem changed = problem.withCosts(marginalCosts, loadSheddingCosts);
+        model.setLinearCoefs(objective, loadSheddingCosts, l);
+        double coefficients[] = new double[problem.getNPeriods()];
+        for (int i = 0; i < problem.getNGenerators(); i++) {
+            if (marginalCosts[i] != problem.getMarginalCosts()[i]) {
+                Arrays.fill(coefficients, marginalCosts[i]);
+                model.setLinearCoefs(objective, coefficients, p[i]);
+            }
+        }
+        problem = changed;
+    }
+
+    /**
+     * Returns the problem of the model, with the costs
+     * given by setCosts() if it has been called.
+     * @return
+     */
+    public UnitCommitmentProblem getProblem() {
+        return problem;
+    }
+
+    /**
+     * Sets the number of threads used by Cplex, e.g. when several
+     * models are solved at the same time. The default (0) lets Cplex
+     * use all the cores.
+     * @param threads
+     * @throws IloException 
+     */
+    public void setThreads(int threads) throws IloException {
+        model.setParam(IloCplex.Param.Threads, threads);
+    }
+
+    /**
+     * Sets a limit on the time spent by solve().
+     * @param seconds the time limit, in seconds
+     * @throws IloException 
+     */
+    public void setTimeLimit(double seconds) throws IloException {
+        model.setParam(IloCplex.Param.TimeLimit, seconds);
+    }
+
+    /**
+     * Sets the relative gap at which solve() stops: the incumbent is
+     * accepted once |objective - bound| / (1e-10 + |objective|) is
+     * below this value. The default is 1e-4.
+     * @param gap
+     * @throws IloException 
+     */
+    public void setRelativeGap(double gap) throws IloException {
+        model.setParam(IloCplex.Param.MIP.Tolerances.MIPGap, gap);
+    }
+
+    /**
+     * Sets the absolute gap at which solve() stops: the incumbent is
+     * accepted once objective - bound is below this value.
+     * The default is 1e-6.
+     * @param gap
+     * @throws IloException 
+     */
+    public void setAbsoluteGap(double gap) throws IloException {
+        model.setParam(IloCplex.Param.MIP.Tolerances.AbsMIPGap, gap);
+    }
+
+    /**
+     * Sets a limit on the number of nodes explored by solve().
+     * @param nodes
+     * @throws IloException 
+     */
+    public void setNodeLimit(long nodes) throws IloException {
+        model.setParam(IloCplex.Param.MIP.Limits.Nodes, nodes);
+    }
+
+    /**
+     * Gives the status of the generators of a solution (e.g., the solution
+     * of an instance with the same fleet) to Cplex as a MIP start.
+     * The outputs and load sheds are not given, since they may not be
+     * feasible for the demands of this problem: Cplex obtains them by
+     * solving the problem with u fixed.
+     * @param start the solution whose status of the generators is used
+     * @throws IloException 
+     */
+    public void addMIPStart(UnitCommitmentSolution start) throws IloException {
+        addMIPStart(start.getU(), IloCplex.MIPStartEffort.SolveFixed);
+    }
+
+    /**
+     * Gives a status of the generators to Cplex as a MIP start.
+     * @param U the status of each generator at each period
+     * @param effort how much effort Cplex puts in completing the start
+     * (e.g., Repair if it may violate some constraints)
+     * @throws IloException 
+     */
+    void addMIPStart(int U[][], IloCplex.MIPStartEffort effort) throws IloException {
+        addMIPStart(U, effort, false);
+    }
+
+    /**
+     * Gives a status of the generators to Cplex as a MIP start.
+     * @param U the status of each generator at each period
+     * @param effort how much effort Cplex puts in completing the start
+     * @param replace whether the MIP starts given before are deleted,
+     * e.g. when they were given for other costs
+     * @throws IloException 
+     */
+    void addMIPStart(int U[][], IloCplex.MIPStartEffort effort, boolean replace) throws IloException {
+        if (replace && model.getNMIPStarts() > 0) {
+            model.deleteMIPStarts(0, model.getNMIPStarts());
+        }
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        IloNumVar variables[] = new IloNumVar[2*nGenerators*nPeriods];
+        double values[] = new double[variables.length];
+        int k = 0;
+        for (int i = 0; i < nGenerators; i++) {
+            for (int j = 0; j < nPeriods; j++) {
+                int previous = j > 0 ? U[i][j-1] : 0;
+                variables[k] = u[i][j];
+                values[k++] = U[i][j];
+                variables[k] = c[i][j];
+                values[k++] = problem.getStartupCosts()[i]*Math.max(0, U[i][j] - previous);
+            }
+        }
+        model.addMIPStart(variables, values, effort);
+    }
+
+    /**
+     * Reports the changes of the incumbent and of the best bound
+     * to the listener. Informational callbacks do not change the
+     * way Cplex searches the tree.
+     */
+    private class InfoCallback extends IloCplex.MIPInfoCallback {
+
+        private double lastIncumbent = Double.NaN;
+        private double lastBound = Double.NaN;
+
+        @Override
+        protected void main() throws IloException {
+            if (hasIncumbent()) {
+                double incumbent = getIncumbentObjValue();
+                if (incumbent != lastIncumbent) {
+                    lastIncumbent = incumbent;
+                    listener.incumbentChanged(incumbent);
+                }
+            }
+            double bound = getBestObjValue();
+            if (bound != lastBound) {
+                lastBound = bound;
+                listener.boundChanged(bound);
+            }
+        }
+    }
+
+    /**
+     * Adds the flow limits violated by the integer solutions found as lazy
+     * constraints, so that only the limits which bind enter the model.
+     */
+    private class LineLimitCallback extends IloCplex.LazyConstraintCallback {
+
+        @Override
+        protected void main() throws IloException {
+            double P[][] = new double[p.length][];
+            for (int i = 0; i < p.length; i++) {
+                P[i] = getValues(p[i]);
+            }
+            // Every violated limit is added, even if another thread has
+            // just added it, since the candidate must be rejected.
+            for (LineLimitSeparator.LineLimit limit : lineLimits.separate(P, getValues(l))) {
+                lineLimits.remember(limit);
+                add(lineLimits.getRange(model, p, l, limit));
+            }
+        }
+    }
+
     /**
      * Returns the minimum on-time for a generator at a given period
      * as the function stated in the assignment (2.1). The "-1" on the first
@@ -254,34 +585,54 @@ public class UnitCommitmentProblemModel {
         return Math.min(period+problem.getMinimumOffTime()[generator], problem.getNPeriods());
     }
     
+    /**
+     * Returns the outputs of the generators at each period.
+     * The values are fetched one generator at a time
+     * rather than one by one.
+     * @return P[][]
+     * @throws IloException 
+     */
+    public double[][] getP() throws IloException {
+        double P[][] = new double[problem.getNGenerators()][];
+        for (int i = 0; i < problem.getNGenerators(); i++){
+            P[i] = model.getValues(p[i]);
+        }
+        return P;
+    }
+
+    /**
+     * Returns the load sheds at each period.
+     * @return L[]
+     * @throws IloException 
+     */
+    public double[] getL() throws IloException {
+        return model.getValues(l);
+    }
+
+    /**
+     * Returns the solution found.
+     * @return the solution
+     * @throws IloException 
+     */
+    public UnitCommitmentSolution getSolution() throws IloException {
+        int U[][] = new int[problem.getNGenerators()][problem.getNPeriods()];
+        for (int i = 0; i < problem.getNGenerators(); i++){
+            double values[] = model.getValues(u[i]);
+            for (int j = 0; j < problem.getNPeriods(); j++){
+                U[i][j] = (int) Math.round(values[j]);
+            }
+        }
+        return new UnitCommitmentSolution(U, getP(), getL(), model.getObjValue());
+    }
+
      /**
      * Prints the solution found, i.e. the outputs for each generator and
      * the load sheds at each time period.
      * @throws IloException
+     * @throws IOException
      */
-        public void printSolution() throws IloException{
-        System.out.println("Solution: ");
-        System.out.println("Load Shedding:");
-        for (int j=0; j<problem.getNPeriods(); j++){
-            System.out.print("T"+j+": "+model.getValue(l[j])+"   ");
-            if (j % 5 == 4){
-                System.out.println();
-            }
-        }
-        System.out.println();
-        System.out.println();
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            System.out.println("Power outputs for generator "+problem.getGeneratorNames()[i]);
-            for (int j=0; j<problem.getNPeriods(); j++){
-                System.out.print("T"+j+": "+model.getValue(p[i][j])+"   ");
-                if (j % 5 == 4){
-                    System.out.println();
-                }
-            }
-            System.out.println();
-            System.out.println();
-        }
-        System.out.println("Optimal value: "+model.getObjValue());
+    public void printSolution() throws IloException, IOException{
+        UnitCommitmentSolutionWriter.writeText(UnitCommitmentSolutionWriter.standardOutput(), problem, getP(), getL(), model.getObjValue());
     }
 
      /**
@@ -289,21 +640,31 @@ public class UnitCommitmentProblemModel {
      * the load sheds at each time period, in CSV, which is more useful for
      * copying to a spreadsheet and analyzing the data.
      * @throws IloException
+     * @throws IOException
      */
-    public void printCSVSolution() throws IloException{
-        System.out.print("Load Shed; ");
-        for (int j=0; j<problem.getNPeriods(); j++){
-            System.out.print(model.getValue(l[j])+"; ");
-        }
-        System.out.println();
-        for(int i = 0; i < problem.getNGenerators(); i++){
-            System.out.print(problem.getGeneratorNames()[i]+"; ");
-            for (int j=0; j<problem.getNPeriods(); j++){
-                System.out.print(model.getValue(p[i][j])+"; ");
-            }
-            System.out.println();
-        }
-        System.out.println("Optimal value: "+model.getObjValue());
+    public void printCSVSolution() throws IloException, IOException{
+        writeCSVSolution(UnitCommitmentSolutionWriter.standardOutput());
+    }
+
+    /**
+     * Writes the solution found in CSV (same layout as printCSVSolution()).
+     * @param out the destination
+     * @throws IloException
+     * @throws IOException
+     */
+    public void writeCSVSolution(Writer out) throws IloException, IOException{
+        UnitCommitmentSolutionWriter.writeCSV(out, problem, getP(), getL(), model.getObjValue());
+    }
+
+    /**
+     * Writes the solution found in the binary format of
+     * UnitCommitmentSolutionWriter.
+     * @param path the destination file
+     * @throws IloException
+     * @throws IOException
+     */
+    public void writeBinarySolution(Path path) throws IloException, IOException{
+        UnitCommitmentSolutionWriter.writeBinary(path, problem, getP(), getL(), model.getObjValue());
     }
 
     /**
@@ -312,5 +673,14 @@ public class UnitCommitmentProblemModel {
     public void print(){
         System.out.println(model.toString());
     }
+
+    /**
+     * Releases all the objects retained by the IloCplex object.
+     * Note that once the method end() has been called, the IloCplex object
+     * cannot be used (e.g., queried) anymore.
+     */
+    public void end(){
+        model.end();
+    }
     
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package UnitCommitment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads instances of the Unit Commitment Problem from the text files
+ * (generators.txt and loads.txt) using an InstanceTokenizer.
+ * The generators file has two header lines followed by one line per
+ * generator: name, minimum output, maximum output, startup cost,
+ * commitment cost, ramp limit, minimum on-time, minimum off-time and
+ * marginal cost. The demands file has one header line followed by the
+ * demand of each period.
+ * The number of generators and periods can either be given, in which
+ * case only that many are read, or inferred from the files.
+ * @author Luttner
+ */
+class UnitCommitmentProblemReader {
+
+    // The columns read from the files.
+    int nGenerators;
+    int nPeriods;
+    double commitmentCosts[];
+    double marginalCosts[];
+    double startupCosts[];
+    int minimumOnTime[];
+    int minimumOffTime[];
+    double minimumOutput[];
+    double maximumOutput[];
+    double rampUpLimit[];
+    double rampDownLimit[];
+    String generatorNames[];
+    double loadSheddingCosts[];
+    double powerDemands[];
+
+    private UnitCommitmentProblemReader() {
+    }
+
+    /**
+     * Reads an instance from files.
+     * @param generatorFileName
+     * @param demandsFileName
+     * @param nGenerators the number of generators to read, or -1 to read them all
+     * @param nPeriods the number of periods to read, or -1 to read them all
+     * @param loadSheddingCost the load shedding cost of every period
+     * @return the columns read
+     * @throws IOException 
+     */
+    static UnitCommitmentProblemReader read(String generatorFileName, String demandsFileName, int nGenerators, int nPeriods, double loadSheddingCost) throws IOException {
+        try (InstanceTokenizer generatorTokens = new InstanceTokenizer(generatorFileName);
+                InstanceTokenizer demandTokens = new InstanceTokenizer(demandsFileName)) {
+            return read(generatorTokens, demandTokens, nGenerators, nPeriods, loadSheddingCost);
+        }
+    }
+
+    /**
+     * Reads an instance from streams with the content of the files.
+     * @param generators
+     * @param demands
+     * @param loadSheddingCost the load shedding cost of every period
+     * @return the columns read
+     * @throws IOException 
+     */
+    static UnitCommitmentProblemReader read(InputStream generators, InputStream demands, double loadSheddingCost) throws IOException {
+        return read(new InstanceTokenizer(generators), new InstanceTokenizer(demands), -1, -1, loadSheddingCost);
+    }
+
+    private static UnitCommitmentProblemReader read(InstanceTokenizer generatorTokens, InstanceTokenizer demandTokens, int nGenerators, int nPeriods, double loadSheddingCost) throws IOException {
+        UnitCommitmentEvents.ModelBuild event = new UnitCommitmentEvents.ModelBuild();
+        event.begin();
+        UnitCommitmentProblemReader reader = new UnitCommitmentProblemReader();
+        reader.readGenerators(generatorTokens, nGenerators);
+        reader.readDemands(demandTokens, nPeriods, loadSheddingCost);
+        UnitCommitmentEvents.commitModelBuild(event, "UnitCommitmentProblem", reader.nGenerators, reader.nPeriods);
+        return reader;
+    }
+
+    private void readGenerators(InstanceTokenizer tokens, int count) throws IOException {
+        int capacity = count >= 0 ? count : 64;
+        allocateGenerators(capacity);
+        tokens.skipLine();
+        tokens.skipLine();
+        int i = 0;
+        while (count >= 0 ? i < count : tokens.hasNext()) {
+            if (i == capacity) {
+                capacity = 2 * capacity;
+                allocateGenerators(capacity);
+            }
+            generatorNames[i] = tokens.nextString();
+            minimumOutput[i] = tokens.nextDouble();
+            maximumOutput[i] = tokens.nextDouble();
+            startupCosts[i] = tokens.nextDouble();
+            commitmentCosts[i] = tokens.nextDouble();
+            rampUpLimit[i] = tokens.nextDouble();
+            rampDownLimit[i] = rampUpLimit[i];
+            minimumOnTime[i] = tokens.nextInt();
+            minimumOffTime[i] = tokens.nextInt();
+            marginalCosts[i] = tokens.nextDouble();
+            i++;
+        }
+        nGenerators = i;
+        allocateGenerators(i);
+    }
+
+    /**
+     * (Re)allocates the generator columns with the given length,
+     * keeping their content.
+     */
+    private void allocateGenerators(int length) {
+        if (generatorNames != null && generatorNames.length == length) {
+            return;
+        }
+        generatorNames = generatorNames == null ? new String[length] : Arrays.copyOf(generatorNames, length);
+        minimumOutput = resize(minimumOutput, length);
+        maximumOutput = resize(maximumOutput, length);
+        startupCosts = resize(startupCosts, length);
+        commitmentCosts = resize(commitmentCosts, length);
+        rampUpLimit = resize(rampUpLimit, length);
+        rampDownLimit = resize(rampDownLimit, length);
+        marginalCosts = resize(marginalCosts, length);
+        minimumOnTime = minimumOnTime == null ? new int[length] : Arrays.copyOf(minimumOnTime, length);
+        minimumOffTime = minimumOffTime == null ? new int[length] : Arrays.copyOf(minimumOffTime, length);
+    }
+
+    private static double[] resize(double array[], int length) {
+        return array == null ? new double[length] : Arrays.copyOf(array, length);
+    }
+
+    private void readDemands(InstanceTokenizer tokens, int count, double loadSheddingCost) throws IOException {
+        int capacity = count >= 0 ? count : 168;
+        powerDemands = new double[capacity];
+        tokens.skipLine();
+        int j = 0;
+        while (count >= 0 ? j < count : tokens.hasNext()) {
+            if (j == capacity) {
+                capacity = 2 * capacity;
+                powerDemands = Arrays.copyOf(powerDemands, capacity);
+            }
+            powerDemands[j++] = tokens.nextDouble();
+        }
+        nPeriods = j;
+        if (powerDemands.length != j) {
+            powerDemands = Arrays.copyOf(powerDemands, j);
+        }
+        // The shedding costs are used per period in the objective.
+        loadSheddingCosts = new double[nPeriods];
+        Arrays.fill(loadSheddingCosts, loadSheddingCost);
+    }
+}
@@ -0,0 +1,197 @@
+package UnitCommitment;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * End-to-end benchmark of the two algorithms (direct model and Bender's
+ * decomposition) on generated instances of increasing size.
+ * For every instance and algorithm it records the time to the first
+ * incumbent, the time to a 1% gap, the time to optimality, the number
+ * of callbacks and the peak Java heap usage, and appends them as a CSV
+ * line to a results file. Each line carries a label (e.g., the version
+ * being benchmarked) so that the results of several versions can be
+ * kept in the same file and compared.
+ * The peak memory is that of the Java heap only; the memory used
+ * natively by Cplex is not included.
+ * Usage: UnitCommitmentScalingBenchmark results.csv label [GxT,GxT,...] [timeLimit] [seed]
+ * @author Luttner
+ */
+public class UnitCommitmentScalingBenchmark {
+
+    /**
+     * The algorithms benchmarked.
+     */
+    public enum Engine {
+        DIRECT,
+        BENDERS,
+        /** Bender's decomposition with the dispatch of the peak-demand
+         * periods (a tenth of the periods) copied into the master problem. */
+        BENDERS_PARTIAL,
+        APPROXIMATE
+    }
+
+    private final String resultsFileName;
+    private final String label;
+    private final double timeLimit;
+    private final long seed;
+
+    /**
+     * Creates the benchmark.
+     * @param resultsFileName the CSV file the results are appended to
+     * @param label the label written on every line of results
+     * @param timeLimit the time limit of each solve, in seconds
+     * @param seed the seed of the instance generator
+     */
+    public UnitCommitmentScalingBenchmark(String resultsFileName, String label, double timeLimit, long seed) {
+        this.resultsFileName = resultsFileName;
+        this.label = label;
+        this.timeLimit = timeLimit;
+        this.seed = seed;
+    }
+
+    /**
+     * Records the times at which the incumbent and the bound reach
+     * the milestones of the benchmark.
+     */
+    private static class ProgressRecorder implements SolveListener {
+        private final long start = System.nanoTime();
+        private volatile double incumbent = Double.NaN;
+        private volatile double bound = Double.NaN;
+        private volatile double firstIncumbentSeconds = Double.NaN;
+        private volatile double onePercentGapSeconds = Double.NaN;
+
+        @Override
+        public synchronized void incumbentChanged(double objective) {
+            incumbent = objective;
+            if (Double.isNaN(firstIncumbentSeconds)) {
+                firstIncumbentSeconds = elapsedSeconds();
+            }
+            checkGap();
+        }
+
+        @Override
+        public synchronized void boundChanged(double bound) {
+            this.bound = bound;
+            checkGap();
+        }
+
+        private void checkGap() {
+            if (Double.isNaN(onePercentGapSeconds) && !Double.isNaN(incumbent) && !Double.isNaN(bound)
+                    && incumbent - bound <= 0.01 * Math.abs(incumbent)) {
+                onePercentGapSeconds = elapsedSeconds();
+            }
+        }
+
+        private double elapsedSeconds() {
+            return (System.nanoTime() - start) / 1e9;
+        }
+    }
+
+    /**
+     * Solves an instance with an algorithm and appends the results.
+     * @param engine the algorithm
+     * @param nGenerators G
+     * @param nPeriods T
+     * @throws Exception 
+     */
+    public void run(Engine engine, int nGenerators, int nPeriods) throws Exception {
+        UnitCommitmentProblem problem = new UnitCommitmentInstanceGenerator(seed).generate(nGenerators, nPeriods);
+        resetPeakMemory();
+        ProgressRecorder recorder = new ProgressRecorder();
+        long callbacks = 0;
+        UnitCommitmentSolveResult result;
+        if (engine == Engine.DIRECT) {
+            UnitCommitmentProblemModel model = new UnitCommitmentProblemModel(problem);
+            model.setListener(recorder);
+            model.setTimeLimit(timeLimit);
+            result = model.solve();
+            model.end();
+        } else if (engine == Engine.APPROXIMATE) {
+            // The approximate engine has no callbacks, so its only
+            // incumbent is reported when it returns.
+            UnitCommitmentApproximateSolver solver = new UnitCommitmentApproximateSolver(problem);
+            result = solver.solve();
+            if (result.hasIncumbent()) {
+                recorder.incumbentChanged(result.getObjective());
+                recorder.boundChanged(result.getBestBound());
+            }
+            solver.end();
+        } else {
+            UnitCommitmentBendersMasterProblem master = new UnitCommitmentBendersMasterProblem(problem);
+            if (engine == Engine.BENDERS_PARTIAL) {
+                master.addPartialDecomposition(UnitCommitmentBendersMasterProblem.peakPeriods(problem, Math.max(1, nPeriods/10)));
+            }
+            master.setListener(recorder);
+            master.setTimeLimit(timeLimit);
+            result = master.solve();
+            callbacks = master.getMetrics().snapshot().getCounter(BendersMetrics.Counter.CALLBACKS);
+            master.end();
+        }
+        // The listeners may miss the last incumbent (e.g., the one
+        // accepted by the last callback), so it is taken from the result.
+        double objective = result.getObjective();
+        double totalSeconds = recorder.elapsedSeconds();
+        double optimalSeconds = result.getStatus() == UnitCommitmentSolveResult.Status.OPTIMAL ? totalSeconds : Double.NaN;
+        try (PrintWriter out = new PrintWriter(new FileWriter(resultsFileName, true))) {
+            out.println(label+";"+engine+";"+nGenerators+";"+nPeriods+";"+seed+";"
+                    +recorder.firstIncumbentSeconds+";"+recorder.onePercentGapSeconds+";"+optimalSeconds+";"
+                    +callbacks+";"+peakHeapBytes()+";"+objective);
+        }
+    }
+
+    /**
+     * Writes the header of the results file if it is empty.
+     * @throws IOException 
+     */
+    private void writeHeader() throws IOException {
+        if (new File(resultsFileName).length() == 0) {
+            try (PrintWriter out = new PrintWriter(new FileWriter(resultsFileName, true))) {
+                out.println("label;engine;G;T;seed;firstIncumbentSeconds;onePercentGapSeconds;optimalSeconds;callbacks;peakHeapBytes;objective");
+            }
+        }
+    }
+
+    private static void resetPeakMemory() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String resultsFileName = args.length > 0 ? args[0] : "scaling.csv";
+        String label = args.length > 1 ? args[1] : "current";
+        String sizes[] = (args.length > 2 ? args[2] : "10x24,50x24,100x168,500x168,2000x168").split(",");
+        double timeLimit = args.length > 3 ? Double.parseDouble(args[3]) : 600;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+
+        UnitCommitmentScalingBenchmark benchmark = new UnitCommitmentScalingBenchmark(resultsFileName, label, timeLimit, seed);
+        benchmark.writeHeader();
+        for (String size : sizes) {
+            String parts[] = size.trim().split("x");
+            int nGenerators = Integer.parseInt(parts[0]);
+            int nPeriods = Integer.parseInt(parts[1]);
+            for (Engine engine : Engine.values()) {
+                benchmark.run(engine, nGenerators, nPeriods);
+            }
+        }
+    }
+}
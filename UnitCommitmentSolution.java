@@ -0,0 +1,122 @@
+package UnitCommitment;
+
+/**
+ * An immutable solution of the Unit Commitment Problem:
+ * the on/off status of each generator at each period (u),
+ * the outputs of the generators (p), the load sheds (l)
+ * and the objective value reported by the algorithm that found it.
+ * The startup costs (c) are not stored, since they are determined by u.
+ * @author Luttner
+ */
+public final class UnitCommitmentSolution {
+
+    private final int u[][];
+    private final double p[][];
+    private final double l[];
+    private final double objective;
+
+    /**
+     * Creates a solution. The arrays are copied.
+     * @param u the status of each generator at each period (0 or 1)
+     * @param p the output of each generator at each period
+     * @param l the load shed at each period
+     * @param objective the objective value
+     */
+    public UnitCommitmentSolution(int u[][], double p[][], double l[], double objective) {
+        this.u = new int[u.length][];
+        this.p = new double[p.length][];
+        for (int i = 0; i < u.length; i++) {
+            this.u[i] = u[i].clone();
+        }
+        for (int i = 0; i < p.length; i++) {
+            this.p[i] = p[i].clone();
+        }
+        this.l = l.clone();
+        this.objective = objective;
+    }
+
+    /**
+     * Returns the number of generators.
+     * @return 
+     */
+    public int getNGenerators() {
+        return u.length;
+    }
+
+    /**
+     * Returns the number of periods.
+     * @return 
+     */
+    public int getNPeriods() {
+        return l.length;
+    }
+
+    /**
+     * Returns the status of a generator at a period.
+     * @param generator
+     * @param period
+     * @return 1 if the generator is on, 0 otherwise
+     */
+    public int getU(int generator, int period) {
+        return u[generator][period];
+    }
+
+    /**
+     * Returns the output of a generator at a period.
+     * @param generator
+     * @param period
+     * @return 
+     */
+    public double getP(int generator, int period) {
+        return p[generator][period];
+    }
+
+    /**
+     * Returns the load shed at a period.
+     * @param period
+     * @return 
+     */
+    public double getL(int period) {
+        return l[period];
+    }
+
+    /**
+     * Returns a copy of the status of the generators.
+     * @return U[][]
+     */
+    public int[][] getU() {
+        int copy[][] = new int[u.length][];
+        for (int i = 0; i < u.length; i++) {
+            copy[i] = u[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a copy of the outputs of the generators.
+     * @return P[][]
+     */
+    public double[][] getP() {
+        double copy[][] = new double[p.length][];
+        for (int i = 0; i < p.length; i++) {
+            copy[i] = p[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a copy of the load sheds.
+     * @return L[]
+     */
+    public double[] getL() {
+        return l.clone();
+    }
+
+    /**
+     * Returns the objective value reported by the algorithm.
+     * @return 
+     */
+    public double getObjective() {
+        return objective;
+    }
+}
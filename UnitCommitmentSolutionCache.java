@@ -0,0 +1,494 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A cache on disk of the solutions of Unit Commitment Problems, and of the
+ * cuts generated by the Bender's Decomposition while solving them.
+ * The entries are stored in directory/fleet/instance.ucc, where instance
+ * is a SHA-256 fingerprint of all the data of the problem and fleet is a
+ * fingerprint of all the data except the demands. An instance already
+ * solved is found by its fingerprint. An instance with the same fleet but
+ * other demands is solved starting from the entry of the same fleet whose
+ * demands are the nearest: its status of the generators is used as a MIP
+ * start and its cuts, whose constants are recomputed for the new demands,
+ * are added to the master problem.
+ * The names of the generators are not part of the fingerprints.
+ * @author Luttner
+ */
+public final class UnitCommitmentSolutionCache {
+
+    private static final int MAGIC = 0x55435343;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".ucc";
+
+    private final Path directory;
+    private final int maximumCuts;
+    // Counts the hits, warm starts and misses of solveWithBenders()
+    // and solveDirectly().
+    private final BendersMetrics metrics = new BendersMetrics();
+
+    /**
+     * Creates a cache which keeps at most 200 cuts per entry.
+     * @param directory where the entries are stored (created if needed)
+     * @throws IOException
+     */
+    public UnitCommitmentSolutionCache(Path directory) throws IOException {
+        this(directory, 200);
+    }
+
+    /**
+     * Creates a cache.
+     * @param directory where the entries are stored (created if needed)
+     * @param maximumCuts the maximum number of cuts stored per entry
+     * (the last ones generated are stored)
+     * @throws IOException
+     */
+    public UnitCommitmentSolutionCache(Path directory, int maximumCuts) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maximumCuts = maximumCuts;
+    }
+
+    /**
+     * Returns the fingerprint of all the data of a problem
+     * except the names of the generators.
+     * @param problem
+     * @return a SHA-256 digest, in hexadecimal
+     */
+    public static String fingerprint(UnitCommitmentProblem problem) {
+        MessageDigest digest = fleetDigest(problem);
+        update(digest, problem.getPowerDemands(), problem.getNPeriods());
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns the fingerprint of the fleet of a problem, i.e. all its data
+     * except the demands and the names of the generators.
+     * The cuts of a problem are valid for all the problems with the same
+     * fleet fingerprint.
+     * @param problem
+     * @return a SHA-256 digest, in hexadecimal
+     */
+    public static String fleetFingerprint(UnitCommitmentProblem problem) {
+        return toHex(fleetDigest(problem).digest());
+    }
+
+    /**
+     * Returns the solution of a problem, if it is in the cache.
+     * An entry which cannot be read (truncated, corrupt or written by
+     * another version) is ignored.
+     * @param problem
+     * @return the solution, or null if the problem is not in the cache
+     * @throws IOException
+     */
+    public UnitCommitmentSolution get(UnitCommitmentProblem problem) throws IOException {
+        Path path = directory.resolve(fleetFingerprint(problem)).resolve(fingerprint(problem)+SUFFIX);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return read(path, problem).getSolution();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the entry of the cache with the same fleet as a problem
+     * whose demands are the nearest to those of the problem.
+     * The entries which cannot be read (truncated, corrupt or written by
+     * another version) are skipped.
+     * @param problem
+     * @return the entry, or null if there is no readable entry with the
+     * same fleet
+     * @throws IOException if the directory of the fleet cannot be listed
+     */
+    public Entry getNearest(UnitCommitmentProblem problem) throws IOException {
+        Path fleet = directory.resolve(fleetFingerprint(problem));
+        if (!Files.isDirectory(fleet)) {
+            return null;
+        }
+        List<Path> paths = new ArrayList<>();
+        List<Double> distances = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(fleet, "*"+SUFFIX)) {
+            for (Path path : entries) {
+                double demands[];
+                try (DataInputStream in = open(path)) {
+                    demands = readDemands(in, problem);
+                } catch (IOException e) {
+                    continue;
+                }
+                double distance = 0;
+                for (int j = 0; j < demands.length; j++) {
+                    distance = distance + Math.abs(demands[j] - problem.getPowerDemands()[j]);
+                }
+                paths.add(path);
+                distances.add(distance);
+            }
+        }
+        // The nearest entry whose rest (solution and cuts) can be read.
+        Integer order[] = new Integer[paths.size()];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(distances.get(a), distances.get(b)));
+        for (int k : order) {
+            try {
+                return read(paths.get(k), problem);
+            } catch (IOException e) {
+                // Skipped, like an entry whose header cannot be read.
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores the solution of a problem and, optionally, the cuts generated
+     * while solving it. An entry already stored for the problem is replaced.
+     * @param problem
+     * @param solution
+     * @param cuts the cuts (at most maximumCuts of them are stored,
+     * the last ones), or an empty list
+     * @throws IOException
+     */
+    public void put(UnitCommitmentProblem problem, UnitCommitmentSolution solution, List<BendersCut> cuts) throws IOException {
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        if (solution.getNGenerators() != nGenerators || solution.getNPeriods() != nPeriods) {
+            throw new IllegalArgumentException("The solution does not match the dimensions of the problem");
+        }
+        List<BendersCut> stored = cuts.subList(Math.max(0, cuts.size() - maximumCuts), cuts.size());
+        Path fleet = Files.createDirectories(directory.resolve(fleetFingerprint(problem)));
+        Path path = fleet.resolve(fingerprint(problem)+SUFFIX);
+        // The entry is written to a temporary file and then renamed,
+        // so that a reader never sees an entry partially written.
+        Path temporary = Files.createTempFile(fleet, "entry", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(nGenerators);
+                out.writeInt(nPeriods);
+                for (int j = 0; j < nPeriods; j++) {
+                    out.writeDouble(problem.getPowerDemands()[j]);
+                }
+                writeSolution(out, solution);
+                writeCuts(out, stored);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Returns the metrics of the cache: the problems solved by
+     * solveWithBenders() and solveDirectly() are counted as CACHE_HITS
+     * (found in the cache), CACHE_WARM_STARTS (started from the nearest
+     * entry) or CACHE_MISSES (no entry of the same fleet).
+     * @return the metrics
+     */
+    public BendersMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the counter of a lookup of the cache.
+     */
+    private BendersMetrics.Counter count(UnitCommitmentSolution solution, Entry nearest) {
+        BendersMetrics.Counter counter = solution != null ? BendersMetrics.Counter.CACHE_HITS
+                : nearest != null ? BendersMetrics.Counter.CACHE_WARM_STARTS
+                : BendersMetrics.Counter.CACHE_MISSES;
+        metrics.increment(counter);
+        return counter;
+    }
+
+    /**
+     * Solves a problem with the Bender's Decomposition, unless it is in
+     * the cache. If there is an entry with the same fleet, the nearest one
+     * is used as a MIP start and its cuts are added to the master problem.
+     * The solution and the cuts are then stored in the cache, if the
+     * solution is optimal (not if the solve was stopped by a limit).
+     * The lookup is counted in the metrics of the cache and in those of
+     * the master problem.
+     * @param problem
+     * @return the solution, or null if none has been found
+     * @throws IloException
+     * @throws IOException
+     */
+    public UnitCommitmentSolution solveWithBenders(UnitCommitmentProblem problem) throws IloException, IOException {
+        UnitCommitmentSolution solution = get(problem);
+        if (solution != null) {
+            count(solution, null);
+            return solution;
+        }
+        Entry nearest = getNearest(problem);
+        BendersMetrics.Counter counter = count(null, nearest);
+        UnitCommitmentBendersMasterProblem master = new UnitCommitmentBendersMasterProblem(problem);
+        try {
+            master.getMetrics().increment(counter);
+            master.setKeepCuts(true);
+            if (nearest != null) {
+                master.addCuts(nearest.getCuts());
+                master.addMIPStart(nearest.getSolution());
+            }
+            UnitCommitmentSolveResult result = master.solve();
+            solution = result.hasIncumbent() ? master.getSolution() : null;
+            if (result.getStatus() == UnitCommitmentSolveResult.Status.OPTIMAL) {
+                put(problem, solution, master.getCuts());
+            }
+        } finally {
+            master.end();
+        }
+        return solution;
+    }
+
+    /**
+     * Solves a problem directly, unless it is in the cache. If there is an
+     * entry with the same fleet, the nearest one is used as a MIP start.
+     * The solution is then stored in the cache, if it is optimal, keeping
+     * the cuts of the entry it was started from, if any.
+     * @param problem
+     * @return the solution, or null if none has been found
+     * @throws IloException
+     * @throws IOException
+     */
+    public UnitCommitmentSolution solveDirectly(UnitCommitmentProblem problem) throws IloException, IOException {
+        UnitCommitmentSolution solution = get(problem);
+        if (solution != null) {
+            count(solution, null);
+            return solution;
+        }
+        Entry nearest = getNearest(problem);
+        count(null, nearest);
+        UnitCommitmentProblemModel model = new UnitCommitmentProblemModel(problem);
+        try {
+            if (nearest != null) {
+                model.addMIPStart(nearest.getSolution());
+            }
+            UnitCommitmentSolveResult result = model.optimize();
+            solution = result.hasIncumbent() ? model.getSolution() : null;
+            if (result.getStatus() == UnitCommitmentSolveResult.Status.OPTIMAL) {
+                put(problem, solution, nearest == null ? Collections.<BendersCut>emptyList() : nearest.getCuts());
+            }
+        } finally {
+            model.end();
+        }
+        return solution;
+    }
+
+    /**
+     * An entry of the cache: the demands of a problem, its solution and
+     * the cuts generated while solving it.
+     */
+    public static final class Entry {
+
+        private final double demands[];
+        private final UnitCommitmentSolution solution;
+        private final List<BendersCut> cuts;
+
+        private Entry(double demands[], UnitCommitmentSolution solution, List<BendersCut> cuts) {
+            this.demands = demands;
+            this.solution = solution;
+            this.cuts = Collections.unmodifiableList(cuts);
+        }
+
+        /**
+         * Returns a copy of the demands of the problem.
+         * @return
+         */
+        public double[] getDemands() {
+            return demands.clone();
+        }
+
+        /**
+         * Returns the solution of the problem.
+         * @return
+         */
+        public UnitCommitmentSolution getSolution() {
+            return solution;
+        }
+
+        /**
+         * Returns the cuts generated while solving the problem.
+         * @return
+         */
+        public List<BendersCut> getCuts() {
+            return cuts;
+        }
+    }
+
+    private static DataInputStream open(Path path) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+    }
+
+    /**
+     * Reads the header and the demands of an entry, checking that its
+     * dimensions match those of the problem.
+     */
+    private static double[] readDemands(DataInputStream in, UnitCommitmentProblem problem) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an entry of a solution cache");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version "+version);
+        }
+        int nGenerators = in.readInt();
+        int nPeriods = in.readInt();
+        if (nGenerators != problem.getNGenerators() || nPeriods != problem.getNPeriods()) {
+            throw new IOException("The entry does not match the dimensions of the problem");
+        }
+        double demands[] = new double[nPeriods];
+        for (int j = 0; j < nPeriods; j++) {
+            demands[j] = in.readDouble();
+        }
+        return demands;
+    }
+
+    private static Entry read(Path path, UnitCommitmentProblem problem) throws IOException {
+        try (DataInputStream in = open(path)) {
+            double demands[] = readDemands(in, problem);
+            UnitCommitmentSolution solution = readSolution(in, problem.getNGenerators(), problem.getNPeriods());
+            return new Entry(demands, solution, readCuts(in));
+        }
+    }
+
+    /**
+     * Writes a solution, without its dimensions.
+     * @param out the destination
+     * @param solution
+     * @throws IOException
+     */
+    static void writeSolution(DataOutput out, UnitCommitmentSolution solution) throws IOException {
+        out.writeDouble(solution.getObjective());
+        for (int i = 0; i < solution.getNGenerators(); i++) {
+            for (int j = 0; j < solution.getNPeriods(); j++) {
+                out.writeByte(solution.getU(i, j));
+                out.writeDouble(solution.getP(i, j));
+            }
+        }
+        for (int j = 0; j < solution.getNPeriods(); j++) {
+            out.writeDouble(solution.getL(j));
+        }
+    }
+
+    /**
+     * Reads a solution written by writeSolution().
+     * @param in the source
+     * @param nGenerators
+     * @param nPeriods
+     * @return the solution
+     * @throws IOException
+     */
+    static UnitCommitmentSolution readSolution(DataInput in, int nGenerators, int nPeriods) throws IOException {
+        double objective = in.readDouble();
+        int u[][] = new int[nGenerators][nPeriods];
+        double p[][] = new double[nGenerators][nPeriods];
+        for (int i = 0; i < nGenerators; i++) {
+            for (int j = 0; j < nPeriods; j++) {
+                u[i][j] = in.readByte();
+                p[i][j] = in.readDouble();
+            }
+        }
+        double l[] = new double[nPeriods];
+        for (int j = 0; j < nPeriods; j++) {
+            l[j] = in.readDouble();
+        }
+        return new UnitCommitmentSolution(u, p, l, objective);
+    }
+
+    /**
+     * Writes a list of cuts, preceded by their number.
+     * @param out the destination
+     * @param cuts
+     * @throws IOException
+     */
+    static void writeCuts(DataOutput out, List<BendersCut> cuts) throws IOException {
+        out.writeInt(cuts.size());
+        for (BendersCut cut : cuts) {
+            cut.write(out);
+        }
+    }
+
+    /**
+     * Reads a list of cuts written by writeCuts().
+     * @param in the source
+     * @return the cuts
+     * @throws IOException
+     */
+    static List<BendersCut> readCuts(DataInput in) throws IOException {
+        int nCuts = in.readInt();
+        if (nCuts < 0) {
+            throw new IOException("Invalid number of cuts "+nCuts);
+        }
+        List<BendersCut> cuts = new ArrayList<>(nCuts);
+        for (int k = 0; k < nCuts; k++) {
+            cuts.add(BendersCut.read(in));
+        }
+        return cuts;
+    }
+
+    private static MessageDigest fleetDigest(UnitCommitmentProblem problem) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(nGenerators).putInt(nPeriods);
+        digest.update(header.array());
+        update(digest, problem.getCommitmentCosts(), nGenerators);
+        update(digest, problem.getMarginalCosts(), nGenerators);
+        update(digest, problem.getStartupCosts(), nGenerators);
+        update(digest, problem.getMinimumOutput(), nGenerators);
+        update(digest, problem.getMaximumOutput(), nGenerators);
+        update(digest, problem.getRampUpLimit(), nGenerators);
+        update(digest, problem.getRampDownLimit(), nGenerators);
+        ByteBuffer times = ByteBuffer.allocate(8*nGenerators);
+        for (int i = 0; i < nGenerators; i++) {
+            times.putInt(problem.getMinimumOnTime()[i]).putInt(problem.getMinimumOffTime()[i]);
+        }
+        digest.update(times.array());
+        update(digest, problem.getLoadSheddingCosts(), nPeriods);
+        return digest;
+    }
+
+    private static void update(MessageDigest digest, double values[], int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(8*length);
+        for (int k = 0; k < length; k++) {
+            buffer.putDouble(values[k]);
+        }
+        digest.update(buffer.array());
+    }
+
+    private static String toHex(byte bytes[]) {
+        StringBuilder hex = new StringBuilder(2*bytes.length);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,206 @@
+package UnitCommitment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Verifies a solution of the Unit Commitment Problem in pure Java,
+ * in O(G*T): it checks the constraints 1c to 1i (and the domains of
+ * u, p and l) exactly as they are formulated in UnitCommitmentProblemModel,
+ * and recomputes the objective value. The startup costs are computed
+ * from u as the smallest values satisfying the constraints 1b.
+ * This makes it possible to check every schedule in microseconds
+ * instead of solving the problem again.
+ * @author Luttner
+ */
+public class UnitCommitmentSolutionVerifier {
+
+    // At most this many violations are described in the result.
+    private static final int MAX_DESCRIBED = 100;
+
+    private final double tolerance;
+
+    /**
+     * Creates a verifier with a tolerance of 1e-6.
+     */
+    public UnitCommitmentSolutionVerifier() {
+        this(1e-6);
+    }
+
+    /**
+     * Creates a verifier.
+     * @param tolerance the absolute tolerance of the constraints,
+     * relative for right-hand sides larger than 1 in absolute value
+     */
+    public UnitCommitmentSolutionVerifier(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * The result of the verification of a solution.
+     */
+    public static class Result {
+        private final List<String> violations = new ArrayList<>();
+        private long nViolations;
+        private double maxViolation;
+        private double objective;
+        private double reportedObjective;
+
+        /**
+         * Returns whether all the constraints are satisfied.
+         * @return 
+         */
+        public boolean isFeasible() {
+            return nViolations == 0;
+        }
+
+        /**
+         * Returns the number of violated constraints.
+         * @return 
+         */
+        public long getNViolations() {
+            return nViolations;
+        }
+
+        /**
+         * Returns the descriptions of (up to 100 of) the violated constraints.
+         * @return 
+         */
+        public List<String> getViolations() {
+            return Collections.unmodifiableList(violations);
+        }
+
+        /**
+         * Returns the largest violation of a constraint.
+         * @return 
+         */
+        public double getMaxViolation() {
+            return maxViolation;
+        }
+
+        /**
+         * Returns the objective value recomputed from the solution.
+         * @return 
+         */
+        public double getObjective() {
+            return objective;
+        }
+
+        /**
+         * Returns the difference between the recomputed objective value
+         * and the one reported with the solution.
+         * @return 
+         */
+        public double getObjectiveError() {
+            return objective - reportedObjective;
+        }
+
+        private void violation(String constraint, int generator, int period, double amount) {
+            nViolations++;
+            maxViolation = Math.max(maxViolation, amount);
+            if (violations.size() < MAX_DESCRIBED) {
+                violations.add(constraint+(generator >= 0 ? "_"+generator : "")+"_"+period+" violated by "+amount);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (isFeasible() ? "Feasible" : "Infeasible ("+nViolations+" violations, max "+maxViolation+")")
+                    +", objective "+objective+" (error "+getObjectiveError()+")";
+        }
+    }
+
+    /**
+     * Verifies a solution.
+     * @param problem the problem
+     * @param solution the solution
+     * @return the result of the verification
+     */
+    public Result verify(UnitCommitmentProblem problem, UnitCommitmentSolution solution) {
+        int nGenerators = problem.getNGenerators();
+        int nPeriods = problem.getNPeriods();
+        Result result = new Result();
+        result.reportedObjective = solution.getObjective();
+        if (solution.getNGenerators() != nGenerators || solution.getNPeriods() != nPeriods) {
+            throw new IllegalArgumentException("The solution has "+solution.getNGenerators()+"x"+solution.getNPeriods()
+                    +" values, the problem "+nGenerators+"x"+nPeriods);
+        }
+
+        double startupCosts[] = problem.getStartupCosts();
+        double commitmentCosts[] = problem.getCommitmentCosts();
+        double marginalCosts[] = problem.getMarginalCosts();
+        int minimumOnTime[] = problem.getMinimumOnTime();
+        int minimumOffTime[] = problem.getMinimumOffTime();
+        double minimumOutput[] = problem.getMinimumOutput();
+        double maximumOutput[] = problem.getMaximumOutput();
+        double rampUpLimit[] = problem.getRampUpLimit();
+        double rampDownLimit[] = problem.getRampDownLimit();
+
+        double objective = 0;
+        // prefix[t] = u[i][0] + ... + u[i][t-1], which gives the sums of the
+        // minimum on and off time constraints in O(1).
+        int prefix[] = new int[nPeriods + 1];
+        double supplied[] = new double[nPeriods];
+        for (int i = 0; i < nGenerators; i++) {
+            for (int j = 0; j < nPeriods; j++) {
+                int u = solution.getU(i, j);
+                if (u != 0 && u != 1) {
+                    result.violation("Binary", i, j, Math.abs(u));
+                }
+                prefix[j + 1] = prefix[j] + u;
+            }
+            for (int j = 0; j < nPeriods; j++) {
+                int u = solution.getU(i, j);
+                int previousU = j > 0 ? solution.getU(i, j - 1) : 0;
+                double p = solution.getP(i, j);
+                double previousP = j > 0 ? solution.getP(i, j - 1) : 0;
+
+                // Constraints 1b: the cheapest startup cost
+                double c = Math.max(0, startupCosts[i] * (u - previousU));
+                objective += c + commitmentCosts[i] * u + marginalCosts[i] * p;
+
+                // Constraints 1c: Minimum ontime constraints
+                int onEnd = Math.min(j + minimumOnTime[i], nPeriods);
+                double lhs = (prefix[onEnd] - prefix[j]) - (onEnd - j) * (u - previousU);
+                check(result, "MinimumOntime", i, j, -lhs, 0);
+
+                // Constraints 1d: Minimum offtime constraints
+                int offEnd = Math.min(j + minimumOffTime[i], nPeriods);
+                lhs = -(prefix[offEnd] - prefix[j]) + (offEnd - j) * (u - previousU);
+                check(result, "MinimumOffTime", i, j, j - offEnd - 1 - lhs, j - offEnd - 1);
+
+                // Domain of p, and constraints 1f and 1g: minimum and maximum output
+                check(result, "NonNegativeOutput", i, j, -p, 0);
+                check(result, "MinimumOutput", i, j, u * minimumOutput[i] - p, u * minimumOutput[i]);
+                check(result, "MaximumOutput", i, j, p - u * maximumOutput[i], u * maximumOutput[i]);
+
+                // Constraints 1h and 1i: maximum ramp-up and ramp-down
+                check(result, "MaximumRampUp", i, j, p - previousP - rampUpLimit[i], rampUpLimit[i]);
+                check(result, "MaximumRampDown", i, j, previousP - p - rampDownLimit[i], rampDownLimit[i]);
+
+                supplied[j] += p;
+            }
+        }
+        for (int j = 0; j < nPeriods; j++) {
+            double l = solution.getL(j);
+            objective += problem.getLoadSheddingCosts()[j] * l;
+            check(result, "NonNegativeLoadShed", -1, j, -l, 0);
+            // Constraints 1e: Power balance constraints
+            double demand = problem.getPowerDemands()[j];
+            check(result, "PowerBalance", -1, j, Math.abs(supplied[j] + l - demand), demand);
+        }
+        result.objective = objective;
+        return result;
+    }
+
+    /**
+     * Records a violation if a constraint lhs <= rhs, written as
+     * excess = lhs - rhs <= 0, is violated by more than the tolerance.
+     */
+    private void check(Result result, String constraint, int generator, int period, double excess, double rhs) {
+        if (excess > tolerance * Math.max(1, Math.abs(rhs))) {
+            result.violation(constraint, generator, period, excess);
+        }
+    }
+}
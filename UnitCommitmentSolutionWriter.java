@@ -0,0 +1,183 @@
+package UnitCommitment;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the solutions of the Unit Commitment Problem (outputs of the
+ * generators, load sheds and objective value) to any destination.
+ * The text formats are built in memory row by row and handed to the
+ * Writer in large chunks, and the binary format is written through a
+ * FileChannel, so that no I/O is done per (generator, period) cell.
+ * The values must be fetched beforehand (see getP() and getL() of the
+ * models), which lets the models fetch them in bulk.
+ * @author Luttner
+ */
+public final class UnitCommitmentSolutionWriter {
+
+    private static final int MAGIC = 0x55435053;
+    private static final int VERSION = 1;
+
+    private UnitCommitmentSolutionWriter() {
+    }
+
+    /**
+     * Returns a Writer to the standard output. The methods of this class
+     * flush it, but it must not be closed.
+     * @return the writer
+     */
+    public static Writer standardOutput() {
+        return new OutputStreamWriter(System.out);
+    }
+
+    /**
+     * Writes the solution in CSV: one line with the load sheds,
+     * one line per generator with its outputs, and the objective value.
+     * The Writer is flushed but not closed.
+     * @param out the destination
+     * @param problem the problem
+     * @param p the output of each generator at each period
+     * @param l the load shed at each period
+     * @param objective the objective value
+     * @throws IOException 
+     */
+    public static void writeCSV(Writer out, UnitCommitmentProblem problem, double p[][], double l[], double objective) throws IOException {
+        StringBuilder line = new StringBuilder(32 * (problem.getNPeriods() + 1));
+        line.append("Load Shed; ");
+        for (int j = 0; j < problem.getNPeriods(); j++) {
+            line.append(l[j]).append("; ");
+        }
+        line.append(System.lineSeparator());
+        out.append(line);
+        for (int i = 0; i < problem.getNGenerators(); i++) {
+            line.setLength(0);
+            line.append(problem.getGeneratorNames()[i]).append("; ");
+            for (int j = 0; j < problem.getNPeriods(); j++) {
+                line.append(p[i][j]).append("; ");
+            }
+            line.append(System.lineSeparator());
+            out.append(line);
+        }
+        out.append("Optimal value: ").append(Double.toString(objective)).append(System.lineSeparator());
+        out.flush();
+    }
+
+    /**
+     * Writes a solution in CSV.
+     * @param out the destination
+     * @param problem the problem
+     * @param solution the solution
+     * @throws IOException 
+     */
+    public static void writeCSV(Writer out, UnitCommitmentProblem problem, UnitCommitmentSolution solution) throws IOException {
+        writeCSV(out, problem, solution.getP(), solution.getL(), solution.getObjective());
+    }
+
+    /**
+     * Writes the solution in a human-readable layout, five periods
+     * per line. The Writer is flushed but not closed.
+     * @param out the destination
+     * @param problem the problem
+     * @param p the output of each generator at each period
+     * @param l the load shed at each period
+     * @param objective the objective value
+     * @throws IOException 
+     */
+    public static void writeText(Writer out, UnitCommitmentProblem problem, double p[][], double l[], double objective) throws IOException {
+        String newLine = System.lineSeparator();
+        StringBuilder text = new StringBuilder(32 * (problem.getNPeriods() + 4));
+        text.append("Solution: ").append(newLine);
+        text.append("Load Shedding:").append(newLine);
+        appendRow(text, l, problem.getNPeriods());
+        out.append(text);
+        for (int i = 0; i < problem.getNGenerators(); i++) {
+            text.setLength(0);
+            text.append("Power outputs for generator ").append(problem.getGeneratorNames()[i]).append(newLine);
+            appendRow(text, p[i], problem.getNPeriods());
+            out.append(text);
+        }
+        out.append("Optimal value: ").append(Double.toString(objective)).append(newLine);
+        out.flush();
+    }
+
+    private static void appendRow(StringBuilder text, double values[], int nPeriods) {
+        String newLine = System.lineSeparator();
+        for (int j = 0; j < nPeriods; j++) {
+            text.append('T').append(j).append(": ").append(values[j]).append("   ");
+            if (j % 5 == 4) {
+                text.append(newLine);
+            }
+        }
+        text.append(newLine).append(newLine);
+    }
+
+    /**
+     * Writes the solution in a binary format: a header (magic number,
+     * version, G, T, objective value) followed by the load sheds and then
+     * the outputs, generator by generator, as little-endian doubles.
+     * @param path the destination file
+     * @param problem the problem
+     * @param p the output of each generator at each period
+     * @param l the load shed at each period
+     * @param objective the objective value
+     * @throws IOException 
+     */
+    public static void writeBinary(Path path, UnitCommitmentProblem problem, double p[][], double l[], double objective) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeBinary(channel, problem, p, l, objective);
+        }
+    }
+
+    /**
+     * Writes a solution in the binary format.
+     * @param path the destination file
+     * @param problem the problem
+     * @param solution the solution
+     * @throws IOException 
+     */
+    public static void writeBinary(Path path, UnitCommitmentProblem problem, UnitCommitmentSolution solution) throws IOException {
+        writeBinary(path, problem, solution.getP(), solution.getL(), solution.getObjective());
+    }
+
+    /**
+     * Writes the solution in the binary format to a channel.
+     * @param channel the destination
+     * @param problem the problem
+     * @param p the output of each generator at each period
+     * @param l the load shed at each period
+     * @param objective the objective value
+     * @throws IOException 
+     */
+    public static void writeBinary(FileChannel channel, UnitCommitmentProblem problem, double p[][], double l[], double objective) throws IOException {
+        int nPeriods = problem.getNPeriods();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(24, 8 * nPeriods) + (1 << 16)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(problem.getNGenerators()).putInt(nPeriods).putDouble(objective);
+        putRow(channel, buffer, l, nPeriods);
+        for (int i = 0; i < problem.getNGenerators(); i++) {
+            putRow(channel, buffer, p[i], nPeriods);
+        }
+        flush(channel, buffer);
+    }
+
+    private static void putRow(FileChannel channel, ByteBuffer buffer, double row[], int nPeriods) throws IOException {
+        if (buffer.remaining() < 8 * nPeriods) {
+            flush(channel, buffer);
+        }
+        buffer.asDoubleBuffer().put(row, 0, nPeriods);
+        buffer.position(buffer.position() + 8 * nPeriods);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
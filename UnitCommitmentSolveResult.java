@@ -0,0 +1,155 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+
+/**
+ * The outcome of solving a Unit Commitment Problem, which may have been
+ * stopped by a termination criterion (gap, time or node limit) before
+ * proving optimality: the objective of the incumbent, the best bound
+ * and the gap between them.
+ * @author Luttner
+ */
+public final class UnitCommitmentSolveResult {
+
+    /**
+     * How the solve ended.
+     */
+    public enum Status {
+        /** The incumbent is optimal, within the gap tolerances. */
+        OPTIMAL,
+        /** A termination criterion was met before proving optimality. */
+        FEASIBLE,
+        /** The problem has no solution. */
+        INFEASIBLE,
+        /** A termination criterion was met before finding a solution. */
+        UNKNOWN
+    }
+
+    private final Status status;
+    private final double objective;
+    private final double bestBound;
+    private final long nodes;
+    private final double seconds;
+
+    /**
+     * Creates a result.
+     * @param status
+     * @param objective the objective of the incumbent (NaN if none)
+     * @param bestBound the best bound
+     * @param nodes the number of nodes explored
+     * @param seconds the wall-clock time of the solve
+     */
+    public UnitCommitmentSolveResult(Status status, double objective, double bestBound, long nodes, double seconds) {
+        this.status = status;
+        this.objective = objective;
+        this.bestBound = bestBound;
+        this.nodes = nodes;
+        this.seconds = seconds;
+    }
+
+    /**
+     * Creates the result of a solve from the IloCplex object which ran it.
+     * @param model
+     * @param seconds the wall-clock time of the solve
+     * @return the result
+     * @throws IloException
+     */
+    static UnitCommitmentSolveResult of(IloCplex model, double seconds) throws IloException {
+        IloCplex.Status cplexStatus = model.getStatus();
+        Status status;
+        if (cplexStatus == IloCplex.Status.Optimal) {
+            status = Status.OPTIMAL;
+        } else if (cplexStatus == IloCplex.Status.Feasible) {
+            status = Status.FEASIBLE;
+        } else if (cplexStatus == IloCplex.Status.Infeasible) {
+            status = Status.INFEASIBLE;
+        } else {
+            status = Status.UNKNOWN;
+        }
+        boolean hasIncumbent = status == Status.OPTIMAL || status == Status.FEASIBLE;
+        double objective = hasIncumbent ? model.getObjValue() : Double.NaN;
+        double bestBound;
+        if (status == Status.INFEASIBLE) {
+            bestBound = Double.NaN;
+        } else if (model.isMIP()) {
+            bestBound = model.getBestObjValue();
+        } else {
+            // The objective of an LP solved to optimality is its bound.
+            bestBound = objective;
+        }
+        long nodes = model.isMIP() ? model.getNnodes64() : 0;
+        return new UnitCommitmentSolveResult(status, objective, bestBound, nodes, seconds);
+    }
+
+    /**
+     * Returns how the solve ended.
+     * @return
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns whether a solution was found.
+     * @return
+     */
+    public boolean hasIncumbent() {
+        return status == Status.OPTIMAL || status == Status.FEASIBLE;
+    }
+
+    /**
+     * Returns the objective of the incumbent.
+     * @return the objective, or NaN if no solution was found
+     */
+    public double getObjective() {
+        return objective;
+    }
+
+    /**
+     * Returns the best bound, i.e. a lower bound on the optimal objective.
+     * @return
+     */
+    public double getBestBound() {
+        return bestBound;
+    }
+
+    /**
+     * Returns the absolute gap between the incumbent and the best bound.
+     * @return the gap, or infinity if no solution was found
+     */
+    public double getAbsoluteGap() {
+        return hasIncumbent() ? Math.max(0, objective - bestBound) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the relative gap between the incumbent and the best bound,
+     * computed as Cplex does: |objective - bound| / (1e-10 + |objective|).
+     * @return the gap, or infinity if no solution was found
+     */
+    public double getGap() {
+        return hasIncumbent() ? getAbsoluteGap()/(1e-10 + Math.abs(objective)) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the number of nodes explored.
+     * @return
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the wall-clock time of the solve.
+     * @return the time, in seconds
+     */
+    public double getSeconds() {
+        return seconds;
+    }
+
+    @Override
+    public String toString() {
+        return status+" objective="+objective+" bound="+bestBound+" gap="+getGap()
+                +" nodes="+nodes+" seconds="+seconds;
+    }
+}
@@ -0,0 +1,511 @@
+package UnitCommitment;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ilog.concert.IloException;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-running local service solving the instances posted to it over
+ * HTTP, so that the instances do not pay the start-up of a JVM and of
+ * Cplex each.
+ * The requests are read and answered by cheap threads (virtual threads
+ * when the JVM has them), while the solves run on a fixed number of
+ * solver threads, since each solve uses the cores of its own Cplex.
+ * The cores are divided between the solver threads, so that the solves
+ * running at the same time do not compete for all of them.
+ * The solves wait in a bounded queue: when it is full, the request is
+ * rejected at once with 503 (Service Unavailable) rather than waiting
+ * for an unbounded time.
+ * The requests are not authenticated, so the service only listens on the
+ * loopback interface unless another address is given, and their bodies
+ * are limited in size (413, Payload Too Large, beyond 64MB by default).
+ * The service answers two requests:
+ * POST /solve?engine=benders|direct|approximate&amp;loadSheddingCost=46
+ * with the instance as body, either a binary instance (Content-Type
+ * application/octet-stream, see UnitCommitmentBinaryFormat) or the text
+ * of the generators file and of the loads file separated by a line "--"
+ * (see UnitCommitmentProblemReader). The answer is streamed as lines of
+ * text while the job progresses: "queued", "started", "incumbent x" and
+ * "bound y", "result ..." and finally the solution in CSV
+ * (see UnitCommitmentSolutionWriter), or "error ...".
+ * GET /metrics returns the depth of the queue, the counts of the jobs and
+ * the latencies of the queue and of the solves in JSON.
+ * Usage: UnitCommitmentSolveService [-bind address] port solvers queueCapacity timeLimit
+ * @author Luttner
+ */
+public class UnitCommitmentSolveService implements Closeable {
+
+    /**
+     * The engines which can solve a job.
+     */
+    public enum Engine {
+        DIRECT,
+        BENDERS,
+        APPROXIMATE
+    }
+
+    // The line ending the events of a job.
+    private static final String END = "end";
+    private static final int DEFAULT_MAXIMUM_BODY_SIZE = 64 << 20;
+
+    private final HttpServer server;
+    private final ExecutorService clients;
+    private final ThreadPoolExecutor solvers;
+    private final int queueCapacity;
+    private final double timeLimit;
+    // The threads of Cplex of each solve.
+    private final int threadsPerSolver;
+    private volatile int maximumBodySize = DEFAULT_MAXIMUM_BODY_SIZE;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram solveLatency = new LatencyHistogram();
+
+    /**
+     * A problem waiting to be solved, or being solved. It receives the
+     * events of the solve and passes them, as lines, to the thread
+     * answering the request.
+     */
+    private static class Job implements SolveListener {
+        final UnitCommitmentProblem problem;
+        final Engine engine;
+        final long submitted = System.nanoTime();
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        // Set when the client has gone before the solve started.
+        volatile boolean abandoned;
+
+        Job(UnitCommitmentProblem problem, Engine engine) {
+            this.problem = problem;
+            this.engine = engine;
+        }
+
+        @Override
+        public void incumbentChanged(double objective) {
+            events.add("incumbent "+objective);
+        }
+
+        @Override
+        public void boundChanged(double bound) {
+            events.add("bound "+bound);
+        }
+    }
+
+    /**
+     * Creates the service listening on a port of the loopback interface,
+     * which is started by start().
+     * @param port the port, or 0 for any free port
+     * @param nSolvers the number of solves running at the same time
+     * @param queueCapacity the number of jobs which may wait for a solver
+     * @param timeLimit the time limit of each solve, in seconds
+     * @throws IOException
+     */
+    public UnitCommitmentSolveService(int port, int nSolvers, int queueCapacity, double timeLimit) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, nSolvers, queueCapacity, timeLimit);
+    }
+
+    /**
+     * Creates the service, which is started by start().
+     * @param bindAddress the address of the interface to listen on
+     * @param port the port, or 0 for any free port
+     * @param nSolvers the number of solves running at the same time
+     * @param queueCapacity the number of jobs which may wait for a solver
+     * @param timeLimit the time limit of each solve, in seconds
+     * @throws IOException
+     */
+    public UnitCommitmentSolveService(InetAddress bindAddress, int port, int nSolvers, int queueCapacity, double timeLimit) throws IOException {
+        this.queueCapacity = queueCapacity;
+        this.timeLimit = timeLimit;
+        this.threadsPerSolver = Math.max(1, Runtime.getRuntime().availableProcessors()/nSolvers);
+        this.solvers = new ThreadPoolExecutor(nSolvers, nSolvers, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads("solve-service-solver"));
+        this.clients = clientExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.setExecutor(clients);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Returns an executor running each task in a new virtual thread, if
+     * the JVM has them (Java 21), and otherwise in a pooled thread.
+     * The threads answering the requests spend their time waiting for the
+     * client and for the solve, so virtual threads cost almost nothing.
+     */
+    private static ExecutorService clientExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonThreads("solve-service-client"));
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Sets the largest body of a request, in bytes. The default is 64MB.
+     * @param bytes
+     */
+    public void setMaximumBodySize(int bytes) {
+        this.maximumBodySize = bytes;
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the service listens on.
+     * @return
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of jobs waiting for a solver.
+     * @return
+     */
+    public int getQueueDepth() {
+        return solvers.getQueue().size();
+    }
+
+    /**
+     * Answers POST /solve: reads the instance, queues the job and streams
+     * its events until the solve ends.
+     */
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Use POST");
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+            Job job;
+            try {
+                Engine engine = Engine.valueOf(parameters.getOrDefault("engine", "benders").toUpperCase());
+                double loadSheddingCost = Double.parseDouble(parameters.getOrDefault("loadSheddingCost", "46"));
+                byte body[] = readBody(exchange);
+                if (body == null) {
+                    sendText(exchange, 413, "The instance is larger than "+maximumBodySize+" bytes");
+                    return;
+                }
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                UnitCommitmentProblem problem = contentType != null && contentType.startsWith("application/octet-stream")
+                        ? readBinary(body)
+                        : readText(body, loadSheddingCost);
+                job = new Job(problem, engine);
+            } catch (IOException | RuntimeException ex) {
+                // A corrupt instance may fail in other ways than those
+                // checked by the readers: the client is answered anyway.
+                sendText(exchange, 400, "Bad instance: "+ex.getMessage());
+                return;
+            }
+
+            // Admission control: the job is refused at once if the
+            // queue is full.
+            Future<?> future;
+            try {
+                future = solvers.submit(() -> solve(job));
+            } catch (RejectedExecutionException ex) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendText(exchange, 503, "The queue is full");
+                return;
+            }
+            accepted.incrementAndGet();
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8);
+            try {
+                out.write("queued "+getQueueDepth()+"\n");
+                out.flush();
+                for (String event = job.events.take(); !END.equals(event); event = job.events.take()) {
+                    out.write(event);
+                    out.write('\n');
+                    // The events are sent as they come, except when
+                    // more are already waiting.
+                    if (job.events.isEmpty()) {
+                        out.flush();
+                    }
+                }
+                out.flush();
+            } catch (IOException ex) {
+                // The client has gone: the job is dropped if it has not
+                // started yet (a solve which has started runs to its end).
+                abandon(job, future);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                abandon(job, future);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the body of a request, up to the maximum size.
+     * @return the body, or null if it is larger than the maximum size
+     */
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        int limit = maximumBodySize;
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            try {
+                if (Long.parseLong(length.trim()) > limit) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                // The length is checked while reading.
+            }
+        }
+        byte body[] = exchange.getRequestBody().readNBytes(limit);
+        if (body.length == limit && exchange.getRequestBody().read() >= 0) {
+            return null;
+        }
+        return body;
+    }
+
+    /**
+     * Drops a job whose client has gone, if its solve has not started.
+     */
+    private void abandon(Job job, Future<?> future) {
+        job.abandoned = true;
+        if (future.cancel(false)) {
+            cancelled.incrementAndGet();
+        }
+    }
+
+    /**
+     * Solves a job on a solver thread.
+     */
+    private void solve(Job job) {
+        long started = System.nanoTime();
+        queueLatency.record(started - job.submitted);
+        if (job.abandoned) {
+            cancelled.incrementAndGet();
+            return;
+        }
+        running.incrementAndGet();
+        job.events.add("started");
+        try {
+            UnitCommitmentSolveResult result;
+            UnitCommitmentSolution solution = null;
+            switch (job.engine) {
+                case DIRECT: {
+                    UnitCommitmentProblemModel model = new UnitCommitmentProblemModel(job.problem);
+                    try {
+                        model.setListener(job);
+                        model.setThreads(threadsPerSolver);
+                        model.setTimeLimit(timeLimit);
+                        result = model.optimize();
+                        if (result.hasIncumbent()) {
+                            solution = model.getSolution();
+                        }
+                    } finally {
+                        model.end();
+                    }
+                    break;
+                }
+                case BENDERS: {
+                    UnitCommitmentBendersMasterProblem master = new UnitCommitmentBendersMasterProblem(job.problem);
+                    try {
+                        master.setListener(job);
+                        master.setThreads(threadsPerSolver);
+                        master.setTimeLimit(timeLimit);
+                        result = master.solve();
+                        if (result.hasIncumbent()) {
+                            solution = master.getSolution();
+                        }
+                    } finally {
+                        master.end();
+                    }
+                    break;
+                }
+                default: {
+                    UnitCommitmentApproximateSolver solver = new UnitCommitmentApproximateSolver(job.problem);
+                    try {
+                        solver.setThreads(threadsPerSolver);
+                        result = solver.solve();
+                        if (result.hasIncumbent()) {
+                            solution = solver.getSolution();
+                        }
+                    } finally {
+                        solver.end();
+                    }
+                }
+            }
+            job.events.add("result "+result);
+            if (solution != null) {
+                StringWriter csv = new StringWriter();
+                UnitCommitmentSolutionWriter.writeCSV(csv, job.problem, solution);
+                job.events.add(csv.toString().trim());
+            }
+            completed.incrementAndGet();
+        } catch (IloException | IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            job.events.add("error "+e.getMessage());
+        } finally {
+            running.decrementAndGet();
+            solveLatency.record(System.nanoTime() - started);
+            job.events.add(END);
+        }
+    }
+
+    /**
+     * Answers GET /metrics.
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            byte body[] = metricsJson().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the metrics of the service as a JSON object.
+     * @return
+     */
+    public String metricsJson() {
+        return "{\"solvers\":"+solvers.getMaximumPoolSize()
+                +",\"queueCapacity\":"+queueCapacity
+                +",\"queueDepth\":"+getQueueDepth()
+                +",\"running\":"+running.get()
+                +",\"accepted\":"+accepted.get()
+                +",\"rejected\":"+rejected.get()
+                +",\"completed\":"+completed.get()
+                +",\"failed\":"+failed.get()
+                +",\"cancelled\":"+cancelled.get()
+                +",\"queueLatency\":"+queueLatency.snapshot().toJson()
+                +",\"solveLatency\":"+solveLatency.snapshot().toJson()+"}";
+    }
+
+    private static void sendText(HttpExchange exchange, int code, String text) throws IOException {
+        byte body[] = (text+"\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Reads the text of the generators file and of the loads file,
+     * separated by a line "--".
+     */
+    private static UnitCommitmentProblem readText(byte body[], double loadSheddingCost) throws IOException {
+        String text = new String(body, StandardCharsets.UTF_8);
+        int separator = text.indexOf("\n--");
+        if (separator < 0) {
+            throw new IOException("No line -- between the generators and the loads");
+        }
+        int loads = text.indexOf('\n', separator + 1);
+        byte generators[] = text.substring(0, separator + 1).getBytes(StandardCharsets.UTF_8);
+        byte demands[] = (loads < 0 ? "" : text.substring(loads + 1)).getBytes(StandardCharsets.UTF_8);
+        return new UnitCommitmentProblem(UnitCommitmentProblemReader.read(
+                new ByteArrayInputStream(generators), new ByteArrayInputStream(demands), loadSheddingCost));
+    }
+
+    /**
+     * Reads a binary instance. The format is read from a mapped file,
+     * so the body goes through a temporary file.
+     */
+    private static UnitCommitmentProblem readBinary(byte body[]) throws IOException {
+        Path path = Files.createTempFile("instance", ".ucb");
+        try {
+            Files.write(path, body);
+            return UnitCommitmentBinaryFormat.read(path);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Stops accepting requests. The jobs already accepted are still
+     * solved, but their answers are lost if their clients are closed.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        solvers.shutdown();
+        clients.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        InetAddress bindAddress = InetAddress.getLoopbackAddress();
+        if (args.length > 1 && args[0].equals("-bind")) {
+            bindAddress = InetAddress.getByName(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length != 4) {
+            System.err.println("Usage: UnitCommitmentSolveService [-bind address] port solvers queueCapacity timeLimit");
+            System.exit(2);
+        }
+        UnitCommitmentSolveService service = new UnitCommitmentSolveService(bindAddress, Integer.parseInt(args[0]),
+                Integer.parseInt(args[1]), Integer.parseInt(args[2]), Double.parseDouble(args[3]));
+        service.start();
+        System.out.println("Listening on "+bindAddress.getHostAddress()+" port "+service.getPort());
+    }
+}
@@ -0,0 +1,276 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+import java.util.Arrays;
+
+/**
+ * Solves a Unit Commitment Problem with a long horizon in two steps.
+ * First, the periods are grouped in consecutive blocks of L periods,
+ * and a reduced problem with one period per block is solved.
+ * Then the commitment of the reduced problem, expanded to the original
+ * periods, is given as a MIP start to the problem at full resolution.
+ * Since the problem has the same costs at every period, the blocks all
+ * have the same length, so that each of them weighs in the objective as
+ * its L periods: the demand and the load shedding cost of a block are the
+ * means of those of its periods, the ramp limits are multiplied by L, the
+ * minimum on-times and off-times are divided by L (rounded up, so that the
+ * expanded commitment respects them) and the startup costs are divided by
+ * L, so that they weigh against the costs per period as over L periods.
+ * Only the last block may be shorter, if L does not divide the number of
+ * periods. The reduced problem is still an approximation (the dispatch is
+ * the same within a block), so the expanded commitment is evaluated at
+ * full resolution (see getStartResult()), and the MIP start is repaired
+ * by Cplex if it is not feasible.
+ * @author Luttner
+ */
+public class UnitCommitmentTemporalAggregation {
+
+    private final UnitCommitmentProblem problem;
+    // The first period of each block, and nPeriods at the end.
+    private final int blockStart[];
+    private final UnitCommitmentProblem aggregatedProblem;
+
+    // The termination criteria of the two solves (NaN for the defaults
+    // of Cplex). The time limit is shared: the reduced problem may take
+    // at most aggregatedTimeShare of it, and the solve at full resolution
+    // takes the rest.
+    private double relativeGap = Double.NaN;
+    private double timeLimit = Double.NaN;
+    private double aggregatedTimeShare = 0.25;
+
+    private UnitCommitmentSolution solution;
+    private UnitCommitmentSolveResult aggregatedResult;
+    private UnitCommitmentSolveResult startResult;
+
+    /**
+     * Groups the periods of a problem in blocks of blockLength periods.
+     * @param problem
+     * @param blockLength L, e.g. 4 to solve a week of hours as 42 periods
+     */
+    public UnitCommitmentTemporalAggregation(UnitCommitmentProblem problem, int blockLength) {
+        if (blockLength < 1) {
+            throw new IllegalArgumentException("Invalid block length "+blockLength);
+        }
+        this.problem = problem;
+        int nPeriods = problem.getNPeriods();
+        int nBlocks = (nPeriods + blockLength - 1)/blockLength;
+        this.blockStart = new int[nBlocks + 1];
+        for (int b = 0; b < nBlocks; b++) {
+            blockStart[b] = b*blockLength;
+        }
+        blockStart[nBlocks] = nPeriods;
+        this.aggregatedProblem = aggregate(blockLength);
+    }
+
+    /**
+     * Builds the reduced problem, with one period per block.
+     * @param length the length of the blocks (L)
+     */
+    private UnitCommitmentProblem aggregate(int length) {
+        int nGenerators = problem.getNGenerators();
+        int nBlocks = getNBlocks();
+
+        double demands[] = new double[nBlocks];
+        double loadSheddingCosts[] = new double[nBlocks];
+        for (int b = 0; b < nBlocks; b++) {
+            for (int j = blockStart[b]; j < blockStart[b+1]; j++) {
+                demands[b] = demands[b] + problem.getPowerDemands()[j];
+                loadSheddingCosts[b] = loadSheddingCosts[b] + problem.getLoadSheddingCosts()[j];
+            }
+            demands[b] = demands[b]/getBlockLength(b);
+            loadSheddingCosts[b] = loadSheddingCosts[b]/getBlockLength(b);
+        }
+
+        double startupCosts[] = new double[nGenerators];
+        int minimumOnTime[] = new int[nGenerators];
+        int minimumOffTime[] = new int[nGenerators];
+        double rampUpLimit[] = new double[nGenerators];
+        double rampDownLimit[] = new double[nGenerators];
+        for (int i = 0; i < nGenerators; i++) {
+            startupCosts[i] = problem.getStartupCosts()[i]/length;
+            minimumOnTime[i] = (problem.getMinimumOnTime()[i] + length - 1)/length;
+            minimumOffTime[i] = (problem.getMinimumOffTime()[i] + length - 1)/length;
+            rampUpLimit[i] = problem.getRampUpLimit()[i]*length;
+            rampDownLimit[i] = problem.getRampDownLimit()[i]*length;
+        }
+        return new UnitCommitmentProblem(nGenerators, nBlocks, problem.getCommitmentCosts(), problem.getMarginalCosts(),
+                startupCosts, minimumOnTime, minimumOffTime, problem.getMinimumOutput(), problem.getMaximumOutput(),
+                rampUpLimit, rampDownLimit, problem.getGeneratorNames(), loadSheddingCosts, demands);
+    }
+
+    /**
+     * Returns the number of blocks, i.e. of periods of the reduced problem.
+     * @return
+     */
+    public int getNBlocks() {
+        return blockStart.length - 1;
+    }
+
+    /**
+     * Returns the first period of a block.
+     * @param block
+     * @return
+     */
+    public int getBlockStart(int block) {
+        return blockStart[block];
+    }
+
+    /**
+     * Returns the number of periods of a block.
+     * @param block
+     * @return
+     */
+    public int getBlockLength(int block) {
+        return blockStart[block+1] - blockStart[block];
+    }
+
+    /**
+     * Returns the reduced problem, with one period per block.
+     * @return
+     */
+    public UnitCommitmentProblem getAggregatedProblem() {
+        return aggregatedProblem;
+    }
+
+    /**
+     * Expands a status of the generators of the reduced problem to the
+     * periods of the original problem: each period takes the status of
+     * its block.
+     * @param U the status of each generator at each block
+     * @return the status of each generator at each period
+     */
+    public int[][] expand(int U[][]) {
+        int expanded[][] = new int[U.length][problem.getNPeriods()];
+        for (int i = 0; i < U.length; i++) {
+            for (int b = 0; b < getNBlocks(); b++) {
+                Arrays.fill(expanded[i], blockStart[b], blockStart[b+1], U[i][b]);
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Sets the relative gap at which the solves of the reduced problem
+     * and of the problem at full resolution stop.
+     * @param gap
+     */
+    public void setRelativeGap(double gap) {
+        this.relativeGap = gap;
+    }
+
+    /**
+     * Sets a limit on the time spent by solve(), for both solves: the
+     * reduced problem is given a share of it (see setAggregatedTimeShare())
+     * and the problem at full resolution the time left.
+     * @param seconds
+     */
+    public void setTimeLimit(double seconds) {
+        this.timeLimit = seconds;
+    }
+
+    /**
+     * Sets the share of the time limit which the solve of the reduced
+     * problem may take. The default is 0.25.
+     * @param share between 0 and 1
+     */
+    public void setAggregatedTimeShare(double share) {
+        if (!(share > 0 && share < 1)) {
+            throw new IllegalArgumentException("Invalid share "+share);
+        }
+        this.aggregatedTimeShare = share;
+    }
+
+    /**
+     * Solves the reduced problem, evaluates its expanded commitment at
+     * full resolution, and then solves the problem at full resolution
+     * starting from it.
+     * @return the result of the solve at full resolution
+     * @throws IloException
+     */
+    public UnitCommitmentSolveResult solve() throws IloException {
+        long begin = System.nanoTime();
+        int start[][] = null;
+        UnitCommitmentProblemModel reduced = new UnitCommitmentProblemModel(aggregatedProblem);
+        try {
+            if (!Double.isNaN(relativeGap)) {
+                reduced.setRelativeGap(relativeGap);
+            }
+            if (!Double.isNaN(timeLimit)) {
+                reduced.setTimeLimit(aggregatedTimeShare*timeLimit);
+            }
+            aggregatedResult = reduced.optimize();
+            if (aggregatedResult.hasIncumbent()) {
+                start = expand(reduced.getSolution().getU());
+            }
+        } finally {
+            reduced.end();
+        }
+
+        // The quality of the reduced solve: the objective of its
+        // commitment at full resolution, or infeasible if it breaks the
+        // ramp limits or the minimum on-times and off-times there.
+        startResult = null;
+        if (start != null) {
+            UnitCommitmentProblemModel dispatch = new UnitCommitmentProblemModel(problem);
+            try {
+                dispatch.relax();
+                dispatch.fixCommitment(start);
+                startResult = dispatch.optimize();
+            } finally {
+                dispatch.end();
+            }
+        }
+
+        UnitCommitmentProblemModel full = new UnitCommitmentProblemModel(problem);
+        try {
+            if (!Double.isNaN(relativeGap)) {
+                full.setRelativeGap(relativeGap);
+            }
+            if (!Double.isNaN(timeLimit)) {
+                full.setTimeLimit(Math.max(0, timeLimit - (System.nanoTime() - begin)/1e9));
+            }
+            if (start != null) {
+                full.addMIPStart(start, IloCplex.MIPStartEffort.Repair);
+            }
+            UnitCommitmentSolveResult result = full.optimize();
+            if (result.hasIncumbent()) {
+                solution = full.getSolution();
+            }
+            return result;
+        } finally {
+            full.end();
+        }
+    }
+
+    /**
+     * Returns the result of the solve of the reduced problem.
+     * @return the result, or null before solve()
+     */
+    public UnitCommitmentSolveResult getAggregatedResult() {
+        return aggregatedResult;
+    }
+
+    /**
+     * Returns the result of the dispatch of the expanded commitment of
+     * the reduced problem at full resolution: its objective is the cost
+     * of the MIP start (to be compared with the result of solve()), and
+     * its status is INFEASIBLE if the MIP start had to be repaired.
+     * @return the result, or null before solve() or if the reduced
+     * problem has no solution
+     */
+    public UnitCommitmentSolveResult getStartResult() {
+        return startResult;
+    }
+
+    /**
+     * Returns the solution found at full resolution.
+     * @return the solution
+     */
+    public UnitCommitmentSolution getSolution() {
+        if (solution == null) {
+            throw new IllegalStateException("No solution has been found");
+        }
+        return solution;
+    }
+}
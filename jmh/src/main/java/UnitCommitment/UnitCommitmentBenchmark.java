@@ -0,0 +1,189 @@
+package UnitCommitment;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLinearNumExpr;
+import ilog.cplex.IloCplex;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of the building blocks of the two algorithms:
+ * reading the instance files, building each of the models,
+ * solving a single feasibility or optimality subproblem for a fixed U
+ * and extracting the cut from it.
+ * Each benchmark is run for every combination of number of generators (G)
+ * and periods (T), in microseconds per operation, so that runs before and
+ * after a change can be compared.
+ * Usage: gradle :jmh:jmh -PjmhArgs="[benchmark] [-p nGenerators=G,G,...] [-p nPeriods=T,T,...]"
+ * @author Luttner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class UnitCommitmentBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int nGenerators;
+
+    @Param({"24", "168"})
+    public int nPeriods;
+
+    private UnitCommitmentProblem problem;
+    private int U[][];
+    private File generatorFile;
+    private File demandsFile;
+    // The u variables the cuts are expressed in.
+    private IloCplex master;
+    private IloIntVar u[][];
+
+    /**
+     * A subproblem solved before each invocation and released after it,
+     * so that the cut extraction always reads the duals from Cplex (they
+     * are kept by the subproblem once read) and the expressions it
+     * creates are freed with the subproblem.
+     */
+    @State(Scope.Thread)
+    public static class SolvedSubproblem {
+
+        private UnitCommitmentBendersOptimalityProblem osp;
+
+        @Setup(Level.Invocation)
+        public void setUp(UnitCommitmentBenchmark benchmark) throws IloException {
+            osp = new UnitCommitmentBendersOptimalityProblem(benchmark.problem, benchmark.U);
+            osp.solve();
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            osp.end();
+        }
+    }
+
+    /**
+     * Generates the instance of size G x T, writes its files
+     * and creates the u variables of the cuts.
+     * @throws IloException
+     * @throws IOException
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IloException, IOException {
+        problem = new UnitCommitmentInstanceGenerator(42).generate(nGenerators, nPeriods);
+        U = meritOrderCommitment(problem);
+
+        generatorFile = File.createTempFile("generators", ".txt");
+        demandsFile = File.createTempFile("loads", ".txt");
+        problem.save(generatorFile.getPath(), demandsFile.getPath());
+
+        master = new IloCplex();
+        u = new IloIntVar[nGenerators][];
+        for (int i = 0; i < nGenerators; i++) {
+            u[i] = master.boolVarArray(nPeriods);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        master.end();
+        generatorFile.delete();
+        demandsFile.delete();
+    }
+
+    @Benchmark
+    public UnitCommitmentProblem parse() throws IOException {
+        return new UnitCommitmentProblem(nGenerators, nPeriods, generatorFile.getPath(), demandsFile.getPath(), problem.getLoadSheddingCosts()[0]);
+    }
+
+    @Benchmark
+    public void buildModel() throws IloException {
+        new UnitCommitmentProblemModel(problem).end();
+    }
+
+    @Benchmark
+    public void buildMaster() throws IloException {
+        new UnitCommitmentBendersMasterProblem(problem).end();
+    }
+
+    @Benchmark
+    public void buildFeasibility() throws IloException {
+        new UnitCommitmentBendersFeasibilityProblem(problem, U).end();
+    }
+
+    @Benchmark
+    public void buildOptimality() throws IloException {
+        new UnitCommitmentBendersOptimalityProblem(problem, U).end();
+    }
+
+    @Benchmark
+    public double solveFeasibility() throws IloException {
+        UnitCommitmentBendersFeasibilityProblem fsp = new UnitCommitmentBendersFeasibilityProblem(problem, U);
+        try {
+            fsp.solve();
+            return fsp.getObjective();
+        } finally {
+            fsp.end();
+        }
+    }
+
+    @Benchmark
+    public double solveOptimality() throws IloException {
+        UnitCommitmentBendersOptimalityProblem subproblem = new UnitCommitmentBendersOptimalityProblem(problem, U);
+        try {
+            subproblem.solve();
+            return subproblem.getObjective();
+        } finally {
+            subproblem.end();
+        }
+    }
+
+    @Benchmark
+    public double getCutConstant(SolvedSubproblem subproblem) throws IloException {
+        return subproblem.osp.getCutConstant();
+    }
+
+    @Benchmark
+    public IloLinearNumExpr getCutLinearTerm(SolvedSubproblem subproblem) throws IloException {
+        return subproblem.osp.getCutLinearTerm(u);
+    }
+
+    /**
+     * Commits, in each period, the cheapest generators until the demand
+     * is covered. This gives a realistic fixed U for the subproblems.
+     * @param problem the instance
+     * @return the commitment
+     */
+    static int[][] meritOrderCommitment(UnitCommitmentProblem problem) {
+        Integer order[] = new Integer[problem.getNGenerators()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(problem.getMarginalCosts()[a], problem.getMarginalCosts()[b]));
+        int U[][] = new int[problem.getNGenerators()][problem.getNPeriods()];
+        for (int j = 0; j < problem.getNPeriods(); j++) {
+            double capacity = 0;
+            for (int k = 0; k < order.length && capacity < problem.getPowerDemands()[j]; k++) {
+                U[order[k]][j] = 1;
+                capacity += problem.getMaximumOutput()[order[k]];
+            }
+        }
+        return U;
+    }
+}